@@ -1,8 +1,7 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import observer.ImageObserver;
 
@@ -16,7 +15,7 @@ import observer.ImageObserver;
 public abstract class AbstractImageListener implements ImageListener {
 
   /**
-   * List of observers.
+   * List of observers. Background saves report to it from another thread.
    */
   private List<ImageObserver> observerList;
 
@@ -24,7 +23,7 @@ public abstract class AbstractImageListener implements ImageListener {
    * Default constructor, creates an empty list.
    */
   public AbstractImageListener() {
-    observerList = new ArrayList<>();
+    observerList = new CopyOnWriteArrayList<>();
   }
 
   @Override
@@ -0,0 +1,482 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import utilities.FusionMode;
+import utilities.ImageInfo;
+import utilities.ImageUtil;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class limits the memory used by scripts running at the same time. The peak memory of every
+ * script is estimated before it starts, from the size of the images it loads or creates and the
+ * copies its commands make, and a script is only started while the estimates of the running
+ * scripts fit within a budget. Scripts that do not fit wait in the order they arrived. A script
+ * whose estimate exceeds the whole budget is started once nothing else is running.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class AdmissionController {
+
+  /**
+   * Bytes used by a pixel of the image a file is decoded into before it is copied to a store.
+   */
+  private static final int DECODED_BYTES_PER_PIXEL = 4;
+
+  /**
+   * Bytes used by a pixel of the buffers the encoder holds while saving an image, at most: the
+   * filtered rows, the compressed chunks, the stream they are gathered in, which may be twice as
+   * large as its contents while it grows, and the copy of that stream written to the file, each
+   * taking up to 3 bytes when the image does not compress.
+   */
+  private static final int ENCODED_BYTES_PER_PIXEL = 15;
+
+  /**
+   * Width and height of the store created to measure the size of a pixel.
+   */
+  private static final int SAMPLE_SIZE = 64;
+
+  /**
+   * Maximum number of bytes the admitted scripts are estimated to use.
+   */
+  private final long budget;
+
+  /**
+   * Scripts waiting to be admitted, in the order they arrived.
+   */
+  private final Queue<Permit> waiting = new ArrayDeque<>();
+
+  /**
+   * Number of bytes the running scripts are estimated to use.
+   */
+  private long admittedBytes;
+
+  /**
+   * Number of scripts running.
+   */
+  private int running;
+
+  /**
+   * Number of scripts admitted since this controller was created.
+   */
+  private long admittedCount;
+
+  /**
+   * Largest number of scripts that have been waiting at once.
+   */
+  private int peakQueueDepth;
+
+  /**
+   * Creates a controller admitting scripts within the specified budget.
+   *
+   * @param budget maximum number of bytes the running scripts may be estimated to use
+   * @throws IllegalArgumentException if the budget is not positive
+   */
+  public AdmissionController(long budget) throws IllegalArgumentException {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Memory budget must be positive.");
+    }
+    this.budget = budget;
+  }
+
+  /**
+   * Estimates the largest number of bytes a script uses at any point while it runs, like
+   * estimate(List, PixelStoreFactory, long), counting a file that cannot be probed as large as
+   * the largest image the script has had so far.
+   *
+   * @param commands the commands of the script
+   * @param storage  the factory creating the stores the script uses
+   * @return the estimated peak memory in bytes
+   */
+  public static long estimate(List<Command> commands, PixelStoreFactory storage) {
+    return estimate(commands, storage, 0);
+  }
+
+  /**
+   * Estimates the largest number of bytes a script uses at any point while it runs. The estimate
+   * follows the size of the selected image through the commands, counting the other named images,
+   * the copy most operations write their result to before replacing the image, the pyramid a
+   * preview builds, which is kept until the image changes at full resolution, and the image a
+   * file is decoded into. Saved images are copied and written in the background, and the script
+   * only waits for them at its end, so every copy saved is counted until the end together with
+   * the buffers of the encoder for the largest of them. Regions are ignored, so the estimate is an
+   * upper bound for scripts that use them.
+   *
+   * <p>A file saved earlier in the script counts as the image saved to it. Any other file is
+   * probed for its size, and one that cannot be probed, because it does not exist yet or cannot
+   * be read, counts as the largest image the script has had so far or as the specified number of
+   * bytes, whichever is larger, rather than as nothing.
+   *
+   * @param commands     the commands of the script
+   * @param storage      the factory creating the stores the script uses
+   * @param unknownBytes the number of bytes at least to count for a file that cannot be probed
+   * @return the estimated peak memory in bytes
+   */
+  public static long estimate(List<Command> commands, PixelStoreFactory storage,
+                              long unknownBytes) {
+    double bytesPerPixel;
+    try (PixelStore sample = storage.create(SAMPLE_SIZE, SAMPLE_SIZE)) {
+      bytesPerPixel = (double) sample.sizeInBytes() / (SAMPLE_SIZE * SAMPLE_SIZE);
+    }
+
+    // number of pixels of every named image, and of the selected one
+    Map<String, Long> images = new HashMap<>();
+    // number of pixels of the pyramid and preview of every named image that has them
+    Map<String, Long> pyramids = new HashMap<>();
+    String selected = "default";
+    images.put(selected, 0L);
+    boolean inPlace = false;
+    boolean fused = false;
+    boolean previewing = false;
+    // pixels of the copies waiting to be saved, and of the largest of them
+    long savedPixels = 0;
+    long largestSaved = 0;
+    // pixels of the image saved to every file, and of the largest image so far
+    Map<Path, Long> savedFiles = new HashMap<>();
+    long largest = 0;
+    double peak = 0;
+
+    for (Command command : commands) {
+      long pixels = images.get(selected);
+      // pixels held only while the command runs
+      double transientBytes = 0;
+
+      switch (command.getName()) {
+        case "load":
+          Integer scale = command.getArgument("scale", Integer.class);
+          String file = command.getArgument("file", String.class);
+          Long saved = savedFiles.get(Paths.get(file).normalize());
+          long loaded = saved != null ? saved : probe(file, scale != null ? scale : 1);
+          if (loaded < 0) {
+            loaded = Math.max(largest, (long) Math.ceil(unknownBytes / bytesPerPixel));
+          }
+          transientBytes = loaded * DECODED_BYTES_PER_PIXEL;
+          String name = command.getArgument("as", String.class);
+          if (name != null) {
+            pyramids.remove(selected);
+            selected = name;
+          }
+          // the image being replaced is only released once the new one is ready
+          images.putIfAbsent(selected, 0L);
+          transientBytes += images.get(selected) * bytesPerPixel;
+          images.put(selected, 0L);
+          pyramids.remove(selected);
+          previewing = false;
+          pixels = loaded;
+          break;
+        case "select":
+          // the image put away leaves preview mode
+          pyramids.remove(selected);
+          previewing = false;
+          selected = command.getArgument("name", String.class);
+          pixels = images.getOrDefault(selected, 0L);
+          break;
+        case "inplace":
+          inPlace = command.getArgument("on", Boolean.class);
+          break;
+        case "fusion":
+          fused = command.getArgument("mode", FusionMode.class) != FusionMode.OFF;
+          break;
+        case "blur":
+        case "sharpen":
+          // fused filters always write to a copy
+          if (!inPlace || fused) {
+            transientBytes = pixels * bytesPerPixel;
+          }
+          if (!previewing) {
+            pyramids.remove(selected);
+          }
+          break;
+        case "sepia":
+        case "greyscale":
+        case "dither":
+        case "mosaic":
+        case "autolevels":
+        case "equalize":
+          transientBytes = pixels * bytesPerPixel;
+          if (!previewing) {
+            pyramids.remove(selected);
+          }
+          break;
+        case "save":
+          savedPixels += pixels;
+          largestSaved = Math.max(largestSaved, pixels);
+          // images are saved in the res folder
+          savedFiles.put(Paths.get("res", command.getArgument("file", String.class)).normalize(),
+                  pixels);
+          break;
+        case "resize":
+          transientBytes = pixels * bytesPerPixel;
+          pixels = (long) command.getArgument("width", Integer.class)
+                  * command.getArgument("height", Integer.class);
+          pyramids.remove(selected);
+          previewing = false;
+          break;
+        case "rainbow":
+          transientBytes = pixels * bytesPerPixel;
+          pixels = (long) command.getArgument("width", Integer.class)
+                  * command.getArgument("height", Integer.class);
+          pyramids.remove(selected);
+          previewing = false;
+          break;
+        case "checkerboard":
+          transientBytes = pixels * bytesPerPixel;
+          long side = command.getArgument("size", Integer.class) * 8L;
+          pixels = side * side;
+          pyramids.remove(selected);
+          previewing = false;
+          break;
+        case "preview":
+          // the levels of the pyramid add up to a third of the image, and the level previewed is
+          // copied
+          int level = command.getArgument("level", Integer.class);
+          pyramids.put(selected, pixels / 3 + (pixels >> Math.min(62, 2 * level)));
+          previewing = true;
+          break;
+        case "render":
+          // the operations are performed again at full resolution, then the pyramid is released
+          if (previewing) {
+            transientBytes = pixels * bytesPerPixel;
+          }
+          previewing = false;
+          break;
+        default:
+          break;
+      }
+
+      images.put(selected, pixels);
+      largest = Math.max(largest, pixels);
+      long resident = savedPixels;
+      for (long image : images.values()) {
+        resident += image;
+      }
+      for (long pyramid : pyramids.values()) {
+        resident += pyramid;
+      }
+      peak = Math.max(peak, resident * bytesPerPixel + transientBytes
+              + (double) largestSaved * ENCODED_BYTES_PER_PIXEL);
+      if (command.getName().equals("render")) {
+        pyramids.remove(selected);
+      }
+    }
+    return (long) Math.ceil(peak);
+  }
+
+  /**
+   * Returns the number of pixels a file decodes to, reading only its header.
+   *
+   * @param filename the image file
+   * @param scale    the factor the width and height are divided by when decoding
+   * @return the number of pixels, or -1 if the file cannot be read
+   */
+  private static long probe(String filename, int scale) {
+    try {
+      ImageInfo info = ImageUtil.probe(filename);
+      long width = (info.getWidth() + scale - 1) / scale;
+      long height = (info.getHeight() + scale - 1) / scale;
+      return width * height;
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Waits until a script with the specified estimate fits within the budget and every script that
+   * arrived before it has been admitted, then admits it.
+   *
+   * @param bytes the estimated peak memory of the script
+   * @return the permit to close once the script has finished
+   * @throws InterruptedException if the thread is interrupted while waiting, in which case the
+   *                              script is not admitted
+   */
+  public synchronized Permit admit(long bytes) throws InterruptedException {
+    Permit permit = new Permit(bytes);
+    waiting.add(permit);
+    peakQueueDepth = Math.max(peakQueueDepth, waiting.size());
+    try {
+      while (waiting.peek() != permit || (running > 0 && admittedBytes + bytes > budget)) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      waiting.remove(permit);
+      notifyAll();
+      throw e;
+    }
+
+    waiting.remove();
+    admittedBytes += bytes;
+    running++;
+    admittedCount++;
+    permit.waitedNanos = System.nanoTime() - permit.arrivedNanos;
+    // the next script may fit as well
+    notifyAll();
+    return permit;
+  }
+
+  /**
+   * Releases the memory of a finished script and admits the scripts waiting for it.
+   *
+   * @param permit the permit of the script
+   */
+  private synchronized void release(Permit permit) {
+    admittedBytes -= permit.bytes;
+    running--;
+    notifyAll();
+  }
+
+  /**
+   * Returns the maximum number of bytes the running scripts may be estimated to use.
+   *
+   * @return the budget in bytes
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Returns the number of bytes the running scripts are estimated to use.
+   *
+   * @return the admitted bytes
+   */
+  public synchronized long getAdmittedBytes() {
+    return admittedBytes;
+  }
+
+  /**
+   * Returns the number of scripts running.
+   *
+   * @return the number of admitted scripts that have not finished
+   */
+  public synchronized int getRunning() {
+    return running;
+  }
+
+  /**
+   * Returns the number of scripts waiting to be admitted.
+   *
+   * @return the queue depth
+   */
+  public synchronized int getQueueDepth() {
+    return waiting.size();
+  }
+
+  /**
+   * Returns the largest number of scripts that have been waiting at once.
+   *
+   * @return the peak queue depth
+   */
+  public synchronized int getPeakQueueDepth() {
+    return peakQueueDepth;
+  }
+
+  /**
+   * Returns the number of scripts admitted since this controller was created.
+   *
+   * @return the number of admitted scripts
+   */
+  public synchronized long getAdmittedCount() {
+    return admittedCount;
+  }
+
+  /**
+   * Describes the current state of this controller.
+   *
+   * @return the running scripts, the waiting scripts and the admitted memory
+   */
+  @Override
+  public synchronized String toString() {
+    return String.format("%d running, %d queued, %d of %d MB admitted", running, waiting.size(),
+            toMegabytes(admittedBytes), toMegabytes(budget));
+  }
+
+  /**
+   * Converts a number of bytes to whole megabytes, rounding up.
+   *
+   * @param bytes the number of bytes
+   * @return the number of megabytes
+   */
+  private static long toMegabytes(long bytes) {
+    return (bytes + (1 << 20) - 1) >> 20;
+  }
+
+  /**
+   * The admission of a single script, which releases its memory when closed.
+   */
+  public final class Permit implements AutoCloseable {
+
+    /**
+     * The estimated peak memory of the script.
+     */
+    private final long bytes;
+
+    /**
+     * The System.nanoTime() value when the script asked to be admitted.
+     */
+    private final long arrivedNanos = System.nanoTime();
+
+    /**
+     * Time the script waited to be admitted, in nanoseconds.
+     */
+    private long waitedNanos;
+
+    /**
+     * True once the memory of the script has been released.
+     */
+    private boolean released;
+
+    /**
+     * Creates a permit.
+     *
+     * @param bytes the estimated peak memory of the script
+     */
+    private Permit(long bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the estimated peak memory of the script.
+     *
+     * @return the estimate in bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Returns the time the script waited to be admitted.
+     *
+     * @return the time in milliseconds
+     */
+    public long getWaitedMillis() {
+      return waitedNanos / 1_000_000;
+    }
+
+    /**
+     * Describes the estimate of the script and how long it waited.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+      return String.format("estimated %d MB, waited %d ms", toMegabytes(bytes),
+              getWaitedMillis());
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        release(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package model;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * This class represents a request to stop long-running image operations, either because it was
+ * cancelled explicitly or because a deadline has passed. Operations check the token between bands
+ * of rows and stop, leaving the image as it was before they started.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class CancellationToken {
+
+  /**
+   * True once cancel() has been called.
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * The System.nanoTime() value after which the token counts as cancelled.
+   */
+  private final long deadline;
+
+  /**
+   * True if this token has a deadline.
+   */
+  private final boolean hasDeadline;
+
+  /**
+   * Creates a token without a deadline, which is only cancelled by calling cancel().
+   */
+  public CancellationToken() {
+    this.deadline = 0;
+    this.hasDeadline = false;
+  }
+
+  /**
+   * Creates a token that counts as cancelled once the specified number of nanoseconds from now has
+   * passed.
+   *
+   * @param timeoutNanos the time allowed, in nanoseconds
+   */
+  private CancellationToken(long timeoutNanos) {
+    this.deadline = System.nanoTime() + timeoutNanos;
+    this.hasDeadline = true;
+  }
+
+  /**
+   * Creates a token that counts as cancelled once the specified number of milliseconds from now
+   * has passed.
+   *
+   * @param millis the time allowed, in milliseconds
+   * @return the token
+   */
+  public static CancellationToken withTimeout(long millis) {
+    return new CancellationToken(millis * 1_000_000L);
+  }
+
+  /**
+   * Cancels this token.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Determines if this token has been cancelled or its deadline has passed.
+   *
+   * @return true if operations should stop
+   */
+  public boolean isCancelled() {
+    return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+  }
+
+  /**
+   * Stops the calling operation if this token has been cancelled or its deadline has passed.
+   *
+   * @throws CancellationException if operations should stop
+   */
+  public void throwIfCancelled() throws CancellationException {
+    if (cancelled) {
+      throw new CancellationException("Operation was cancelled.");
+    }
+    if (hasDeadline && System.nanoTime() - deadline >= 0) {
+      throw new CancellationException("Operation passed its deadline.");
+    }
+  }
+}
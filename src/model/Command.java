@@ -0,0 +1,119 @@
+package model;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import observer.ImageController;
+
+/**
+ * This class represents a single command of a compiled script. All of its arguments have already
+ * been parsed and validated, so executing it only performs the operation through a controller.
+ * The parsed arguments are also kept by name, so that code looking at a script before running it,
+ * such as estimating its memory use, reads the same values the operation will be given instead
+ * of parsing the text again.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class Command {
+
+  /**
+   * The name of the command, as it is written in a script.
+   */
+  private final String name;
+
+  /**
+   * The canonical text of the command and its arguments.
+   */
+  private final String text;
+
+  /**
+   * The line of the script the command starts on.
+   */
+  private final int line;
+
+  /**
+   * The operation to perform through the controller.
+   */
+  private final Consumer<ImageController> action;
+
+  /**
+   * The parsed arguments of the command, keyed by name.
+   */
+  private final Map<String, Object> arguments;
+
+  /**
+   * Creates a command without arguments.
+   *
+   * @param name   the name of the command
+   * @param text   the canonical text of the command
+   * @param line   the line of the script the command starts on
+   * @param action the operation to perform through the controller
+   */
+  public Command(String name, String text, int line, Consumer<ImageController> action) {
+    this(name, text, line, action, Map.of());
+  }
+
+  /**
+   * Creates a command.
+   *
+   * @param name      the name of the command
+   * @param text      the canonical text of the command and its arguments
+   * @param line      the line of the script the command starts on
+   * @param action    the operation to perform through the controller
+   * @param arguments the parsed arguments of the command, keyed by name
+   */
+  public Command(String name, String text, int line, Consumer<ImageController> action,
+                 Map<String, Object> arguments) {
+    this.name = name;
+    this.text = text;
+    this.line = line;
+    this.action = action;
+    this.arguments = Map.copyOf(arguments);
+  }
+
+  /**
+   * Performs this command through the specified controller.
+   *
+   * @param controller the controller to perform the command with
+   */
+  public void execute(ImageController controller) {
+    action.accept(controller);
+  }
+
+  /**
+   * Returns the name of this command.
+   *
+   * @return the name of the command
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the line of the script this command starts on.
+   *
+   * @return the line number, starting at 1
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * Returns a parsed argument of this command.
+   *
+   * @param key  the name of the argument
+   * @param type the type of the argument
+   * @param <T>  the type of the argument
+   * @return the argument, or null if this command does not have it
+   * @throws ClassCastException if the argument is not of the specified type
+   */
+  public <T> T getArgument(String key, Class<T> type) throws ClassCastException {
+    return type.cast(arguments.get(key));
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
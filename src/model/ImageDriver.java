@@ -1,185 +1,473 @@
 package model;
 
-import java.awt.Color;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.lang.reflect.Field;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import observer.AbstractImageObserver;
 import observer.ImageController;
 import observer.ImageControllerImpl;
-import utilities.Orientation;
+import observer.ImageObserver;
+import utilities.HeapPixelStore;
+import utilities.ImageUtil;
+import utilities.PixelArena;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+import utilities.PlanarPixelStore;
 
 /**
  * Driver class to generate images and process images loaded in.
  */
 public class ImageDriver {
 
+  /**
+   * First line printed by a worker, followed by the port it is listening on.
+   */
+  static final String WORKER_BANNER = "Listening for tiles on port ";
+
   /**
    * Main entry point of program.
    *
    * @param args string array with single element indicating filename of input commands to perform
-   *             on image.
+   *             on image. Alternatively "--serve [port] [megabytes]" starts a server that runs
+   *             scripts submitted to it within a memory budget, and "--submit filename [port]"
+   *             sends a script to that server.
+   *             Prefixing the filename with "--off-heap [directory]" keeps the images outside of
+   *             the Java heap, mapped onto scratch files in the directory if one is given,
+   *             prefixing it with "--planar" keeps each channel in its own byte array, and
+   *             prefixing it with "--budget megabytes" limits the memory used by named images.
+   *             Prefixing it with "--cache directory" keeps the image after each command in the
+   *             directory, up to "--cache-size megabytes", so running the script again resumes
+   *             after the longest part of it that has not changed.
+   *             "--batch filename image..." runs the script on every image file as a pipeline,
+   *             with the thread counts of its stages set by a preceding "--stages d,p,e".
+   *             "--worker [port] [address]" starts a worker processing tiles for other
+   *             programs, and "--shard workers filename image" runs the script on tiles of the
+   *             image, where workers is either a number of workers to start on this machine or
+   *             a comma separated list of host:port addresses of running workers.
    */
   public static void main(String[] args) {
 
-    // file name will be initial argument
-    String filename = args[0];
-    Scanner reader;
+    if (args.length > 0 && args[0].equals("--serve")) {
+      serve(args.length > 1 ? Integer.parseInt(args[1]) : ImageServer.DEFAULT_PORT,
+              args.length > 2 ? Long.parseLong(args[2]) * 1024 * 1024
+                      : Runtime.getRuntime().maxMemory() / 2);
+      return;
+    }
+    if (args.length > 1 && args[0].equals("--submit")) {
+      submit(args[1], args.length > 2 ? Integer.parseInt(args[2]) : ImageServer.DEFAULT_PORT);
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--worker")) {
+      work(args.length > 1 ? Integer.parseInt(args[1]) : 0, args.length > 2 ? args[2] : null);
+      return;
+    }
+    if (args.length > 3 && args[0].equals("--shard")) {
+      shard(args[1], args[2], args[3]);
+      return;
+    }
+
+    // options come before the file name, which will be the last argument
+    boolean offHeap = false;
+    Path directory = null;
+    PixelStoreFactory storage = HeapPixelStore::new;
+    long budget = Runtime.getRuntime().maxMemory() / 2;
+    int[] stages = {2, Runtime.getRuntime().availableProcessors(), 2};
+    boolean batch = false;
+    Path cacheDirectory = null;
+    long cacheSize = ResultCache.DEFAULT_BUDGET;
+
+    int index = 0;
+    while (!batch && index < args.length - 1) {
+      switch (args[index]) {
+        case "--off-heap":
+          offHeap = true;
+          // an optional scratch directory to map images onto comes before the file name
+          if (index + 2 < args.length && !args[index + 1].startsWith("--")) {
+            directory = Paths.get(args[++index]);
+          }
+          break;
+        case "--planar":
+          storage = PlanarPixelStore::new;
+          break;
+        case "--budget":
+          budget = Long.parseLong(args[++index]) * 1024 * 1024;
+          break;
+        case "--stages":
+          String[] counts = args[++index].split(",");
+          for (int i = 0; i < stages.length && i < counts.length; i++) {
+            stages[i] = Integer.parseInt(counts[i]);
+          }
+          break;
+        case "--cache":
+          cacheDirectory = Paths.get(args[++index]);
+          break;
+        case "--cache-size":
+          cacheSize = Long.parseLong(args[++index]) * 1024 * 1024;
+          break;
+        case "--batch":
+          // the script and the images to run it on follow
+          batch = true;
+          break;
+        default:
+          System.out.println("Unsupported option '" + args[index] + "'");
+          return;
+      }
+      index++;
+    }
+
+    if (offHeap && directory == null) {
+      // named images in direct memory share its limit with the copies operations make, and
+      // closed stores only free it once collected, so only half of it is kept for them
+      budget = Math.min(budget, PixelArena.maxDirectMemory() / 2);
+    }
+    Path scratch = directory != null ? directory : Paths.get(System.getProperty("java.io.tmpdir"));
+    try (PixelArena arena = new PixelArena(directory)) {
+      if (offHeap) {
+        storage = arena;
+      }
+      if (batch) {
+        runBatch(args[index], Arrays.asList(args).subList(index + 1, args.length), storage,
+                stages);
+        return;
+      }
+      ResultCache cache = null;
+      if (cacheDirectory != null) {
+        try {
+          cache = new ResultCache(cacheDirectory, cacheSize);
+        } catch (IOException e) {
+          System.out.println("Could not use cache directory '" + cacheDirectory + "'");
+        }
+      }
+      try (Workspace workspace = new Workspace(budget, scratch, storage)) {
+        runFile(args[args.length - 1], new ImageProcessorImpl(storage, workspace), cache);
+      }
+    }
+  }
+
+  /**
+   * Reads a script file and runs it, printing the status lines.
+   *
+   * @param filename  the script file
+   * @param processor the model to run the script on
+   * @param cache     the cache of images to resume from, or null not to use one
+   */
+  private static void runFile(String filename, ImageProcessorImpl processor, ResultCache cache) {
+    String script;
+    try {
+      script = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      System.out.println("Could not open file '" + filename + "'");
+      return;
+    }
+    runScript(script, System.out, processor, cache);
+  }
+
+  /**
+   * Reads a script file and runs it on every image file through a pipeline, printing a status
+   * line for every image followed by how busy each stage of the pipeline was.
+   *
+   * @param filename  the script file
+   * @param images    the image files to run the script on
+   * @param storage   the factory creating the stores images are read into
+   * @param stages    the number of decode, process and encode threads
+   */
+  private static void runBatch(String filename, List<String> images, PixelStoreFactory storage,
+                               int[] stages) {
+    ImagePipeline pipeline;
+    try {
+      String script = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+      pipeline = new ImagePipeline(ScriptParser.parse(script), storage, stages[0], stages[1],
+              stages[2], stages[1]);
+    } catch (IOException e) {
+      System.out.println("Could not open file '" + filename + "'");
+      return;
+    } catch (IllegalArgumentException e) {
+      System.out.println("Unable to parse input script. " + e.getMessage()
+              + ". Please verify proper format as specified in README.md");
+      return;
+    }
+
+    try {
+      for (String status : pipeline.run(images)) {
+        System.out.println(status);
+      }
+      for (String stage : pipeline.getReport()) {
+        System.out.println(stage);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Compiles a script and runs every command in it on a new model and controller, printing the
+   * status of the controller after each command. Nothing is run if any command in the script is
+   * malformed, and running stops at the first command that cannot be performed. The named images
+   * of the model are kept in a workspace of its own, which is closed when the script ends so that
+   * a server running many scripts does not keep their images or scratch files.
+   *
+   * @param script the text of the script
+   * @param out    stream to print the status lines to
+   */
+  static void runScript(String script, PrintStream out) {
+    try (Workspace workspace = new Workspace(Runtime.getRuntime().maxMemory() / 2,
+            Paths.get(System.getProperty("java.io.tmpdir")), HeapPixelStore::new)) {
+      runScript(script, out, new ImageProcessorImpl(HeapPixelStore::new, workspace));
+    }
+  }
+
+  /**
+   * Compiles a script and runs every command in it on the specified model through a new
+   * controller. Saves that finish in the background print their status line after the command
+   * they finished during, and the script only returns once every save has finished.
+   *
+   * @param script    the text of the script
+   * @param out       stream to print the status lines to
+   * @param processor the model to run the script on
+   */
+  static void runScript(String script, PrintStream out, ImageProcessor processor) {
+    runScript(script, out, processor, null);
+  }
+
+  /**
+   * Compiles a script and runs every command in it on the specified model through a new
+   * controller, like runScript(String, PrintStream, ImageProcessor). If a cache is given and the
+   * model is an ImageProcessorImpl, the image after each command is stored in the cache, except
+   * while filters collected for fusion have not been applied yet, and the script starts after the
+   * last of its commands whose image is already cached, printing a single status line for the
+   * commands it skips.
+   *
+   * @param script    the text of the script
+   * @param out       stream to print the status lines to
+   * @param processor the model to run the script on
+   * @param cache     the cache of images to resume from, or null not to use one
+   */
+  static void runScript(String script, PrintStream out, ImageProcessor processor,
+                        ResultCache cache) {
+    List<Command> commands;
     try {
-      reader = new Scanner(new File(filename));
+      commands = ScriptParser.parse(script);
+    } catch (IllegalArgumentException e) {
+      out.println("Unable to parse input script. " + e.getMessage()
+              + ". Please verify proper format as specified in README.md");
+      return;
+    }
+
+    // create controller
+    ImageController controller = new ImageControllerImpl(processor);
 
-      // create model and controller
-      ImageProcessor processor = new ImageProcessorImpl();
-      ImageController controller = new ImageControllerImpl(processor);
+    // the status of each command is taken from updates made while running it, updates from other
+    // threads report background saves and are printed after the command they finished during
+    Thread scriptThread = Thread.currentThread();
+    Queue<String> finishedSaves = new ConcurrentLinkedQueue<>();
+    ImageObserver status = new AbstractImageObserver() {
+      @Override
+      public void update(String completedAction) {
+        if (Thread.currentThread() == scriptThread) {
+          super.update(completedAction);
+        } else {
+          finishedSaves.add(completedAction);
+        }
+      }
+    };
+    processor.registerObserver(status);
 
-      boolean isValidScript = true;
-      while (isValidScript && reader.hasNext()) {
-        String command = reader.next().toLowerCase();
+    ImageProcessorImpl cached = cache != null && processor instanceof ImageProcessorImpl
+            ? (ImageProcessorImpl) processor : null;
+    List<String> keys = cached != null ? ResultCache.keys(commands) : null;
 
+    try {
+      int start = cached != null ? resume(commands, keys, cache, cached, controller, out) : 0;
+      for (int i = start; i < commands.size(); i++) {
+        Command command = commands.get(i);
         try {
-          // interpret and perform command
-          interpretCommand(command, controller, reader);
-          System.out.println(controller.getStatus());
+          command.execute(controller);
+          out.println(status.getStatus());
+          // an image still waiting for fused filters is not cached, since peeking at it would
+          // apply them one command at a time
+          String key = keys != null ? keys.get(i) : null;
+          if (key != null && !cached.hasPendingFilters()) {
+            cache.put(key, cached.peekImage());
+          }
         } catch (Exception e) {
-          System.out.println("Unable to parse command '" + command
-                  + "' in input script. Please verify proper format asspecified in README.md");
-          isValidScript = false;
+          out.println("Unable to perform command '" + command + "' on line " + command.getLine()
+                  + " of input script: " + e.getMessage());
+          return;
+        } finally {
+          printAll(finishedSaves, out);
         }
+      }
+    } finally {
+      processor.flush();
+      printAll(finishedSaves, out);
+      processor.removeObserver(status);
+    }
+  }
 
+  /**
+   * Restores the image after the last command whose image is cached, and performs the commands
+   * before it that change settings.
+   *
+   * @param commands   the commands of the script
+   * @param keys       the key of the image after every command
+   * @param cache      the cache of images
+   * @param processor  the model to restore the image in
+   * @param controller the controller to perform the settings with
+   * @param out        stream to print the status line to
+   * @return the index of the first command left to run
+   */
+  private static int resume(List<Command> commands, List<String> keys, ResultCache cache,
+                            ImageProcessorImpl processor, ImageController controller,
+                            PrintStream out) {
+    for (int i = keys.size() - 1; i >= 0; i--) {
+      if (keys.get(i) == null) {
+        continue;
       }
-    } catch (FileNotFoundException e) {
-      System.out.println("Could not open file '" + filename + "'");
+      PixelStore image = cache.get(keys.get(i), processor.getStorage());
+      if (image == null) {
+        continue;
+      }
+
+      for (Command command : commands.subList(0, i)) {
+        if (ResultCache.isSetting(command)) {
+          command.execute(controller);
+        }
+      }
+      processor.restoreImage(image);
+      out.println("restored cached image after line " + commands.get(i).getLine());
+      return i + 1;
     }
+    return 0;
   }
 
   /**
-   * Interprets command and attempts to execute it via the controller using any additional arguments
-   * specified by the reader.
+   * Prints and removes every line in a queue.
    *
-   * @param command    String command for controller to perform
-   * @param controller ImageController object to execute commands
-   * @param reader     Scanner object holding filestream
-   * @throws IllegalStateException if an invalid command is passed in
+   * @param lines the lines to print
+   * @param out   stream to print the lines to
    */
-  private static void interpretCommand(String command, ImageController controller, Scanner reader)
-          throws IllegalStateException {
-
-    switch (command) {
-      case "load":
-        String filename = reader.next();
-        controller.loadImage(filename);
-        break;
-      case "save":
-        filename = reader.next();
-        controller.saveImage(filename);
-        break;
-      case "blur":
-        controller.doBlur();
-        break;
-      case "sharpen":
-        controller.doSharpen();
-        break;
-      case "sepia":
-        controller.doSepia();
-        break;
-      case "greyscale":
-        controller.doGreyScale();
-        break;
-      case "rainbow":
-        // argument order must be specified as orientation, height, width, colors
-        String strOrientation = reader.next().toLowerCase();
-        Orientation orientation = getOrientationFromString(strOrientation);
-
-        int height = reader.nextInt();
-        int width = reader.nextInt();
-
-        // take colors formatted as single token with commas
-        // ex: "Red,Blue,Green"
-        List<Color> colors = parseColorsToList(reader.next().toLowerCase());
-
-        controller.doRainbow(orientation, height, width, colors);
-
-        break;
-      case "checkerboard":
-        // argument order must be specified as size, primary color, secondary color
-        int size = reader.nextInt();
-        Color primary = parseColorFromString(reader.next().toLowerCase());
-        Color secondary = parseColorFromString(reader.next().toLowerCase());
-
-        controller.doCheckerboard(size, primary, secondary);
-
-        break;
-      case "dither":
-        controller.doDither();
-        break;
-      case "mosaic":
-        // argument will be number of seeds
-        int seeds = reader.nextInt();
-
-        controller.doMosaic(seeds);
-        break;
-      default:
-        throw new IllegalStateException("Unsupported command '" + command + "'.");
+  private static void printAll(Queue<String> lines, PrintStream out) {
+    String line;
+    while ((line = lines.poll()) != null) {
+      out.println(line);
+    }
+  }
 
+  /**
+   * Starts a server on the specified port that keeps running scripts submitted to it until the
+   * program is stopped, logging the admission of every script.
+   *
+   * @param port   the loopback port to listen on
+   * @param budget maximum number of bytes the running scripts may be estimated to use
+   */
+  private static void serve(int port, long budget) {
+    try (ImageServer server = new ImageServer(port, budget, System.out)) {
+      System.out.println("Listening for scripts on port " + server.getPort());
+      server.serve();
+    } catch (IOException e) {
+      System.out.println("Could not run server on port " + port + ": " + e.getMessage());
     }
   }
 
   /**
-   * Parses a String version of an orientation and returns the correct Orientation enum value.
+   * Submits a script file to a running server and prints the status lines it returns.
    *
-   * @param strOrientation string version of an orientation
-   * @return the correct orientation enum value
-   * @throws IllegalStateException if an unsupported orientation string is passed in
+   * @param filename the script file to submit
+   * @param port     the loopback port the server is listening on
    */
-  private static Orientation getOrientationFromString(String strOrientation)
-          throws IllegalStateException {
-    switch (strOrientation) {
-      case "vertical":
-        return Orientation.VERTICAL;
-      case "horizontal":
-        return Orientation.HORIZONTAL;
-      default:
-        throw new IllegalStateException(
-                "Unsupported orientation '" + strOrientation + "' " + "specified for rainbow "
-                        + "command");
+  private static void submit(String filename, int port) {
+    try {
+      String script = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+      ImageServer.submit(script, port, System.out);
+    } catch (NoSuchFileException e) {
+      System.out.println("Could not open file '" + filename + "'");
+    } catch (IOException e) {
+      System.out.println("Could not submit script to port " + port + ": " + e.getMessage());
     }
   }
 
   /**
-   * Parses a single string and returns a List of Colors.
+   * Starts a worker that keeps processing tiles sent to it until the program is stopped.
    *
-   * @param strColors string to parse with colors
-   * @return List of Color objects
+   * @param port    the port to listen on, or 0 to pick any free port
+   * @param address the address to listen on, or null for the loopback address
    */
-  private static List<Color> parseColorsToList(String strColors) {
-    List<Color> colors = new ArrayList<>();
-    for (String color : strColors.split(",")) {
-      Color col = parseColorFromString(color);
-      colors.add(col);
+  private static void work(int port, String address) {
+    try (TileWorker worker = address == null ? new TileWorker(port)
+            : new TileWorker(port, InetAddress.getByName(address))) {
+      System.out.println(WORKER_BANNER + worker.getPort());
+      System.out.flush();
+      worker.serve();
+    } catch (IOException e) {
+      System.out.println("Could not run worker on port " + port + ": " + e.getMessage());
     }
-    return colors;
   }
 
   /**
-   * Parses a Color object from its string representation. Uses code written by Erick Robertson
-   * from https://stackoverflow.com/questions/2854043/converting-a-string-to-color-in-java.
+   * Runs a script on tiles of an image spread over several workers and saves the result under the
+   * same file name in the res folder.
    *
-   * @param strColor string representation of the color
-   * @return the Color object representing the string version
-   * @throws IllegalArgumentException if an invalid color is passed in
+   * @param workers  the number of workers to start, or a comma separated list of host:port
+   *                 addresses of running workers
+   * @param filename the script file
+   * @param image    the image file
    */
-  private static Color parseColorFromString(String strColor) throws IllegalArgumentException {
-    Color col;
+  private static void shard(String workers, String filename, String image) {
+    List<Command> commands;
     try {
-      // use reflection to access static member of Color class - according to Erick Robertson
-      Field field = Color.class.getField(strColor);
-      col = (Color) field.get(null);
-    } catch (Exception e) {
-      throw new IllegalArgumentException("Unsupported color '" + strColor + "'");
+      String script = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
+      commands = ScriptParser.parse(script);
+    } catch (IOException e) {
+      System.out.println("Could not open file '" + filename + "'");
+      return;
+    } catch (IllegalArgumentException e) {
+      System.out.println("Unable to parse input script. " + e.getMessage()
+              + ". Please verify proper format as specified in README.md");
+      return;
+    }
+
+    try (TileCoordinator coordinator = connect(workers);
+         PixelStore input = ImageUtil.readImage(image, HeapPixelStore::new);
+         PixelStore output = coordinator.process(input, commands, HeapPixelStore::new)) {
+      String name = Paths.get(image).getFileName().toString();
+      ImageUtil.writeImage(output, "res/" + name);
+      System.out.println("saved file '" + name + "'");
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Unable to process image '" + image + "': " + e.getMessage());
+    }
+  }
+
+  /**
+   * Creates a coordinator for the workers given on the command line.
+   *
+   * @param workers the number of workers to start, or a comma separated list of host:port
+   *                addresses of running workers
+   * @return the coordinator
+   * @throws IOException if the workers cannot be started
+   */
+  private static TileCoordinator connect(String workers) throws IOException {
+    if (!workers.contains(":")) {
+      return TileCoordinator.startLocal(Integer.parseInt(workers),
+              TileCoordinator.DEFAULT_TILE_SIZE);
+    }
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (String worker : workers.split(",")) {
+      int colon = worker.lastIndexOf(':');
+      addresses.add(new InetSocketAddress(worker.substring(0, colon),
+              Integer.parseInt(worker.substring(colon + 1))));
     }
-    return col;
+    return new TileCoordinator(addresses, TileCoordinator.DEFAULT_TILE_SIZE);
   }
 }
@@ -0,0 +1,420 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import observer.ImageController;
+import observer.ImageControllerImpl;
+import utilities.ImageUtil;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+import utilities.PngEncoder;
+
+/**
+ * This class runs the same script on many image files as a pipeline of three stages: decoding the
+ * files, performing the commands of the script, and encoding the results. Each stage has its own
+ * threads and hands images to the next stage through a bounded queue, so one image can be read
+ * while another is processed and a third is written. A stage that gets ahead waits for room in
+ * its queue, which limits the number of images held in memory at once.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class ImagePipeline {
+
+  /**
+   * Commands that cannot be used in a pipeline script, since the pipeline loads and saves the
+   * images itself.
+   */
+  private static final List<String> UNSUPPORTED = Arrays.asList("load", "save", "select");
+
+  /**
+   * The commands performed on every image.
+   */
+  private final List<Command> commands;
+
+  /**
+   * Factory creating the stores images are read into.
+   */
+  private final PixelStoreFactory storage;
+
+  /**
+   * Maximum number of images waiting between two stages.
+   */
+  private final int capacity;
+
+  /**
+   * The stages of this pipeline, in order.
+   */
+  private final Stage decode;
+  private final Stage process;
+  private final Stage encode;
+
+  /**
+   * Time taken by the last run, in nanoseconds.
+   */
+  private long elapsedNanos;
+
+  /**
+   * Creates a pipeline that performs the specified commands on every image.
+   *
+   * @param commands       the commands to perform, which must not load, save or select images
+   * @param storage        the factory creating the stores images are read into
+   * @param decodeThreads  number of threads reading image files
+   * @param processThreads number of threads performing the commands
+   * @param encodeThreads  number of threads writing image files
+   * @param capacity       maximum number of images waiting between two stages
+   * @throws IllegalArgumentException if a command loads, saves or selects images, or if a thread
+   *                                  count or the capacity is less than 1
+   */
+  public ImagePipeline(List<Command> commands, PixelStoreFactory storage, int decodeThreads,
+                       int processThreads, int encodeThreads, int capacity)
+          throws IllegalArgumentException {
+    for (Command command : commands) {
+      if (UNSUPPORTED.contains(command.getName())) {
+        throw new IllegalArgumentException("Command '" + command.getName() + "' on line "
+                + command.getLine() + " cannot be used when processing several images");
+      }
+    }
+    if (decodeThreads < 1 || processThreads < 1 || encodeThreads < 1 || capacity < 1) {
+      throw new IllegalArgumentException("Thread counts and queue capacity must be at least 1.");
+    }
+    this.commands = commands;
+    this.storage = storage;
+    this.capacity = capacity;
+    this.decode = new Stage("decode", decodeThreads);
+    this.process = new Stage("process", processThreads);
+    this.encode = new Stage("encode", encodeThreads);
+  }
+
+  /**
+   * Reads every file, performs the commands on it and saves the result under the same file name
+   * in the res folder, like the save command does. An image that fails at any stage is reported
+   * and does not stop the others.
+   *
+   * @param filenames the image files to process
+   * @return a status line for every file, in the same order as the files
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public List<String> run(List<String> filenames) throws InterruptedException {
+    BlockingQueue<Job> decoded = new ArrayBlockingQueue<>(capacity);
+    BlockingQueue<Job> processed = new ArrayBlockingQueue<>(capacity);
+    String[] results = new String[filenames.size()];
+    AtomicInteger next = new AtomicInteger();
+
+    decode.reset();
+    process.reset();
+    encode.reset();
+    long start = System.nanoTime();
+
+    ExecutorService decoders = decode.start(() -> {
+      int index;
+      while ((index = next.getAndIncrement()) < filenames.size()) {
+        Job job = new Job(index, filenames.get(index));
+        long begin = System.nanoTime();
+        try {
+          job.image = ImageUtil.readImage(job.filename, storage);
+        } catch (IOException | RuntimeException e) {
+          job.status = "Unable to read image '" + job.filename + "': " + e.getMessage();
+        }
+        decode.finish(begin, decoded, job);
+      }
+    }, decoded, process.threads);
+
+    ExecutorService processors = process.start(() -> {
+      Job job;
+      while ((job = decoded.take()) != Job.END) {
+        long begin = System.nanoTime();
+        if (job.status == null) {
+          perform(job);
+        }
+        process.finish(begin, processed, job);
+      }
+    }, processed, encode.threads);
+
+    ExecutorService encoders = encode.start(() -> {
+      Job job;
+      while ((job = processed.take()) != Job.END) {
+        long begin = System.nanoTime();
+        if (job.status == null) {
+          String output = Paths.get(job.filename).getFileName().toString();
+          try {
+            ImageUtil.writeImage(job.image, "res/" + output, job.encoder);
+            job.status = "saved file '" + output + "'";
+          } catch (IOException | RuntimeException e) {
+            job.status = "unable to write file: " + e.getMessage();
+          }
+        }
+        if (job.image != null) {
+          job.image.close();
+        }
+        results[job.index] = job.status;
+        encode.finish(begin, null, job);
+      }
+    }, null, 0);
+
+    try {
+      decoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      processors.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } finally {
+      decoders.shutdownNow();
+      processors.shutdownNow();
+      encoders.shutdownNow();
+      elapsedNanos = System.nanoTime() - start;
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Returns how busy each stage was during the last run, to show which stage limits the pipeline.
+   * A stage is busy while it works on an image, and blocked while it waits for room in the queue
+   * to the next stage.
+   *
+   * @return a line for every stage, in order
+   */
+  public List<String> getReport() {
+    List<String> report = new ArrayList<>();
+    for (Stage stage : new Stage[]{decode, process, encode}) {
+      report.add(stage.report(elapsedNanos));
+    }
+    return report;
+  }
+
+  /**
+   * Performs the commands on the image of a job, recording the first command that fails. Filters
+   * collected for fusion only run once the image is detached, so a failure there is recorded as
+   * well. The image of a failed job is closed without running the filters left.
+   *
+   * @param job the job to process
+   */
+  private void perform(Job job) {
+    ImageProcessorImpl processor = new ImageProcessorImpl(job.image, storage);
+    job.image = null;
+    ImageController controller = new ImageControllerImpl(processor);
+
+    Command current = null;
+    try {
+      for (Command command : commands) {
+        current = command;
+        command.execute(controller);
+      }
+      current = null;
+      job.encoder = processor.getEncoder();
+      job.image = processor.detachImage();
+    } catch (RuntimeException e) {
+      if (current != null) {
+        job.status = "Unable to perform command '" + current + "' on line " + current.getLine()
+                + " of input script on '" + job.filename + "': " + e.getMessage();
+      } else {
+        job.status = "Unable to process image '" + job.filename + "': " + e.getMessage();
+      }
+      processor.restoreImage(storage.create(0, 0));
+      processor.detachImage().close();
+    }
+  }
+
+  /**
+   * An image file moving through the pipeline.
+   */
+  private static final class Job {
+
+    /**
+     * Marks the end of the images in a queue.
+     */
+    private static final Job END = new Job(-1, null);
+
+    /**
+     * Position of the file in the list being processed.
+     */
+    private final int index;
+
+    /**
+     * The image file.
+     */
+    private final String filename;
+
+    /**
+     * The image, once it has been read.
+     */
+    private PixelStore image;
+
+    /**
+     * The encoder chosen by the commands to save the image with.
+     */
+    private PngEncoder encoder = new PngEncoder();
+
+    /**
+     * The status line of the file, set when it is saved or fails.
+     */
+    private String status;
+
+    /**
+     * Creates a job for an image file.
+     *
+     * @param index    position of the file in the list being processed
+     * @param filename the image file
+     */
+    private Job(int index, String filename) {
+      this.index = index;
+      this.filename = filename;
+    }
+  }
+
+  /**
+   * One stage of the pipeline, with its own threads and the time they spent working.
+   */
+  private static final class Stage {
+
+    /**
+     * Name of the stage in the report.
+     */
+    private final String name;
+
+    /**
+     * Number of threads running this stage.
+     */
+    private final int threads;
+
+    /**
+     * Total time the threads spent working on images, in nanoseconds.
+     */
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * Total time the threads spent waiting for room in the next queue, in nanoseconds.
+     */
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    /**
+     * Number of images this stage has finished with.
+     */
+    private final AtomicInteger images = new AtomicInteger();
+
+    /**
+     * Creates a stage.
+     *
+     * @param name    name of the stage in the report
+     * @param threads number of threads running the stage
+     */
+    private Stage(String name, int threads) {
+      this.name = name;
+      this.threads = threads;
+    }
+
+    /**
+     * Clears the times recorded by an earlier run.
+     */
+    private void reset() {
+      busyNanos.set(0);
+      blockedNanos.set(0);
+      images.set(0);
+    }
+
+    /**
+     * Starts the threads of this stage. Once the last of them finishes, even by failing, the
+     * specified number of end markers is put in the output queue so every thread of the next stage
+     * stops.
+     *
+     * @param work    the loop run by every thread
+     * @param output  the queue to the next stage, or null for the last stage
+     * @param readers number of threads reading the output queue
+     * @return the threads, which have already been told to shut down once done
+     */
+    private ExecutorService start(Work work, BlockingQueue<Job> output, int readers) {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      AtomicInteger running = new AtomicInteger(threads);
+
+      for (int i = 0; i < threads; i++) {
+        pool.execute(() -> {
+          try {
+            work.run();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            // the next stage must stop even if this thread failed, or it would wait forever
+            if (running.decrementAndGet() == 0) {
+              endOutput(output, readers);
+            }
+          }
+        });
+      }
+      pool.shutdown();
+      return pool;
+    }
+
+    /**
+     * Puts an end marker in the output queue for every thread reading it. An interrupted thread
+     * puts none, since the pipeline is then being shut down and the next stage is interrupted too.
+     *
+     * @param output  the queue to the next stage, or null for the last stage
+     * @param readers number of threads reading the output queue
+     */
+    private void endOutput(BlockingQueue<Job> output, int readers) {
+      try {
+        for (int j = 0; j < readers; j++) {
+          output.put(Job.END);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Records the time spent on an image and hands it to the next stage, recording the time spent
+     * waiting for room in the queue.
+     *
+     * @param begin  the System.nanoTime() value when work on the image began
+     * @param output the queue to the next stage, or null for the last stage
+     * @param job    the image
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void finish(long begin, BlockingQueue<Job> output, Job job)
+            throws InterruptedException {
+      long done = System.nanoTime();
+      busyNanos.addAndGet(done - begin);
+      images.incrementAndGet();
+      if (output != null) {
+        output.put(job);
+        blockedNanos.addAndGet(System.nanoTime() - done);
+      }
+    }
+
+    /**
+     * Describes how busy this stage was.
+     *
+     * @param elapsedNanos the time taken by the whole run, in nanoseconds
+     * @return the description
+     */
+    private String report(long elapsedNanos) {
+      double available = Math.max(1, elapsedNanos) * (double) threads;
+      return String.format("%s: %d threads, %d images, %.0f%% busy, %.0f%% blocked", name,
+              threads, images.get(), 100 * busyNanos.get() / available,
+              100 * blockedNanos.get() / available);
+    }
+  }
+
+  /**
+   * The loop run by every thread of a stage.
+   */
+  @FunctionalInterface
+  private interface Work {
+
+    /**
+     * Runs the loop until there are no images left.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void run() throws InterruptedException;
+  }
+}
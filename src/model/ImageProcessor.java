@@ -4,6 +4,13 @@ import java.awt.Color;
 import java.io.IOException;
 import java.util.List;
 
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
+import utilities.Histogram;
+import utilities.PngFilter;
+import utilities.SeedSampling;
+
 /**
  * This interface represents an image processing utility. It contains methods to process / generate
  * images that are implemented in the concrete class model.ImageProcessorImpl.
@@ -33,6 +40,26 @@ public interface ImageProcessor extends ImageListener {
    */
   void greyscale();
 
+  /**
+   * Computes the histograms of the red, green and blue channels and the luminance of the image,
+   * and tells the observers a summary of the luminance.
+   *
+   * @return the histograms
+   */
+  Histogram histogram();
+
+  /**
+   * Stretches each channel of the image so that its darkest and brightest values cover the whole
+   * range, ignoring a small fraction of outlying pixels at both ends.
+   */
+  void autolevels();
+
+  /**
+   * Spreads the luminance of the image evenly over the whole range, using the same table for every
+   * channel so that greys stay grey.
+   */
+  void equalize();
+
   /**
    * Generates an image with the specified image colors as a horizontal rainbow according to the
    * specified width and height.
@@ -68,6 +95,17 @@ public interface ImageProcessor extends ImageListener {
    */
   void dither();
 
+  /**
+   * Dithers the current image to black and white by comparing the grey value of every pixel to a
+   * threshold matrix tiled over the image. Unlike dither(), every pixel is dithered on its own, so
+   * the image is processed in parallel.
+   *
+   * @param matrix how the thresholds are spread over the matrix
+   * @param size   width and height of the matrix, a power of 2 up to 64
+   * @throws IllegalArgumentException if the size is not supported
+   */
+  void dither(DitherMatrix matrix, int size) throws IllegalArgumentException;
+
   /**
    * Performs a "stained-glass" effect on the image with a specified number of seeds indicating the
    * number of "glass pieces".
@@ -78,12 +116,32 @@ public interface ImageProcessor extends ImageListener {
   void mosaic(int seeds);
 
   /**
-   * Saves the current image as a specified file in the res/ folder.
+   * Performs a "stained-glass" effect on the image with seeds spread over it in the specified way
+   * and picked by a random number generator created with the specified seed, so the same seed
+   * always gives the same mosaic of the same image.
+   *
+   * @param seeds      the number of sets of points in the image representing the "glass pieces" in
+   *                   the mosaic
+   * @param sampling   how the seeds are spread over the image
+   * @param randomSeed the seed of the random number generator picking the seeds
+   */
+  void mosaic(int seeds, SeedSampling sampling, long randomSeed);
+
+  /**
+   * Saves the current image as a specified file in the res/ folder. The pixels are copied and
+   * written in the background while processing continues, and the observers are told when the
+   * file has been written or could not be written.
    *
    * @param filename the filename to save the image
    */
   void save(String filename);
 
+  /**
+   * Waits until every image saved so far has been written, and lets go of the thread writing
+   * them.
+   */
+  void flush();
+
   /**
    * Loads the specified image from the file.
    *
@@ -92,6 +150,131 @@ public interface ImageProcessor extends ImageListener {
    */
   void load(String filename) throws IOException;
 
+  /**
+   * Loads the specified image from the file at a reduced size, decoding only every nth pixel of
+   * every nth row. This is much faster than loading the whole image and resizing it.
+   *
+   * @param filename file to load
+   * @param scale    the factor to reduce the width and height by
+   * @throws IOException              if the file is not found
+   * @throws IllegalArgumentException if the scale is less than 1
+   */
+  void load(String filename, int scale) throws IOException, IllegalArgumentException;
+
+  /**
+   * Resizes the whole image to the specified size, each new pixel being the average of the part of
+   * the image it covers.
+   *
+   * @param width  the new width
+   * @param height the new height
+   * @throws IllegalArgumentException if the width or height is less than 1
+   */
+  void resize(int width, int height) throws IllegalArgumentException;
+
+  /**
+   * Loads the specified image from the file as a named image and makes it the current image. The
+   * previous current image is kept in the workspace under its own name.
+   *
+   * @param filename file to load
+   * @param name     the name to give the image
+   * @throws IOException if the file is not found
+   */
+  void load(String filename, String name) throws IOException;
+
+  /**
+   * Makes the image with the specified name the current image. The previous current image is kept
+   * in the workspace under its own name, and a preview of it that has not been rendered is
+   * discarded. The image that was current before any image was named is called "default".
+   *
+   * @param name the name of the image to select
+   * @throws IllegalArgumentException if there is no image with that name
+   */
+  void select(String name) throws IllegalArgumentException;
+
+  /**
+   * Sets the token that long-running operations check to find out if they should stop. A stopped
+   * operation throws a java.util.concurrent.CancellationException and leaves the image as it was
+   * before the operation started. While running, operations tell the observers how far they have
+   * got after every band of rows.
+   *
+   * @param token the token to check
+   */
+  void setCancellationToken(CancellationToken token);
+
+  /**
+   * Sets how blur and sharpen make up the pixels outside of the image when the kernel reaches past
+   * its edges. Pixels outside of the selected region but inside of the image are always used as
+   * they are.
+   *
+   * @param mode the border mode
+   */
+  void setBorderMode(BorderMode mode);
+
+  /**
+   * Sets whether blur and sharpen write each filtered row straight back to the image, keeping only
+   * the rows the kernel covers, instead of filtering into a copy of the selected region. This
+   * saves the memory of the copy, but an operation that is cancelled part of the way through
+   * leaves the image partly filtered.
+   *
+   * @param inPlace true to filter in place
+   */
+  void setInPlace(boolean inPlace);
+
+  /**
+   * Sets how consecutive blur and sharpen operations are performed. With fusion on, they are
+   * collected and applied together tile by tile the next time the image is used, which reads the
+   * image from memory once instead of once per filter and gives the same result. Composing also
+   * combines their kernels into one, which may differ slightly from applying them one by one.
+   *
+   * @param mode the fusion mode
+   */
+  void setFusion(FusionMode mode);
+
+  /**
+   * Sets how images are compressed when they are saved as PNG files. The rows of the image are
+   * compressed in parallel.
+   *
+   * @param level  the compression level from 0 (none) to 9 (smallest)
+   * @param filter the filter applied to each row before compressing it
+   * @throws IllegalArgumentException if the level is not between 0 and 9
+   */
+  void setCompression(int level, PngFilter filter) throws IllegalArgumentException;
+
+  /**
+   * Enters preview mode at the specified level of the image pyramid. Operations performed while
+   * previewing run on a downscaled copy of the image with kernels and seed counts scaled to match,
+   * and are recorded so they can be rendered at full resolution later.
+   *
+   * @param level the pyramid level to preview, where each level halves the width and height
+   * @throws IllegalArgumentException if the level is less than 1 or does not exist
+   * @throws IllegalStateException    if there is no image to preview
+   */
+  void preview(int level) throws IllegalArgumentException, IllegalStateException;
+
+  /**
+   * Leaves preview mode and performs every operation recorded while previewing on the full
+   * resolution image.
+   */
+  void render();
+
+  /**
+   * Restricts blur, sharpen, sepia, greyscale, dither and mosaic to a rectangular region of the
+   * image, so that their cost depends on the size of the region rather than the whole image.
+   * Kernels still read the pixels around the region, but only pixels inside it are changed.
+   *
+   * @param x      the column of the left edge of the region
+   * @param y      the row of the top edge of the region
+   * @param width  the width of the region
+   * @param height the height of the region
+   * @throws IllegalArgumentException if the position is negative or the size is not positive
+   */
+  void region(int x, int y, int width, int height) throws IllegalArgumentException;
+
+  /**
+   * Removes the region restriction so that operations cover the whole image again.
+   */
+  void clearRegion();
+
   /**
    * Computes and returns the correct stripe size from a given size (width or height) and number of
    * stripes. If the number of stripes cannot evenly divide the size, a stripe size is computed to
@@ -1,13 +1,38 @@
 package model;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import utilities.BorderMode;
+import utilities.Convolution;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
+import utilities.HeapPixelStore;
+import utilities.Histogram;
 import utilities.ImageUtil;
 import utilities.Orientation;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+import utilities.PngEncoder;
+import utilities.PngFilter;
+import utilities.Resampler;
+import utilities.SeedSampler;
+import utilities.SeedSampling;
+import utilities.StencilChain;
+import utilities.ThresholdMap;
 
 /**
  * This class implements the model.ImageProcessor interface to filter, color transform, and generate
@@ -19,9 +44,101 @@ import utilities.Orientation;
 public class ImageProcessorImpl extends AbstractImageListener implements ImageProcessor {
 
   /**
-   * Private field representing an image as 3D integer array (height, width, channels).
+   * Private field representing the pixels of the image (height, width, channels).
+   */
+  private PixelStore image;
+
+  /**
+   * Factory creating the stores that hold images and intermediate results.
+   */
+  private final PixelStoreFactory storage;
+
+  /**
+   * Named images that are not currently being processed.
    */
-  private int[][][] image;
+  private final Workspace workspace;
+
+  /**
+   * Name of the current image, under which it is kept in the workspace when another image is
+   * selected.
+   */
+  private String slot = DEFAULT_SLOT;
+
+  /**
+   * Token checked by long-running operations to find out if they should stop.
+   */
+  private CancellationToken cancellation = new CancellationToken();
+
+  /**
+   * Encoder used when images are saved as PNG files.
+   */
+  private PngEncoder encoder = new PngEncoder();
+
+  /**
+   * How blur and sharpen make up the pixels outside of the image.
+   */
+  private BorderMode border = BorderMode.ZERO;
+
+  /**
+   * True if blur and sharpen write their result straight back to the image instead of to a copy
+   * of the region.
+   */
+  private boolean inPlace;
+
+  /**
+   * How consecutive blur and sharpen operations are performed.
+   */
+  private FusionMode fusion = FusionMode.OFF;
+
+  /**
+   * Kernels of the blur and sharpen operations collected while fusion is on, applied together by
+   * runPendingFilters() before anything else uses the image.
+   */
+  private final List<double[][]> pendingKernels = new ArrayList<>();
+
+  /**
+   * Background thread writing saved images in the order they were saved, created by the first
+   * save after a flush and stopped by the flush, or null when no save is pending.
+   */
+  private ExecutorService saver;
+
+  /**
+   * Saves that have been started since the last flush.
+   */
+  private final List<Future<?>> pendingSaves = new ArrayList<>();
+
+  /**
+   * Multi-resolution pyramid of the full resolution image, used for previews. It is only built by
+   * the first preview, and is null until then or when the image has changed since it was built.
+   */
+  private ImagePyramid pyramid;
+
+  /**
+   * The pyramid level currently being previewed, or 0 if operations run at full resolution.
+   */
+  private int previewLevel;
+
+  /**
+   * Operations performed since preview mode was entered, replayed at full resolution by render().
+   */
+  private final List<Runnable> previewOperations = new ArrayList<>();
+
+  /**
+   * True while recorded preview operations are being replayed, so they are not recorded again.
+   */
+  private boolean replaying;
+
+  /**
+   * The region of the full resolution image that operations are restricted to, or null if they
+   * cover the whole image.
+   */
+  private Rectangle region;
+
+  /**
+   * The region that was selected when preview mode was entered, restored before replaying the
+   * recorded operations since they may select other regions.
+   */
+  private Rectangle previewRegion;
 
   /**
    * Kernel applied to this image to blur it.
@@ -48,6 +165,28 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
   private static final int BLUE = 2;
   private static final int MAX_CHANNELS = 3;
 
+  /**
+   * Name of the image that is processed when no other image has been named.
+   */
+  private static final String DEFAULT_SLOT = "default";
+
+  /**
+   * Fraction of the darkest and of the brightest pixels of each channel that autolevels allows to
+   * be clipped, so that a few outlying pixels do not prevent stretching.
+   */
+  private static final double LEVELS_CLIP = 0.005;
+
+  /**
+   * Number of threads an operation running on the common pool may use, including the calling
+   * thread.
+   */
+  private static final int PARALLEL_THREADS = ForkJoinPool.getCommonPoolParallelism() + 1;
+
+  /**
+   * Number of rows processed between progress updates to the observers.
+   */
+  private static final int BAND_ROWS = 32;
+
   /**
    * Constant representing matrix values for greyscale color transformation.
    */
@@ -55,6 +194,22 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
 
           {{0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}};
 
+  /**
+   * Number of fraction bits of GREY_WEIGHTS.
+   */
+  private static final int GREY_SHIFT = 23;
+
+  /**
+   * The greyscale weights in fixed point, rounded up. Multiplying by GREYSCALE drops the fraction
+   * after adding each channel, and since no channel value times its weight comes within 0.0001 of
+   * a whole number, shifting each product back down gives exactly the same grey values with
+   * integer arithmetic only.
+   */
+  private static final int[] GREY_WEIGHTS = {
+          (int) Math.ceil(GREYSCALE[RED][RED] * (1 << GREY_SHIFT)),
+          (int) Math.ceil(GREYSCALE[RED][GREEN] * (1 << GREY_SHIFT)),
+          (int) Math.ceil(GREYSCALE[RED][BLUE] * (1 << GREY_SHIFT))};
+
   /**
    * Constant representing matrix values for sepia color transformation.
    */
@@ -82,12 +237,47 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
   private static final float DITHER_BELOW_RIGHT = 1.0f / 16.0f;
 
   /**
-   * Default constructor, initializes a 0 x 0 x 3 array.
+   * Default constructor, initializes a 0 x 0 image held on the heap.
    */
   public ImageProcessorImpl() {
     this(0, 0);
   }
 
+  /**
+   * Constructor that creates an empty model.ImageProcessor which holds its images in stores
+   * created by the specified factory, such as a PixelArena to keep pixels off the heap.
+   *
+   * @param storage the factory creating pixel stores
+   */
+  public ImageProcessorImpl(PixelStoreFactory storage) {
+    this(storage, defaultWorkspace(storage));
+  }
+
+  /**
+   * Constructor that creates an empty model.ImageProcessor which holds its images in stores
+   * created by the specified factory, and keeps named images that are not being processed in the
+   * specified workspace.
+   *
+   * @param storage   the factory creating pixel stores
+   * @param workspace the workspace holding named images
+   */
+  public ImageProcessorImpl(PixelStoreFactory storage, Workspace workspace) {
+    this.storage = storage;
+    this.workspace = workspace;
+    this.image = storage.create(0, 0);
+  }
+
+  /**
+   * Package-private constructor that creates an model.ImageProcessor processing an image that has
+   * already been read, taking ownership of its store.
+   *
+   * @param image   the image to process
+   * @param storage the factory creating pixel stores
+   */
+  ImageProcessorImpl(PixelStore image, PixelStoreFactory storage) {
+    this(storage);
+    setImage(image);
+  }
 
   /**
    * Constructor that takes a filename and creates an model.ImageProcessor by reading the pixels of
@@ -97,6 +287,7 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
    * @throws IOException if the file is not found
    */
   public ImageProcessorImpl(String filename) throws IOException {
+    this();
     load(filename);
   }
 
@@ -107,90 +298,270 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
    * @param height height of image
    */
   protected ImageProcessorImpl(int width, int height) {
-    this.image = new int[height][width][MAX_CHANNELS];
+    this.storage = HeapPixelStore::new;
+    this.workspace = defaultWorkspace(storage);
+    this.image = storage.create(width, height);
+  }
+
+  /**
+   * Creates a workspace allowed to use half of the maximum heap size, spilling to the temporary
+   * directory.
+   *
+   * @param storage the factory creating pixel stores
+   * @return the workspace
+   */
+  private static Workspace defaultWorkspace(PixelStoreFactory storage) {
+    return new Workspace(Runtime.getRuntime().maxMemory() / 2,
+            Paths.get(System.getProperty("java.io.tmpdir")), storage);
   }
 
   @Override
   public void blur() {
-    this.image = filter(blurKernel);
+    OperationEvent event = new OperationEvent();
+    filter(previewKernel(blurKernel), "blurring image");
+    recordOperation(this::blur);
+    recordEvent(event, "blur", 1);
     updateObservers("blurred image");
   }
 
   @Override
   public void sharpen() {
-    this.image = filter(sharpenKernel);
+    OperationEvent event = new OperationEvent();
+    filter(previewKernel(sharpenKernel), "sharpening image");
+    recordOperation(this::sharpen);
+    recordEvent(event, "sharpen", 1);
     updateObservers("sharpened image");
   }
 
   @Override
   public void sepia() {
-    transform(SEPIA);
+    OperationEvent event = new OperationEvent();
+    transform(SEPIA, "transforming image to sepia color");
+    recordOperation(this::sepia);
+    recordEvent(event, "sepia", 1);
     updateObservers("transformed image to sepia color");
   }
 
   @Override
   public void greyscale() {
-    transform(GREYSCALE);
+    OperationEvent event = new OperationEvent();
+    transform(GREYSCALE, "transforming image to greyscale color");
+    recordOperation(this::greyscale);
+    recordEvent(event, "greyscale", 1);
     updateObservers("transformed image to greyscale color");
   }
 
+  @Override
+  public Histogram histogram() {
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    Histogram result = Histogram.of(image, bounds.x, bounds.y, bounds.width, bounds.height);
+    recordEvent(event, "histogram", PARALLEL_THREADS);
+    updateObservers("computed histogram of " + bounds.width + "x" + bounds.height
+            + " pixels, luminance " + result.describe(Histogram.LUMINANCE));
+    return result;
+  }
+
+  @Override
+  public void autolevels() {
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    Histogram histogram = Histogram.of(image, bounds.x, bounds.y, bounds.width, bounds.height);
+    int[][] tables = new int[MAX_CHANNELS][];
+    for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+      tables[channel] = histogram.getStretchTable(channel, LEVELS_CLIP);
+    }
+    lookup(tables, "stretching image levels");
+    recordOperation(this::autolevels);
+    recordEvent(event, "autolevels", PARALLEL_THREADS);
+    updateObservers("stretched image levels");
+  }
+
+  @Override
+  public void equalize() {
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    Histogram histogram = Histogram.of(image, bounds.x, bounds.y, bounds.width, bounds.height);
+    int[] table = histogram.getEqualizationTable(Histogram.LUMINANCE);
+    lookup(new int[][]{table, table, table}, "equalizing image");
+    recordOperation(this::equalize);
+    recordEvent(event, "equalize", PARALLEL_THREADS);
+    updateObservers("equalized image");
+  }
+
   @Override
   public void dither() {
-    // first convert to greyscale
-    transform(GREYSCALE);
-    int width = getImageWidth();
-    int height = getImageHeight();
-
-    for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        // get the red/green/blue component of this pixel (they are all the same since it is
-        // greyscale)
-        int oldColor = image[row][col][RED];
-        int newColor = oldColor > Math.abs(oldColor - 255) ? 255 : 0;
-        int error = oldColor - newColor;
-
-        // set color of current pixel to new color
-        int[] newPixel = {newColor, newColor, newColor};
-        setPixelRGB(newPixel, row, col);
-
-        // now add error values to surrounding pixels
-        // add to pixel on right
-        if (col + 1 < width) {
-          setDitherChange(row, col + 1, DITHER_RIGHT, error);
-        }
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    int width = bounds.width;
+    int height = bounds.y + bounds.height;
+    PixelStore result = storage.create(bounds.width, bounds.height);
+
+    // grey values of the current and next row, including the error added to them so far
+    int[] current = new int[width];
+    int[] next = new int[width];
+    int[] dithered = new int[width];
 
-        // add to pixel on next row left
-        if (row + 1 < height && col - 1 >= 0) {
-          setDitherChange(row + 1, col - 1, DITHER_BELOW_LEFT, error);
-        }
+    try {
+      // the image is converted to greyscale as each row is read
+      if (!bounds.isEmpty()) {
+        readGreyRow(bounds.y, bounds.x, current);
+      }
 
-        // add to pixel on below in next row
+      for (int row = bounds.y; row < height; row++) {
         if (row + 1 < height) {
-          setDitherChange(row + 1, col, DITHER_BELOW, error);
+          readGreyRow(row + 1, bounds.x, next);
+        }
+
+        for (int col = 0; col < width; col++) {
+          int oldColor = current[col];
+          int newColor = oldColor > Math.abs(oldColor - 255) ? 255 : 0;
+          int error = oldColor - newColor;
+
+          // set color of current pixel to new color
+          dithered[col] = newColor;
+
+          // now add error values to surrounding pixels
+          // add to pixel on right
+          if (col + 1 < width) {
+            current[col + 1] = ditherChange(current[col + 1], DITHER_RIGHT, error);
+          }
+
+          // add to pixel on next row left
+          if (row + 1 < height && col - 1 >= 0) {
+            next[col - 1] = ditherChange(next[col - 1], DITHER_BELOW_LEFT, error);
+          }
+
+          // add to pixel on below in next row
+          if (row + 1 < height) {
+            next[col] = ditherChange(next[col], DITHER_BELOW, error);
+          }
+
+          // add to pixel on on next row right
+          if (row + 1 < height && col + 1 < width) {
+            next[col + 1] = ditherChange(next[col + 1], DITHER_BELOW_RIGHT, error);
+          }
         }
 
-        // add to pixel on on next row right
-        if (row + 1 < height && col + 1 < width) {
-          setDitherChange(row + 1, col + 1, DITHER_BELOW_RIGHT, error);
+        for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+          result.writeChannel(row - bounds.y, 0, channel, dithered, 0, width);
         }
+
+        int[] done = current;
+        current = next;
+        next = done;
+
+        reportProgress("adding dither effect to image", row - bounds.y + 1, bounds.height);
       }
+
+      commit(result, bounds);
+    } finally {
+      result.close();
     }
 
+    recordOperation(this::dither);
+    recordEvent(event, "dither", 1);
     updateObservers("added dither effect to image");
   }
 
+  @Override
+  public void dither(DitherMatrix matrix, int size) throws IllegalArgumentException {
+    OperationEvent event = new OperationEvent();
+    ThresholdMap thresholds = ThresholdMap.of(matrix, size);
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    // every pixel only depends on itself, so it can be written over when filtering in place
+    PixelStore result = inPlace ? image : storage.create(bounds.width, bounds.height);
+    int top = inPlace ? bounds.y : 0;
+    int left = inPlace ? bounds.x : 0;
+
+    try {
+      for (int band = bounds.y; band < bounds.y + bounds.height; band += BAND_ROWS) {
+        int end = Math.min(band + BAND_ROWS, bounds.y + bounds.height);
+        IntStream.range(band, end).parallel().forEach(row -> ditherRow(thresholds, row, bounds.x,
+                bounds.width, result, row - bounds.y + top, left));
+        reportProgress("adding ordered dither effect to image", end - bounds.y, bounds.height);
+      }
+
+      if (!inPlace) {
+        commit(result, bounds);
+      }
+    } finally {
+      if (!inPlace) {
+        result.close();
+      }
+    }
+
+    recordOperation(() -> dither(matrix, size));
+    recordEvent(event, "ordered dither", PARALLEL_THREADS);
+    updateObservers("added ordered dither effect to image");
+  }
+
   /**
-   * Adds the specified change amount to a specified pixel as part of the dithering algorithm.
+   * Dithers part of a row of the image by comparing the grey value of every pixel to the
+   * threshold at its position.
    *
-   * @param row         row index of image
-   * @param col         column index of image
+   * @param thresholds the threshold matrix
+   * @param row        row of the image
+   * @param column     column of the image of the first pixel
+   * @param width      number of pixels to dither
+   * @param result     the store to write the dithered pixels to
+   * @param resultRow  row of the store to write to
+   * @param resultLeft column of the store to write the first pixel to
+   */
+  private void ditherRow(ThresholdMap thresholds, int row, int column, int width,
+                         PixelStore result, int resultRow, int resultLeft) {
+    int[] red = new int[width];
+    int[] green = new int[width];
+    int[] blue = new int[width];
+    int[] limits = new int[width];
+    image.readChannel(row, column, RED, red, 0, width);
+    image.readChannel(row, column, GREEN, green, 0, width);
+    image.readChannel(row, column, BLUE, blue, 0, width);
+    thresholds.fillRow(row, column, limits);
+
+    int redWeight = GREY_WEIGHTS[RED];
+    int greenWeight = GREY_WEIGHTS[GREEN];
+    int blueWeight = GREY_WEIGHTS[BLUE];
+    for (int i = 0; i < width; i++) {
+      int grey = (red[i] * redWeight >> GREY_SHIFT) + (green[i] * greenWeight >> GREY_SHIFT)
+              + (blue[i] * blueWeight >> GREY_SHIFT);
+      red[i] = grey >= limits[i] ? 255 : 0;
+    }
+    for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+      result.writeChannel(resultRow, resultLeft, channel, red, 0, width);
+    }
+  }
+
+  /**
+   * Adds the specified change amount to a grey value as part of the dithering algorithm.
+   *
+   * @param value       the grey value of the pixel, including error added to it so far
    * @param changeValue change value specific to the pixel position
    * @param error       error calculation to add to the specified pixel
+   * @return the grey value with the error added
    */
-  private void setDitherChange(int row, int col, float changeValue, int error) {
-    int change = Math.round(image[row][col][RED] + (changeValue * error));
-    int[] newCol = {change, change, change};
-    setPixelRGB(newCol, row, col);
+  private int ditherChange(int value, float changeValue, int error) {
+    return Math.round(value + (changeValue * error));
+  }
+
+  /**
+   * Reads part of a row of the image, converted to greyscale.
+   *
+   * @param row    row index of image
+   * @param column column index of the first pixel to read
+   * @param grey   array to read the grey values into, as many as it can hold
+   */
+  private void readGreyRow(int row, int column, int[] grey) {
+    int[] rgb = new int[MAX_CHANNELS];
+    for (int i = 0; i < grey.length; i++) {
+      image.getPixel(row, column + i, rgb);
+      grey[i] = multiply(GREYSCALE, rgb)[RED];
+    }
   }
 
   //////////////////////////////////////////////////////////////////////
@@ -199,21 +570,29 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
 
   @Override
   public void rainbowHorizontal(int height, int width, List<Color> colors) {
+    OperationEvent event = new OperationEvent();
+    discardPreview();
     drawStripes(height, width, colors, Orientation.HORIZONTAL);
+    recordEvent(event, "rainbow", 1);
     updateObservers("created horizontal rainbow");
   }
 
   @Override
   public void rainbowVertical(int height, int width, List<Color> colors) {
+    OperationEvent event = new OperationEvent();
+    discardPreview();
     drawStripes(height, width, colors, Orientation.VERTICAL);
+    recordEvent(event, "rainbow", 1);
     updateObservers("created vertical rainbow");
   }
 
   @Override
   public void checkerboard(int squareSize, Color primaryColor, Color secondaryColor) {
+    OperationEvent event = new OperationEvent();
+    discardPreview();
 
     int size = squareSize * 8;
-    this.image = new int[size][size][3];
+    setImage(storage.create(size, size));
 
     for (int row = 0; row < size; row++) {
       for (int column = 0; column < size; column++) {
@@ -229,56 +608,603 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
       }
     }
 
+    recordEvent(event, "checkerboard", 1);
     updateObservers("created checkerboard");
   }
 
+  //////////////////////////////////////////////////////////////////////
+  // Cancellation and progress methods
+  //////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void setCancellationToken(CancellationToken token) {
+    runPendingFilters();
+    this.cancellation = token;
+    updateObservers("set cancellation token");
+  }
+
+  @Override
+  public void setBorderMode(BorderMode mode) {
+    runPendingFilters();
+    this.border = mode;
+    updateObservers("set border mode to " + mode.name().toLowerCase());
+  }
+
+  @Override
+  public void setInPlace(boolean inPlace) {
+    this.inPlace = inPlace;
+    updateObservers("set in-place filtering " + (inPlace ? "on" : "off"));
+  }
+
+  @Override
+  public void setFusion(FusionMode mode) {
+    runPendingFilters();
+    this.fusion = mode;
+    updateObservers("set filter fusion " + mode.name().toLowerCase());
+  }
+
+  @Override
+  public void setCompression(int level, PngFilter filter) throws IllegalArgumentException {
+    this.encoder = new PngEncoder(level, filter);
+    updateObservers("set compression " + encoder);
+  }
+
+  /**
+   * Stops the current operation if it has been cancelled, and tells the observers how far it has
+   * got after every band of rows.
+   *
+   * @param action description of the operation in progress
+   * @param done   number of rows processed so far
+   * @param total  total number of rows to process
+   * @throws java.util.concurrent.CancellationException if the operation has been cancelled
+   */
+  private void reportProgress(String action, int done, int total) {
+    cancellation.throwIfCancelled();
+    if (done % BAND_ROWS == 0 && done < total) {
+      updateObservers(action + " " + (100L * done / total) + "%");
+    }
+  }
+
+  /**
+   * Finishes the Flight Recorder event of an operation, describing the image as it is after the
+   * operation.
+   *
+   * @param event     the event started when the operation began
+   * @param operation name of the operation
+   * @param threads   number of threads the operation may run on
+   */
+  private void recordEvent(OperationEvent event, String operation, int threads) {
+    event.finish(operation, getImageWidth(), getImageHeight(), image.sizeInBytes(), threads);
+  }
+
+  /**
+   * Copies the result of an operation into the selected region of the image.
+   *
+   * @param result the result, the same size as the region
+   * @param bounds the region of the image the result belongs to
+   */
+  private void commit(PixelStore result, Rectangle bounds) {
+    int[] values = new int[bounds.width];
+    for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+      for (int row = 0; row < bounds.height; row++) {
+        result.readChannel(row, 0, channel, values, 0, bounds.width);
+        image.writeChannel(bounds.y + row, bounds.x, channel, values, 0, bounds.width);
+      }
+    }
+  }
+
   //////////////////////////////////////////////////////////////////////
   // Utility methods
   //////////////////////////////////////////////////////////////////////
 
   @Override
   public void save(String filename) {
-    StringBuilder output = new StringBuilder();
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
     String path = "res/" + filename;
+    PixelStore snapshot = PixelStore.copyOf(image, storage);
+    PngEncoder saveEncoder = encoder;
+
+    if (saver == null) {
+      saver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-saver");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    recordEvent(event, "save", 1);
+    updateObservers("saving file '" + filename + "'");
+    pendingSaves.add(saver.submit(() -> {
+      StringBuilder output = new StringBuilder();
+      try {
+        ImageUtil.writeImage(snapshot, path, saveEncoder);
+        output.append("saved file '");
+        output.append(filename);
+        output.append("'");
+      } catch (IOException | RuntimeException e) {
+        output.append("unable to write file: ");
+        output.append(e.getMessage());
+      } finally {
+        snapshot.close();
+      }
+      updateObservers(output.toString());
+    }));
+  }
 
-    try {
-      ImageUtil.writeImage(image, image[0].length, image.length, path);
-      output.append("saved file '");
-      output.append(filename);
-      output.append("'");
-    } catch (IOException e) {
-      output.append("unable to write file: ");
-      output.append(e.getMessage());
+  @Override
+  public void flush() {
+    boolean interrupted = false;
+    for (Future<?> save : pendingSaves) {
+      while (true) {
+        try {
+          save.get();
+          break;
+        } catch (InterruptedException e) {
+          // the saves must still finish before the snapshots can be released
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // failures have already been reported to the observers
+          break;
+        }
+      }
+    }
+    pendingSaves.clear();
+    if (saver != null) {
+      // nothing is left to write, so the thread is not kept waiting for the next save
+      saver.shutdown();
+      saver = null;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
+  }
 
-    updateObservers(output.toString());
+  @Override
+  public void load(String filename, int scale) throws IOException, IllegalArgumentException {
+    OperationEvent event = new OperationEvent();
+    PixelStore loaded = ImageUtil.readImage(filename, storage, scale);
+    discardPreview();
+    setImage(loaded);
+    recordEvent(event, "load", 1);
+    updateObservers("loaded image '" + filename + "' at 1/" + scale + " scale ("
+            + getImageWidth() + "x" + getImageHeight() + ")");
+  }
+
+  @Override
+  public void resize(int width, int height) throws IllegalArgumentException {
+    OperationEvent event = new OperationEvent();
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be at least 1.");
+    }
+    resolvePreview();
+
+    PixelStore resized = storage.create(width, height);
+    try {
+      Resampler.areaAverage(image, resized);
+    } catch (RuntimeException e) {
+      resized.close();
+      throw e;
+    }
+    setImage(resized);
+    dropPyramid();
+    recordEvent(event, "resize", PARALLEL_THREADS);
+    updateObservers("resized image to " + width + "x" + height);
   }
 
   @Override
   public void load(String filename) throws IOException {
-    this.image = ImageUtil.readImage(filename);
+    OperationEvent event = new OperationEvent();
+    PixelStore loaded = ImageUtil.readImage(filename, storage);
+    discardPreview();
+    setImage(loaded);
+    recordEvent(event, "load", 1);
+    updateObservers("loaded image '" + filename + "'");
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // Workspace methods
+  //////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void load(String filename, String name) throws IOException {
+    OperationEvent event = new OperationEvent();
+    PixelStore loaded = ImageUtil.readImage(filename, storage);
+    stashImage();
+    workspace.remove(name);
+    this.slot = name;
+    setImage(loaded);
+    workspace.trim(image.sizeInBytes());
+    recordEvent(event, "load", 1);
+    updateObservers("loaded image '" + filename + "' as '" + name + "'");
+  }
+
+  @Override
+  public void select(String name) throws IllegalArgumentException {
+    OperationEvent event = new OperationEvent();
+    if (!name.equals(slot)) {
+      if (!workspace.contains(name)) {
+        throw new IllegalArgumentException("There is no image named '" + name + "'.");
+      }
+      stashImage();
+      this.slot = name;
+      setImage(workspace.take(name));
+      workspace.trim(image.sizeInBytes());
+    }
+    recordEvent(event, "select", 1);
+    updateObservers("selected image '" + name + "'");
+  }
+
+  /**
+   * Puts the current full resolution image into the workspace under its name, leaving no current
+   * image. A preview that has not been rendered is discarded.
+   */
+  private void stashImage() {
+    resolvePreview();
+    workspace.put(slot, image);
+    this.image = null;
+  }
+
+  /**
+   * Hands the current full resolution image over to the caller, leaving an empty image. A preview
+   * that has not been rendered is discarded.
+   *
+   * @return the image, which the caller must close
+   */
+  PixelStore detachImage() {
+    resolvePreview();
+    PixelStore result = image;
+    this.image = storage.create(0, 0);
+    return result;
+  }
+
+  /**
+   * Returns the current image, with any filters collected for fusion applied. The image still
+   * belongs to this processor and must not be changed or closed.
+   *
+   * @return the image
+   */
+  PixelStore peekImage() {
+    runPendingFilters();
+    return image;
+  }
+
+  /**
+   * Determines if filters collected for fusion are still waiting to be applied, in which case
+   * the current image does not show them yet.
+   *
+   * @return true if filters are waiting
+   */
+  boolean hasPendingFilters() {
+    return !pendingKernels.isEmpty();
+  }
+
+  /**
+   * Replaces the current image with the specified one, leaving preview mode without rendering.
+   *
+   * @param restored the new image, which this processor takes ownership of
+   */
+  void restoreImage(PixelStore restored) {
+    discardPreview();
+    setImage(restored);
+  }
+
+  /**
+   * Returns the factory creating the stores of this processor.
+   *
+   * @return the factory
+   */
+  PixelStoreFactory getStorage() {
+    return storage;
+  }
+
+  /**
+   * Returns the encoder images are saved as PNG files with.
+   *
+   * @return the encoder
+   */
+  PngEncoder getEncoder() {
+    return encoder;
+  }
+
+  /**
+   * Makes the full resolution image the current image again and discards the preview, without
+   * rendering the operations performed while previewing.
+   */
+  private void resolvePreview() {
+    runPendingFilters();
+    if (previewLevel > 0) {
+      setImage(pyramid.getLevel(0));
+    }
+    discardPreview();
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // Preview methods
+  //////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void preview(int level) throws IllegalArgumentException, IllegalStateException {
+    OperationEvent event = new OperationEvent();
+    if (level < 1) {
+      throw new IllegalArgumentException("Preview level must be at least 1.");
+    }
+    runPendingFilters();
+    if (getImageWidth() == 0 || getImageHeight() == 0) {
+      throw new IllegalStateException("There is no image to preview.");
+    }
+    if (pyramid == null) {
+      pyramid = new ImagePyramid(image, storage);
+    }
+
+    if (previewLevel == 0) {
+      previewRegion = region;
+    }
+    setImage(pyramid.copyLevel(level));
+    this.previewLevel = level;
+
+    // bring the new level up to date with the operations already previewed
+    replayPreviewOperations();
+
+    recordEvent(event, "preview", 1);
+    updateObservers("previewing image at level " + level + " (" + getImageWidth() + "x"
+            + getImageHeight() + ")");
+  }
+
+  @Override
+  public void render() {
+    OperationEvent event = new OperationEvent();
+    int count = previewOperations.size();
+    if (previewLevel > 0) {
+      setImage(pyramid.getLevel(0));
+      dropPyramid();
+      this.previewLevel = 0;
+      replayPreviewOperations();
+      previewOperations.clear();
+    }
+
+    recordEvent(event, "render", 1);
+    updateObservers("rendered " + count + " operations at full resolution");
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // Region methods
+  //////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void region(int x, int y, int width, int height) throws IllegalArgumentException {
+    if (x < 0 || y < 0 || width < 1 || height < 1) {
+      throw new IllegalArgumentException(
+              "Invalid region. The position cannot be negative and the size must be greater than "
+                      + "zero.");
+    }
+    runPendingFilters();
+    recordRegionChange(() -> region(x, y, width, height));
+    this.region = new Rectangle(x, y, width, height);
+    updateObservers("selected region " + width + "x" + height + " at (" + x + ", " + y + ")");
+  }
+
+  @Override
+  public void clearRegion() {
+    runPendingFilters();
+    recordRegionChange(this::clearRegion);
+    this.region = null;
+    updateObservers("selected whole image");
+  }
+
+  /**
+   * Records a change of region made while previewing, so that render() restricts the replayed
+   * operations the same way.
+   *
+   * @param change the region change to record
+   */
+  private void recordRegionChange(Runnable change) {
+    if (previewLevel > 0 && !replaying) {
+      previewOperations.add(change);
+    }
+  }
+
+  /**
+   * Returns the part of the current image that operations apply to. This is the selected region
+   * scaled to the preview level and clipped to the image, or the whole image if no region is
+   * selected.
+   *
+   * @return the bounds operations are restricted to, which may be empty
+   */
+  private Rectangle getBounds() {
+    Rectangle whole = new Rectangle(0, 0, getImageWidth(), getImageHeight());
+    if (region == null) {
+      return whole;
+    }
+
+    int x = region.x >> previewLevel;
+    int y = region.y >> previewLevel;
+    int right = (region.x + region.width + (1 << previewLevel) - 1) >> previewLevel;
+    int bottom = (region.y + region.height + (1 << previewLevel) - 1) >> previewLevel;
+    Rectangle scaled = new Rectangle(x, y, right - x, bottom - y);
+
+    Rectangle bounds = scaled.intersection(whole);
+    if (bounds.isEmpty()) {
+      return new Rectangle(0, 0, 0, 0);
+    }
+    return bounds;
+  }
+
+  /**
+   * Records an operation that is about to modify the image. While previewing, the operation is
+   * kept so that render() can replay it at full resolution. Otherwise the image is about to
+   * change, so the pyramid built from it is no longer valid.
+   *
+   * @param operation the operation to record
+   */
+  private void recordOperation(Runnable operation) {
+    if (replaying) {
+      return;
+    }
+    if (previewLevel > 0) {
+      previewOperations.add(operation);
+    } else {
+      dropPyramid();
+    }
+  }
+
+  /**
+   * Performs every recorded preview operation again on the current image.
+   */
+  private void replayPreviewOperations() {
+    Rectangle current = region;
+    region = previewRegion;
+    replaying = true;
+    try {
+      for (Runnable operation : previewOperations) {
+        operation.run();
+      }
+    } finally {
+      replaying = false;
+      region = current;
+    }
+  }
+
+  /**
+   * Leaves preview mode without rendering, discarding the recorded operations and the pyramid, as
+   * well as any filters collected for fusion.
+   */
+  private void discardPreview() {
+    // the image is about to be replaced, so filters not applied yet are no longer needed
+    pendingKernels.clear();
+    previewLevel = 0;
+    previewOperations.clear();
+    dropPyramid();
+  }
+
+  /**
+   * Replaces the current image with the specified one, releasing the current image unless the
+   * pyramid still uses it as its full resolution level.
+   *
+   * @param next the new current image
+   */
+  private void setImage(PixelStore next) {
+    if (image != null && image != next && (pyramid == null || image != pyramid.getLevel(0))) {
+      image.close();
+    }
+    image = next;
+  }
+
+  /**
+   * Releases the pyramid, keeping the current image if the pyramid shares it.
+   */
+  private void dropPyramid() {
+    if (pyramid != null) {
+      pyramid.close(image);
+      pyramid = null;
+    }
+  }
+
+  /**
+   * Scales a kernel for the current preview level. A kernel designed for full resolution only
+   * covers a fraction of a pixel at a coarser level, so it is blended with the identity kernel by
+   * the ratio of pixel areas between full resolution and the previewed level.
+   *
+   * @param kernel the full resolution kernel
+   * @return the kernel to apply at the current level
+   */
+  private double[][] previewKernel(double[][] kernel) {
+    if (previewLevel == 0) {
+      return kernel;
+    }
+
+    double weight = 1.0 / (1 << (2 * previewLevel));
+    double[][] result = new double[kernel.length][];
+    for (int i = 0; i < kernel.length; i++) {
+      result[i] = new double[kernel[i].length];
+      for (int j = 0; j < kernel[i].length; j++) {
+        result[i][j] = kernel[i][j] * weight;
+      }
+    }
+    result[kernel.length / 2][kernel[0].length / 2] += 1 - weight;
+    return result;
+  }
+
+  /**
+   * Scales a number of mosaic seeds for the current preview level so that the "glass pieces"
+   * cover the same proportion of the image as they would at full resolution.
+   *
+   * @param seeds the number of seeds at full resolution
+   * @return the number of seeds to use at the current level
+   */
+  private int previewSeeds(int seeds) {
+    return Math.max(1, seeds >> (2 * previewLevel));
   }
 
   /**
    * Performs a color transformation on the image based on a specified kernel.
    *
    * @param kernel a 2D double array representing the kernel to transform the image color
+   * @param action description of the transformation, used to report progress
    */
-  private void transform(double[][] kernel) {
-    int height = image.length;
-    int width = image[0].length;
+  private void transform(double[][] kernel, String action) {
+    runPendingFilters();
+    Rectangle bounds = getBounds();
+    int[][] channels = new int[MAX_CHANNELS][bounds.width];
+    int[] rgb = new int[MAX_CHANNELS];
+    PixelStore result = storage.create(bounds.width, bounds.height);
 
-    for (int row = 0; row < height; row++) {
-      for (int column = 0; column < width; column++) {
+    try {
+      for (int row = bounds.y; row < bounds.y + bounds.height; row++) {
+        for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+          image.readChannel(row, bounds.x, channel, channels[channel], 0, bounds.width);
+        }
+
+        for (int column = 0; column < bounds.width; column++) {
+          rgb[RED] = channels[RED][column];
+          rgb[GREEN] = channels[GREEN][column];
+          rgb[BLUE] = channels[BLUE][column];
 
-        int r = image[row][column][RED];
-        int g = image[row][column][GREEN];
-        int b = image[row][column][BLUE];
+          int[] newRGB = multiply(kernel, rgb);
 
-        int[] newRGB = multiply(kernel, new int[]{r, g, b});
+          channels[RED][column] = newRGB[RED];
+          channels[GREEN][column] = newRGB[GREEN];
+          channels[BLUE][column] = newRGB[BLUE];
+        }
 
-        setPixelRGB(newRGB, row, column);
+        for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+          result.writeChannel(row - bounds.y, 0, channel, channels[channel], 0, bounds.width);
+        }
+        reportProgress(action, row - bounds.y + 1, bounds.height);
       }
+
+      commit(result, bounds);
+    } finally {
+      result.close();
+    }
+  }
+
+  /**
+   * Replaces every value of each channel of the image by its entry in the table of that channel.
+   *
+   * @param tables a table of 256 values for each channel
+   * @param action description of the operation, used to report progress
+   */
+  private void lookup(int[][] tables, String action) {
+    Rectangle bounds = getBounds();
+    int[] values = new int[bounds.width];
+    PixelStore result = storage.create(bounds.width, bounds.height);
+
+    try {
+      for (int row = bounds.y; row < bounds.y + bounds.height; row++) {
+        for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+          int[] table = tables[channel];
+          image.readChannel(row, bounds.x, channel, values, 0, bounds.width);
+          for (int column = 0; column < bounds.width; column++) {
+            values[column] = table[values[column]];
+          }
+          result.writeChannel(row - bounds.y, 0, channel, values, 0, bounds.width);
+        }
+        reportProgress(action, row - bounds.y + 1, bounds.height);
+      }
+
+      commit(result, bounds);
+    } finally {
+      result.close();
     }
   }
 
@@ -340,7 +1266,7 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
     int numStripes = colors.size();
 
     // create image with correct dimensions
-    image = new int[height][width][MAX_CHANNELS];
+    setImage(storage.create(width, height));
 
     // determine stripe size from orientation
     int stripeSize;
@@ -425,9 +1351,9 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
    * @param column  width position of pixel
    */
   private void setPixelRGB(Color current, int row, int column) {
-    image[row][column][RED] = current.getRed();
-    image[row][column][GREEN] = current.getGreen();
-    image[row][column][BLUE] = current.getBlue();
+    image.set(row, column, RED, current.getRed());
+    image.set(row, column, GREEN, current.getGreen());
+    image.set(row, column, BLUE, current.getBlue());
   }
 
   /**
@@ -439,9 +1365,7 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
    * @param column width position of pixel
    */
   private void setPixelRGB(int[] rgb, int row, int column) {
-    image[row][column][RED] = rgb[RED];
-    image[row][column][GREEN] = rgb[GREEN];
-    image[row][column][BLUE] = rgb[BLUE];
+    image.setPixel(row, column, rgb);
   }
 
   /**
@@ -458,149 +1382,301 @@ public class ImageProcessorImpl extends AbstractImageListener implements ImagePr
 
   /**
    * Helper method for blur and sharpen. Applies the respective kernel to this
-   * model.ImageProcessor.
+   * model.ImageProcessor, within the selected region. Pixels around the region are read as needed
+   * by the kernel but only pixels inside the region are changed. Each channel is filtered row by
+   * row, keeping the rows of the image the kernel covers in a window that moves down the image.
+   *
+   * <p>The filtered region is written to a separate store and copied back once it is complete,
+   * unless filtering in place, in which case each row is written back as soon as it is filtered.
+   *
+   * <p>While fusion is on, the kernel is only collected, to be applied together with the filters
+   * that follow it. Previews and the wrap border mode are always filtered straight away.
    *
    * @param kernel the kernel to be applied.
-   * @return 3D matrix of the applied
+   * @param action description of the filter, used to report progress
    */
-  private int[][][] filter(double[][] kernel) {
-
-    int width = image[0].length;
-    int height = image.length;
-    int[][][] result = new int[height][width][MAX_CHANNELS];
+  private void filter(double[][] kernel, String action) {
+    if (fusion != FusionMode.OFF && previewLevel == 0 && border != BorderMode.WRAP) {
+      pendingKernels.add(kernel);
+      return;
+    }
+    runPendingFilters();
 
-    for (int channel = 0; channel < MAX_CHANNELS; channel++) {
-      for (int row = 0; row < height; row++) {
-        for (int column = 0; column < width; column++) {
-
-          int[][] imageKernel = createImageKernel(kernel, row, column, channel);
-          double newPixel = 0;
-
-          // Apply kernel to each pixel
-          int i;
-          int j;
-          for (i = 0; i < kernel.length; i++) {
-            for (j = 0; j < kernel.length; j++) {
-              newPixel += kernel[i][j] * imageKernel[i][j];
-            }
-          }
+    Rectangle bounds = getBounds();
+    if (inPlace) {
+      filterInto(kernel, bounds, image, bounds.x, bounds.y, action);
+      return;
+    }
 
-          result[row][column][channel] = clamp((int) newPixel, 0, 255);
+    PixelStore result = storage.create(bounds.width, bounds.height);
+    try {
+      filterInto(kernel, bounds, result, 0, 0, action);
+      commit(result, bounds);
+    } finally {
+      result.close();
+    }
+  }
 
-        }
+  /**
+   * Applies the kernels collected while fusion is on to the selected region in a single pass,
+   * tile by tile. When composing, the kernels are first combined into a single kernel. The result
+   * is always written to a separate store and copied back, even when filtering in place, since
+   * the tiles read pixels around them.
+   */
+  private void runPendingFilters() {
+    if (pendingKernels.isEmpty()) {
+      return;
+    }
+    List<double[][]> kernels = new ArrayList<>(pendingKernels);
+    pendingKernels.clear();
+    if (fusion == FusionMode.COMPOSE) {
+      double[][] composed = kernels.get(0);
+      for (int i = 1; i < kernels.size(); i++) {
+        composed = StencilChain.compose(composed, kernels.get(i));
       }
+      kernels = Collections.singletonList(composed);
     }
 
-    return result;
+    OperationEvent event = new OperationEvent();
+    Rectangle bounds = getBounds();
+    String action = "applying " + kernels.size() + " filters";
+    PixelStore result = storage.create(bounds.width, bounds.height);
+    try {
+      StencilChain.apply(image, bounds, kernels, border, result,
+              done -> reportProgress(action, done, bounds.height));
+      commit(result, bounds);
+    } finally {
+      result.close();
+    }
+    recordEvent(event, "fused filters", PARALLEL_THREADS);
   }
 
   /**
-   * Finds the 2D array around a pixel that is the same size as the kernel so that the kernel can be
-   * applied.
+   * Applies a kernel to the selected region of the image, writing the filtered pixels to a store,
+   * which may be the image itself.
    *
-   * @param kernel  the kernel to apply
-   * @param row     row of the pixel
-   * @param column  column of the pixel
-   * @param channel color channel of the pixel
-   * @return 2D array found around the pixel
+   * <p>Only the rows the kernel covers are kept, in a window that moves down the region, so the
+   * image can be filtered in place: a row is written back once the window has moved past it, and
+   * is never read again except through a border mode, for which the rows outside of the image are
+   * read before anything is written. Every row of the window is kept twice, as many rows apart as
+   * the kernel has, so the rows the kernel covers always follow each other in the window.
+   *
+   * @param kernel the kernel to be applied, with an odd number of rows and of columns
+   * @param bounds the region of the image to filter
+   * @param result the store to write the filtered region to
+   * @param x      column of the result to write the first column of the region to
+   * @param y      row of the result to write the first row of the region to
+   * @param action description of the filter, used to report progress
    */
-  private int[][] createImageKernel(double[][] kernel, int row, int column, int channel) {
-
-    int size = kernel.length;
-    int range = size / 2;
-    int[][] result = new int[size][size];
+  private void filterInto(double[][] kernel, Rectangle bounds, PixelStore result, int x, int y,
+                          String action) {
+    Convolution convolution = Convolution.of(kernel);
+    int rows = convolution.getRows();
+    int rowRange = rows / 2;
+    int columnRange = convolution.getColumns() / 2;
+    int paddedWidth = bounds.width + 2 * columnRange;
+
+    // rows of one channel around the row being filtered, padded by the range of the kernel
+    int[] window = new int[2 * rows * paddedWidth];
+    int[] incoming = new int[paddedWidth];
+    int[] filtered = new int[bounds.width];
+
+    // rows above and below the region that lie outside of the image
+    int[][] above = new int[rowRange][paddedWidth];
+    int[][] below = new int[rowRange][paddedWidth];
+    int bottom = bounds.y + bounds.height;
 
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-
-        int rowImage = row - range + i;
-        int columnImage = column - range + j;
+    for (int channel = 0; channel < MAX_CHANNELS; channel++) {
+      for (int i = 0; i < rowRange; i++) {
+        readPaddedRow(bounds.y - rowRange + i, bounds.x - columnRange, channel, above[i]);
+        readPaddedRow(bottom + i, bounds.x - columnRange, channel, below[i]);
+      }
 
-        //If the index is out of bounds for the image, set the imageKernel value as 0
-        if (rowImage < 0 || columnImage < 0 || rowImage >= image.length
-                || columnImage >= image[0].length) {
-          result[i][j] = 0;
-        } else {
-          result[i][j] = image[rowImage][columnImage][channel];
+      for (int row = bounds.y; row < bottom; row++) {
+        // only the row entering the bottom of the window has to be read, except at the top
+        int first = row == bounds.y ? row - rowRange : row + rowRange;
+        for (int i = first; i <= row + rowRange; i++) {
+          readWindowRow(i, bounds.x - columnRange, bounds.y, bottom, channel, above, below,
+                  incoming);
+          int slot = Math.floorMod(i, rows);
+          System.arraycopy(incoming, 0, window, slot * paddedWidth, paddedWidth);
+          System.arraycopy(incoming, 0, window, (slot + rows) * paddedWidth, paddedWidth);
         }
 
+        convolution.apply(window, Math.floorMod(row - rowRange, rows) * paddedWidth,
+                paddedWidth, filtered, 0, bounds.width);
+        result.writeChannel(row - bounds.y + y, x, channel, filtered, 0, bounds.width);
+        reportProgress(action, channel * bounds.height + row - bounds.y + 1,
+                MAX_CHANNELS * bounds.height);
       }
     }
+  }
 
-    return result;
+  /**
+   * Fills a row of the window of filterInto(), taking rows outside of the image from those read
+   * before filtering started.
+   *
+   * @param row     row of the image, may be outside of the image
+   * @param column  column of the first pixel to read, may be outside of the image
+   * @param top     first row of the region being filtered
+   * @param bottom  row after the last row of the region being filtered
+   * @param channel color channel to read
+   * @param above   the rows above the region, read before filtering started
+   * @param below   the rows below the region, read before filtering started
+   * @param values  array to read the values into
+   */
+  private void readWindowRow(int row, int column, int top, int bottom, int channel,
+                             int[][] above, int[][] below, int[] values) {
+    if (row < 0) {
+      System.arraycopy(above[row - top + above.length], 0, values, 0, values.length);
+    } else if (row >= getImageHeight()) {
+      System.arraycopy(below[row - bottom], 0, values, 0, values.length);
+    } else {
+      readPaddedRow(row, column, channel, values);
+    }
+  }
+
+  /**
+   * Reads one channel of part of a row of the image, making up the pixels outside of the image
+   * according to the border mode so that the kernel can be applied at the edges. Only the few
+   * pixels outside of the image are mapped one by one, the rest of the row is read in one go.
+   *
+   * @param row     row of the image to read, may be outside of the image
+   * @param column  column of the first pixel to read, may be outside of the image
+   * @param channel color channel to read
+   * @param values  array to read the values into, as many as it can hold
+   */
+  private void readPaddedRow(int row, int column, int channel, int[] values) {
+    int source = border.map(row, getImageHeight());
+    if (source < 0) {
+      Arrays.fill(values, 0);
+      return;
+    }
+
+    int start = Math.max(column, 0);
+    int end = Math.min(column + values.length, getImageWidth());
+    if (end > start) {
+      image.readChannel(source, start, channel, values, start - column, end - start);
+    }
+
+    int left = Math.min(start - column, values.length);
+    for (int i = 0; i < left; i++) {
+      values[i] = readBorderPixel(source, column + i, channel);
+    }
+    for (int i = Math.max(end - column, left); i < values.length; i++) {
+      values[i] = readBorderPixel(source, column + i, channel);
+    }
+  }
+
+  /**
+   * Reads one channel of a pixel that may be left or right of the image, according to the border
+   * mode.
+   *
+   * @param row     row of the image to read
+   * @param column  column of the pixel, may be outside of the image
+   * @param channel color channel to read
+   * @return the value of the channel
+   */
+  private int readBorderPixel(int row, int column, int channel) {
+    int source = border.map(column, getImageWidth());
+    return source < 0 ? 0 : image.get(row, source, channel);
   }
 
   @Override
   public void mosaic(int seeds) {
+    mosaic(seeds, SeedSampling.UNIFORM, new Random().nextLong());
+  }
 
-    int width = image[0].length;
-    int height = image.length;
-    List<int[]> seedList = pickRandomPixels(seeds);
+  @Override
+  public void mosaic(int seeds, SeedSampling sampling, long randomSeed) {
+    OperationEvent event = new OperationEvent();
+    runPendingFilters();
+
+    Rectangle bounds = getBounds();
+    if (bounds.isEmpty()) {
+      recordOperation(() -> mosaic(seeds, sampling, randomSeed));
+      recordEvent(event, "mosaic", 1);
+      updateObservers("added mosaic effect to image");
+      return;
+    }
+    // every pixel of the region is a seed at most
+    int seedCount = (int) Math.min(previewSeeds(seeds), (long) bounds.width * bounds.height);
+    int[] seedPixels = SeedSampler.sample(bounds.width, bounds.height, seedCount, sampling,
+            new Random(randomSeed));
+    PixelStore result = storage.create(bounds.width, bounds.height);
 
+    try {
+      mosaicInto(seedPixels, bounds, result);
+      commit(result, bounds);
+    } finally {
+      result.close();
+    }
 
-    for (int row = 0; row < height; row++) {
-      for (int column = 0; column < width; column++) {
+    recordOperation(() -> mosaic(seeds, sampling, randomSeed));
+    recordEvent(event, "mosaic", 1);
+    updateObservers("added mosaic effect to image");
+  }
 
-        int[] imagePixel = {row, column};
-        int[] seedPixel = seedList.get(0);
-        int[] closestSeedPixel = seedPixel;
-        double distance = distanceBetween(seedPixel, imagePixel);
+  /**
+   * Colors every pixel of the selected region with the color of the seed closest to it, writing
+   * the result to a separate store.
+   *
+   * @param seedPixels the seeds as indices in the region, row times its width plus column
+   * @param bounds     the region of the image to apply the mosaic to
+   * @param result     the store to write the region to
+   */
+  private void mosaicInto(int[] seedPixels, Rectangle bounds, PixelStore result) {
+    int seedCount = seedPixels.length;
+    int[] seedRows = new int[seedCount];
+    int[] seedColumns = new int[seedCount];
+    for (int i = 0; i < seedCount; i++) {
+      seedRows[i] = seedPixels[i] / bounds.width;
+      seedColumns[i] = seedPixels[i] % bounds.width;
+    }
+    int[] rgb = new int[MAX_CHANNELS];
 
-        for (int numSeeds = 1; numSeeds < seeds; numSeeds++) {
+    for (int row = 0; row < bounds.height; row++) {
+      for (int column = 0; column < bounds.width; column++) {
 
-          seedPixel = seedList.get(numSeeds);
-          double currentDistance = distanceBetween(seedPixel, imagePixel);
+        // squared distances pick the same seed as distances, without a square root
+        int closest = 0;
+        long distance = squaredDistance(seedRows[0], seedColumns[0], row, column);
 
+        for (int seed = 1; seed < seedCount; seed++) {
+          long currentDistance = squaredDistance(seedRows[seed], seedColumns[seed], row, column);
           if (currentDistance < distance) {
             distance = currentDistance;
-            closestSeedPixel = seedList.get(numSeeds);
+            closest = seed;
           }
         }
 
-        image[row][column] = image[closestSeedPixel[0]][closestSeedPixel[1]];
+        image.getPixel(bounds.y + seedRows[closest], bounds.x + seedColumns[closest], rgb);
+        result.setPixel(row, column, rgb);
       }
+      reportProgress("adding mosaic effect to image", row + 1, bounds.height);
     }
-    updateObservers("added mosaic effect to image");
-  }
-
-  private double distanceBetween(int[] current, int[] other) {
-    return Math.sqrt(Math.pow((current[0] - other[0]), 2) + Math.pow(current[1] - other[1], 2));
   }
 
   /**
+   * Returns the square of the distance between two pixels.
    *
+   * @param row         row of the first pixel
+   * @param column      column of the first pixel
+   * @param otherRow    row of the second pixel
+   * @param otherColumn column of the second pixel
+   * @return the squared distance
    */
-  private List<int[]> pickRandomPixels(int seeds) {
-
-    int width = image[0].length;
-    int height = image.length;
-
-    List<int[]> pixels = new ArrayList<>();
-    Random randomGen = new Random();
-
-    int i = 0;
-    while (i < seeds) {
-
-      // Generate two random numbers
-      int rand1 = randomGen.nextInt(width);
-      int rand2 = randomGen.nextInt(height);
-      int[] randResult = {rand2, rand1};
-
-      if (!pixels.contains(randResult)) {
-        pixels.add(i, randResult);
-        i++;
-      }
-    }
-
-    //System.out.println(pixels.size());
-    return pixels;
+  private static long squaredDistance(int row, int column, int otherRow, int otherColumn) {
+    long rowDistance = row - otherRow;
+    long columnDistance = column - otherColumn;
+    return rowDistance * rowDistance + columnDistance * columnDistance;
   }
 
   private int getImageWidth() {
-    return image[0].length;
+    return image.getWidth();
   }
 
   private int getImageHeight() {
-    return image.length;
+    return image.getHeight();
   }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class represents a multi-resolution pyramid of an image. Level 0 is the full resolution
+ * image and every following level is half the width and height of the level before it, computed by
+ * averaging 2x2 blocks of pixels.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class ImagePyramid {
+
+  /**
+   * Levels are no longer generated once either dimension would drop below this size.
+   */
+  private static final int MIN_LEVEL_SIZE = 16;
+
+  /**
+   * The levels of this pyramid, from full resolution (index 0) to the coarsest level.
+   */
+  private final List<PixelStore> levels;
+
+  /**
+   * Factory creating the stores holding the levels.
+   */
+  private final PixelStoreFactory factory;
+
+  /**
+   * Builds a pyramid from the specified full resolution image.
+   *
+   * @param image   the full resolution image, which becomes level 0 of the pyramid
+   * @param factory the factory to create the other levels with
+   */
+  public ImagePyramid(PixelStore image, PixelStoreFactory factory) {
+    this.levels = new ArrayList<>();
+    this.factory = factory;
+    levels.add(image);
+
+    PixelStore current = image;
+    while (current.getHeight() / 2 >= MIN_LEVEL_SIZE
+            && current.getWidth() / 2 >= MIN_LEVEL_SIZE) {
+      current = downsample(current);
+      levels.add(current);
+    }
+  }
+
+  /**
+   * Returns the number of levels in this pyramid, including the full resolution level.
+   *
+   * @return the number of levels
+   */
+  public int getLevelCount() {
+    return levels.size();
+  }
+
+  /**
+   * Returns the image at the specified level. The returned store is shared with this pyramid and
+   * must not be modified.
+   *
+   * @param level the level index, where 0 is full resolution
+   * @return the image at that level
+   * @throws IllegalArgumentException if the level does not exist in this pyramid
+   */
+  public PixelStore getLevel(int level) throws IllegalArgumentException {
+    if (level < 0 || level >= levels.size()) {
+      throw new IllegalArgumentException(
+              "Pyramid level " + level + " does not exist, levels range from 0 to "
+                      + (levels.size() - 1));
+    }
+    return levels.get(level);
+  }
+
+  /**
+   * Returns a copy of the image at the specified level which can safely be modified.
+   *
+   * @param level the level index, where 0 is full resolution
+   * @return a copy of the image at that level
+   * @throws IllegalArgumentException if the level does not exist in this pyramid
+   */
+  public PixelStore copyLevel(int level) throws IllegalArgumentException {
+    return PixelStore.copyOf(getLevel(level), factory);
+  }
+
+  /**
+   * Releases every level of this pyramid except the specified store, which is still in use.
+   *
+   * @param keep a store that must not be released, may be null
+   */
+  public void close(PixelStore keep) {
+    for (PixelStore level : levels) {
+      if (level != keep) {
+        level.close();
+      }
+    }
+    levels.clear();
+  }
+
+  /**
+   * Halves the width and height of an image by averaging each 2x2 block of pixels, reading each
+   * channel of the two rows of a block at once. An odd last row or column is dropped.
+   *
+   * @param image the image to downsample
+   * @return a new image half the size of the specified one
+   */
+  private PixelStore downsample(PixelStore image) {
+    int height = image.getHeight() / 2;
+    int width = image.getWidth() / 2;
+    PixelStore result = factory.create(width, height);
+    int[] upper = new int[width * 2];
+    int[] lower = new int[width * 2];
+    int[] averages = new int[width];
+
+    for (int row = 0; row < height; row++) {
+      int top = row * 2;
+      for (int channel = 0; channel < 3; channel++) {
+        image.readChannel(top, 0, channel, upper, 0, width * 2);
+        image.readChannel(top + 1, 0, channel, lower, 0, width * 2);
+        for (int column = 0; column < width; column++) {
+          int left = column * 2;
+          int sum = upper[left] + upper[left + 1] + lower[left] + lower[left + 1];
+          averages[column] = (sum + 2) / 4;
+        }
+        result.writeChannel(row, 0, channel, averages, 0, width);
+      }
+    }
+    return result;
+  }
+}
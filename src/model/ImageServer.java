@@ -0,0 +1,250 @@
+package model;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import utilities.HeapPixelStore;
+
+/**
+ * This class represents a long-running server that accepts scripts over a loopback socket and runs
+ * them in the same JVM, so that JVM startup, class loading, ImageIO plugin discovery and JIT
+ * warm-up are only paid once rather than for every script.
+ *
+ * <p>A client sends the text of a script and then shuts down its output. The server runs the
+ * script and sends back the same status lines ImageDriver prints, then closes the connection.
+ * File names in the script are resolved against the working directory of the server.
+ *
+ * <p>Scripts are only started while their estimated peak memory, together with that of the
+ * scripts already running, fits within a budget. The others wait for running scripts to finish,
+ * and the server logs the estimate and the state of the queue as each script is admitted.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class ImageServer implements Closeable {
+
+  /**
+   * Port used when none is specified.
+   */
+  public static final int DEFAULT_PORT = 5150;
+
+  /**
+   * Number of times the warm-up script is run before accepting scripts.
+   */
+  private static final int WARM_UP_ROUNDS = 20;
+
+  /**
+   * Socket accepting connections on the loopback address.
+   */
+  private final ServerSocket serverSocket;
+
+  /**
+   * Threads running the submitted scripts.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Admits scripts while their estimated memory fits within the budget.
+   */
+  private final AdmissionController admission;
+
+  /**
+   * Stream the admission of every script is logged to.
+   */
+  private final PrintStream log;
+
+  /**
+   * Creates a server listening on the specified loopback port and warms it up. Scripts are
+   * admitted within half of the maximum heap size, and their admission is not logged.
+   *
+   * @param port the port to listen on, or 0 to pick any free port
+   * @throws IOException if the port cannot be opened
+   */
+  public ImageServer(int port) throws IOException {
+    this(port, Runtime.getRuntime().maxMemory() / 2, null);
+  }
+
+  /**
+   * Creates a server listening on the specified loopback port and warms it up.
+   *
+   * @param port   the port to listen on, or 0 to pick any free port
+   * @param budget maximum number of bytes the running scripts may be estimated to use
+   * @param log    stream to log the admission of every script to, or null not to log it
+   * @throws IOException              if the port cannot be opened
+   * @throws IllegalArgumentException if the budget is not positive
+   */
+  public ImageServer(int port, long budget, PrintStream log)
+          throws IOException, IllegalArgumentException {
+    this.admission = new AdmissionController(budget);
+    this.log = log;
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    warmUp();
+  }
+
+  /**
+   * Returns the port this server is listening on.
+   *
+   * @return the local port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Returns the controller admitting scripts, which reports the estimates and the queue.
+   *
+   * @return the admission controller
+   */
+  public AdmissionController getAdmission() {
+    return admission;
+  }
+
+  /**
+   * Accepts connections and runs the scripts sent over them until this server is closed.
+   *
+   * @throws IOException if accepting a connection fails for a reason other than closing
+   */
+  public void serve() throws IOException {
+    while (!serverSocket.isClosed()) {
+      Socket client;
+      try {
+        client = serverSocket.accept();
+      } catch (SocketException e) {
+        // the server socket was closed while waiting
+        break;
+      }
+      workers.execute(() -> handle(client));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    workers.shutdown();
+  }
+
+  /**
+   * Runs the script sent over a single connection and replies with the status lines.
+   *
+   * @param client the connection to the client
+   */
+  private void handle(Socket client) {
+    try (Socket socket = client) {
+      String script = new String(readAll(socket.getInputStream()), StandardCharsets.UTF_8);
+      PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+
+      List<Command> commands;
+      try {
+        commands = ScriptParser.parse(script);
+      } catch (IllegalArgumentException e) {
+        // runScript reports the malformed script without running any of it, so it needs no
+        // memory to be admitted
+        ImageDriver.runScript(script, out);
+        out.flush();
+        return;
+      }
+      // a file that cannot be probed counts as the whole budget, so the script runs alone
+      long estimate = AdmissionController.estimate(commands, HeapPixelStore::new,
+              admission.getBudget());
+      try (AdmissionController.Permit permit = admission.admit(estimate)) {
+        if (log != null) {
+          log.println("Admitted script from port " + socket.getPort() + ": " + permit + ", "
+                  + admission);
+        }
+        ImageDriver.runScript(script, out);
+      }
+      out.flush();
+    } catch (IOException e) {
+      // the client went away, there is nobody left to report to
+    } catch (InterruptedException e) {
+      // the server is shutting down
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Sends a script to a server running on the specified loopback port and copies the status lines
+   * it returns to the specified stream.
+   *
+   * @param script the text of the script
+   * @param port   the port the server is listening on
+   * @param out    stream to copy the status lines to
+   * @throws IOException if the server cannot be reached
+   */
+  public static void submit(String script, int port, PrintStream out) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      OutputStream request = socket.getOutputStream();
+      request.write(script.getBytes(StandardCharsets.UTF_8));
+      request.flush();
+      socket.shutdownOutput();
+
+      Reader reply = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+      char[] buffer = new char[4096];
+      int read;
+      while ((read = reply.read(buffer)) != -1) {
+        out.print(new String(buffer, 0, read));
+      }
+      out.flush();
+    }
+  }
+
+  /**
+   * Reads a stream until its end.
+   *
+   * @param in the stream to read
+   * @return every byte in the stream
+   * @throws IOException if the stream cannot be read
+   */
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Triggers ImageIO plugin discovery and runs the image operations on a small generated image a
+   * few times, so the first submitted script does not pay for class loading and interpretation.
+   * Each round closes its workspace like a submitted script does.
+   */
+  private static void warmUp() {
+    ImageIO.getReaderFormatNames();
+    ImageIO.getWriterFormatNames();
+
+    for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+      try (Workspace workspace = new Workspace(Runtime.getRuntime().maxMemory() / 2,
+              Paths.get(System.getProperty("java.io.tmpdir")), HeapPixelStore::new)) {
+        ImageProcessor processor = new ImageProcessorImpl(HeapPixelStore::new, workspace);
+        processor.checkerboard(8, Color.white, Color.black);
+        processor.blur();
+        processor.sepia();
+        processor.greyscale();
+        processor.dither();
+        processor.mosaic(16);
+        processor.flush();
+      }
+    }
+  }
+}
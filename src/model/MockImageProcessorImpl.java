@@ -3,6 +3,14 @@ package model;
 import java.awt.Color;
 import java.util.List;
 
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
+import utilities.HeapPixelStore;
+import utilities.Histogram;
+import utilities.PngFilter;
+import utilities.SeedSampling;
+
 /**
  * A mock class of the ImageProcessor interface for use in testing.
  *
@@ -31,6 +39,22 @@ public class MockImageProcessorImpl extends AbstractImageListener implements Ima
     updateObservers("transformed image to greyscale color");
   }
 
+  @Override
+  public Histogram histogram() {
+    updateObservers("computed histogram");
+    return Histogram.of(new HeapPixelStore(0, 0), 0, 0, 0, 0);
+  }
+
+  @Override
+  public void autolevels() {
+    updateObservers("stretched image levels");
+  }
+
+  @Override
+  public void equalize() {
+    updateObservers("equalized image");
+  }
+
   @Override
   public void rainbowHorizontal(int height, int width, List<Color> colors) {
     updateObservers("created horizontal rainbow " + height + "x" + width);
@@ -51,18 +75,101 @@ public class MockImageProcessorImpl extends AbstractImageListener implements Ima
     updateObservers("added dither effect to image");
   }
 
+  @Override
+  public void dither(DitherMatrix matrix, int size) {
+    updateObservers("added ordered dither effect to image with " + size + "x" + size + " "
+            + matrix.name().toLowerCase() + " matrix");
+  }
+
   @Override
   public void mosaic(int seeds) {
     updateObservers("added mosaic effect to image with " + seeds + " seeds");
   }
 
+  @Override
+  public void mosaic(int seeds, SeedSampling sampling, long randomSeed) {
+    updateObservers("added " + sampling.name().toLowerCase() + " mosaic effect to image with "
+            + seeds + " seeds from random seed " + randomSeed);
+  }
+
+  @Override
+  public void load(String filename, String name) {
+    updateObservers("loaded image '" + filename + "' as '" + name + "'");
+  }
+
+  @Override
+  public void select(String name) {
+    updateObservers("selected image '" + name + "'");
+  }
+
+  @Override
+  public void setCancellationToken(CancellationToken token) {
+    updateObservers("set cancellation token");
+  }
+
+  @Override
+  public void setBorderMode(BorderMode mode) {
+    updateObservers("set border mode to " + mode.name().toLowerCase());
+  }
+
+  @Override
+  public void setInPlace(boolean inPlace) {
+    updateObservers("set in-place filtering " + (inPlace ? "on" : "off"));
+  }
+
+  @Override
+  public void setFusion(FusionMode mode) {
+    updateObservers("set filter fusion " + mode.name().toLowerCase());
+  }
+
+  @Override
+  public void setCompression(int level, PngFilter filter) {
+    updateObservers("set compression level " + level + ", " + filter.name().toLowerCase()
+            + " filter");
+  }
+
+  @Override
+  public void preview(int level) {
+    updateObservers("previewing image at level " + level);
+  }
+
+  @Override
+  public void render() {
+    updateObservers("rendered image at full resolution");
+  }
+
+  @Override
+  public void region(int x, int y, int width, int height) {
+    updateObservers("selected region " + width + "x" + height + " at (" + x + ", " + y + ")");
+  }
+
+  @Override
+  public void clearRegion() {
+    updateObservers("selected whole image");
+  }
+
   @Override
   public void save(String filename) {
     updateObservers("saved image '" + filename + "'");
   }
 
+  @Override
+  public void flush() {
+    // nothing is saved in the background
+  }
+
   @Override
   public void load(String filename) {
     updateObservers("loaded image '" + filename + "'");
   }
+
+  @Override
+  public void load(String filename, int scale) {
+    updateObservers("loaded image '" + filename + "' at 1/" + scale + " scale");
+  }
+
+  @Override
+  public void resize(int width, int height) {
+    updateObservers("resized image to " + width + "x" + height);
+  }
 }
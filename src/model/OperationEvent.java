@@ -0,0 +1,86 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class represents a Flight Recorder event covering a single operation of an
+ * ImageProcessorImpl, so that image work shows up next to garbage collection, allocation and lock
+ * events in the same recording. The event is timed from its creation to finish(), and its fields
+ * are only filled in when it is going to be recorded, so it costs next to nothing while the event
+ * is disabled.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+@Name("imageprocessor.Operation")
+@Label("Image Operation")
+@Category("Image Processor")
+@Description("An operation performed on an image")
+@StackTrace(false)
+public final class OperationEvent extends Event {
+
+  /**
+   * Name of the operation.
+   */
+  @Label("Operation")
+  private String operation;
+
+  /**
+   * Width of the image after the operation.
+   */
+  @Label("Width")
+  private int width;
+
+  /**
+   * Height of the image after the operation.
+   */
+  @Label("Height")
+  private int height;
+
+  /**
+   * Size of the pixels of the image after the operation.
+   */
+  @Label("Bytes")
+  @DataAmount
+  private long bytes;
+
+  /**
+   * Number of threads the operation may run on.
+   */
+  @Label("Threads")
+  private int threads;
+
+  /**
+   * Creates an event and starts timing it.
+   */
+  OperationEvent() {
+    begin();
+  }
+
+  /**
+   * Stops timing this event and records it if Flight Recorder is recording it.
+   *
+   * @param operation name of the operation
+   * @param width     width of the image after the operation
+   * @param height    height of the image after the operation
+   * @param bytes     size of the pixels of the image after the operation
+   * @param threads   number of threads the operation may run on
+   */
+  void finish(String operation, int width, int height, long bytes, int threads) {
+    end();
+    if (shouldCommit()) {
+      this.operation = operation;
+      this.width = width;
+      this.height = height;
+      this.bytes = bytes;
+      this.threads = threads;
+      commit();
+    }
+  }
+}
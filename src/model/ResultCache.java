@@ -0,0 +1,306 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class keeps the images produced by the commands of scripts in a directory, so that running
+ * a script again after changing its last few commands can start from the image produced by the
+ * longest unchanged part of it. Every image is stored under a hash of the commands that produced it
+ * and of the size and modification time of the files they loaded, so a changed command or input
+ * file gives a different key. Images are stored as raw bytes, which are much faster to write and
+ * read than a compressed format, and the least recently used ones are removed once the directory
+ * grows past its budget.
+ *
+ * <p>Only the part of a script before its first save, select, named load, preview, render or
+ * mosaic without a random seed is cached, since those write files, depend on other images or
+ * preview state, or are random.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class ResultCache {
+
+  /**
+   * Maximum total size of the cached images when none is specified.
+   */
+  public static final long DEFAULT_BUDGET = 1024L * 1024 * 1024;
+
+  /**
+   * Number written at the start of every cached image.
+   */
+  private static final int MAGIC = 0x49505257;
+
+  /**
+   * Extension of the cached images.
+   */
+  private static final String EXTENSION = ".raw";
+
+  /**
+   * Commands that create the image from nothing or from a file.
+   */
+  private static final List<String> SOURCES = Arrays.asList("load", "checkerboard", "rainbow");
+
+  /**
+   * Commands that change the pixels of the image, depending only on the image and the settings.
+   */
+  private static final List<String> OPERATIONS = Arrays.asList("blur", "sharpen", "sepia",
+          "greyscale", "dither", "autolevels", "equalize", "resize");
+
+  /**
+   * Commands that only change settings, which are performed again when resuming after them.
+   */
+  private static final List<String> SETTINGS = Arrays.asList("border", "inplace", "fusion",
+          "compression", "region", "deadline");
+
+  /**
+   * Commands that neither change the image nor settings.
+   */
+  private static final List<String> QUERIES = Collections.singletonList("histogram");
+
+  /**
+   * Directory the images are stored in.
+   */
+  private final Path directory;
+
+  /**
+   * Maximum total size of the cached images in bytes.
+   */
+  private final long budget;
+
+  /**
+   * Creates a cache storing images in the specified directory.
+   *
+   * @param directory the directory, created if it does not exist
+   * @param budget    maximum total size of the cached images in bytes
+   * @throws IOException if the directory cannot be created
+   */
+  public ResultCache(Path directory, long budget) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.budget = budget;
+  }
+
+  /**
+   * Determines if a command only changes settings, so that it has to be performed again when a
+   * script resumes after it.
+   *
+   * @param command the command
+   * @return true if the command only changes settings
+   */
+  public static boolean isSetting(Command command) {
+    return SETTINGS.contains(command.getName());
+  }
+
+  /**
+   * Computes the key of the image after every command of a script. A key only exists after a
+   * command that changes the image, once an image has been created, and before the first command
+   * that cannot be cached.
+   *
+   * @param commands the commands of the script
+   * @return the key after every command, or null after the commands that have none
+   */
+  public static List<String> keys(List<Command> commands) {
+    List<String> keys = new ArrayList<>();
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+
+    boolean created = false;
+    boolean cacheable = true;
+    for (Command command : commands) {
+      String name = command.getName();
+      String text = command.toString();
+      boolean source = SOURCES.contains(name) && !text.contains(" as ");
+      // a mosaic is only repeatable with the seed of its random number generator
+      boolean operation = OPERATIONS.contains(name)
+              || (name.equals("mosaic") && text.contains(" seed "));
+      cacheable = cacheable && (source || operation || SETTINGS.contains(name)
+              || QUERIES.contains(name));
+
+      if (cacheable) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        if (name.equals("load")) {
+          cacheable = addFileIdentity(digest, text.split(" ")[1]);
+        }
+      }
+      created = created || source;
+
+      if (cacheable && created && (source || operation)) {
+        keys.add(toHex(clone(digest).digest()));
+      } else {
+        keys.add(null);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Adds the absolute path, size and modification time of a file to a digest.
+   *
+   * @param digest   the digest
+   * @param filename the file
+   * @return true if the file exists, false if it cannot be read and nothing after it can be cached
+   */
+  private static boolean addFileIdentity(MessageDigest digest, String filename) {
+    try {
+      Path path = Paths.get(filename).toAbsolutePath();
+      String identity = path + "|" + Files.size(path) + "|"
+              + Files.getLastModifiedTime(path).toMillis() + "\n";
+      digest.update(identity.getBytes(StandardCharsets.UTF_8));
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a copy of a digest, so that its current hash can be taken while it keeps going.
+   *
+   * @param digest the digest
+   * @return the copy
+   */
+  private static MessageDigest clone(MessageDigest digest) {
+    try {
+      return (MessageDigest) digest.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("Digest cannot be copied", e);
+    }
+  }
+
+  /**
+   * Writes bytes as hexadecimal digits.
+   *
+   * @param bytes the bytes
+   * @return the digits, two per byte
+   */
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Reads the image stored under a key, marking it as recently used.
+   *
+   * @param key     the key
+   * @param storage the factory creating the store to read the image into
+   * @return the image, or null if there is no image under the key or it cannot be read
+   */
+  public PixelStore get(String key, PixelStoreFactory storage) {
+    Path file = directory.resolve(key + EXTENSION);
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      PixelStore image = storage.create(in.readInt(), in.readInt());
+      try {
+        TileWorker.readPixels(in, image);
+      } catch (IOException e) {
+        image.close();
+        throw e;
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return image;
+    } catch (IOException e) {
+      // a missing or damaged entry is treated as not cached
+      return null;
+    }
+  }
+
+  /**
+   * Stores an image under a key, then removes the least recently used images until the cache
+   * fits within its budget. The image is written to a temporary file first, so an interrupted
+   * write never leaves a damaged entry behind. Failing to store an image is not an error, since
+   * the cache only saves time.
+   *
+   * @param key   the key
+   * @param image the image to store
+   */
+  public void put(String key, PixelStore image) {
+    Path file = directory.resolve(key + EXTENSION);
+    if (Files.exists(file)) {
+      return;
+    }
+    try {
+      Path temporary = Files.createTempFile(directory, key, ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(image.getWidth());
+          out.writeInt(image.getHeight());
+          TileWorker.writePixels(image, out);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+      evict();
+    } catch (IOException e) {
+      // the image will be computed again next time
+    }
+  }
+
+  /**
+   * Removes the least recently used images until the cache fits within its budget.
+   *
+   * @throws IOException if the directory cannot be listed
+   */
+  private void evict() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      entries.forEach(files::add);
+    }
+
+    long total = 0;
+    List<FileTime> times = new ArrayList<>();
+    for (Path file : files) {
+      total += Files.size(file);
+      times.add(Files.getLastModifiedTime(file));
+    }
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparing(times::get));
+
+    for (int i = 0; i < order.size() && total > budget; i++) {
+      Path file = files.get(order.get(i));
+      try {
+        long size = Files.size(file);
+        Files.delete(file);
+        total -= size;
+      } catch (NoSuchFileException e) {
+        // removed by another run sharing the directory
+      }
+    }
+  }
+}
@@ -0,0 +1,510 @@
+package model;
+
+import java.awt.Color;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
+import utilities.Orientation;
+import utilities.PngEncoder;
+import utilities.PngFilter;
+import utilities.SeedSampling;
+import utilities.ThresholdMap;
+
+/**
+ * This class compiles the text of a script into a list of commands before any of them is
+ * performed. Every command name and argument is checked up front, so a malformed script is
+ * rejected without doing any image processing, and arguments such as orientations and colors are
+ * resolved only once.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class ScriptParser {
+
+  /**
+   * Colors that can be named in a script, keyed by their lower case name. Built once from the
+   * static members of the Color class.
+   */
+  private static final Map<String, Color> COLORS = findColors();
+
+  /**
+   * The words of the script.
+   */
+  private final List<String> tokens;
+
+  /**
+   * The line each word of the script is on.
+   */
+  private final List<Integer> lines;
+
+  /**
+   * Index of the next word to read.
+   */
+  private int position;
+
+  /**
+   * Creates a parser for the specified script text.
+   *
+   * @param script the text of the script
+   */
+  private ScriptParser(String script) {
+    this.tokens = new ArrayList<>();
+    this.lines = new ArrayList<>();
+
+    String[] scriptLines = script.split("\r?\n");
+    for (int i = 0; i < scriptLines.length; i++) {
+      for (String token : scriptLines[i].trim().split("\\s+")) {
+        if (!token.isEmpty()) {
+          tokens.add(token);
+          lines.add(i + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compiles the specified script into a list of commands.
+   *
+   * @param script the text of the script
+   * @return the commands of the script, in order
+   * @throws IllegalArgumentException if any command in the script is unsupported or has missing
+   *                                  or invalid arguments. The message names the offending line
+   */
+  public static List<Command> parse(String script) throws IllegalArgumentException {
+    ScriptParser parser = new ScriptParser(script);
+    List<Command> commands = new ArrayList<>();
+
+    while (parser.hasNext()) {
+      commands.add(parser.nextCommand());
+    }
+    return Collections.unmodifiableList(commands);
+  }
+
+  /**
+   * Determines if there are words left in the script.
+   *
+   * @return true if there are more words to read
+   */
+  private boolean hasNext() {
+    return position < tokens.size();
+  }
+
+  /**
+   * Reads the next command and its arguments.
+   *
+   * @return the compiled command
+   * @throws IllegalArgumentException if the command is unsupported or its arguments are invalid
+   */
+  private Command nextCommand() throws IllegalArgumentException {
+    int line = lines.get(position);
+    String command = tokens.get(position++).toLowerCase();
+
+    switch (command) {
+      case "load":
+        String loadName = nextWord(command);
+        if (hasNext() && tokens.get(position).equalsIgnoreCase("as")) {
+          // the image is given a name to select it by later
+          position++;
+          String slotName = nextWord(command);
+          return new Command(command, command + " " + loadName + " as " + slotName, line,
+                  controller -> controller.loadImage(loadName, slotName),
+                  Map.of("file", loadName, "as", slotName));
+        }
+        if (hasNext() && tokens.get(position).equalsIgnoreCase("scale")) {
+          // the image is decoded at a reduced size
+          position++;
+          int scale = nextPositiveInt(command);
+          return new Command(command, command + " " + loadName + " scale " + scale, line,
+                  controller -> controller.loadImage(loadName, scale),
+                  Map.of("file", loadName, "scale", scale));
+        }
+        return new Command(command, command + " " + loadName, line,
+                controller -> controller.loadImage(loadName), Map.of("file", loadName));
+      case "save":
+        String saveName = nextWord(command);
+        return new Command(command, command + " " + saveName, line,
+                controller -> controller.saveImage(saveName), Map.of("file", saveName));
+      case "select":
+        String selectName = nextWord(command);
+        return new Command(command, command + " " + selectName, line,
+                controller -> controller.doSelect(selectName), Map.of("name", selectName));
+      case "deadline":
+        // argument will be the time allowed in milliseconds
+        int millis = nextPositiveInt(command);
+        return new Command(command, command + " " + millis, line,
+                controller -> controller.doDeadline(millis), Map.of("millis", millis));
+      case "border":
+        // argument is how pixels outside of the image are made up
+        int modeLine = lines.get(position - 1);
+        String strMode = nextWord(command).toLowerCase();
+        BorderMode mode = getBorderModeFromString(strMode, modeLine);
+        return new Command(command, command + " " + strMode, line,
+                controller -> controller.doBorder(mode), Map.of("mode", mode));
+      case "inplace":
+        // argument is on or off
+        int switchLine = lines.get(position - 1);
+        String strSwitch = nextWord(command).toLowerCase();
+        if (!strSwitch.equals("on") && !strSwitch.equals("off")) {
+          throw error(switchLine, "Expected on or off for command '" + command + "' but found '"
+                  + strSwitch + "'");
+        }
+        boolean inPlace = strSwitch.equals("on");
+        return new Command(command, command + " " + strSwitch, line,
+                controller -> controller.doInPlace(inPlace), Map.of("on", inPlace));
+      case "fusion":
+        // argument is off, on or compose
+        int fusionLine = lines.get(position - 1);
+        String strFusion = nextWord(command).toLowerCase();
+        FusionMode fusion = getFusionModeFromString(strFusion, fusionLine);
+        return new Command(command, command + " " + strFusion, line,
+                controller -> controller.doFusion(fusion), Map.of("mode", fusion));
+      case "compression":
+        // arguments are the PNG compression level and the row filter
+        int levelLine = hasNext() ? lines.get(position) : line;
+        int compressionLevel = nextInt(command, 0);
+        if (compressionLevel > PngEncoder.MAX_LEVEL) {
+          throw error(levelLine, "Compression level for command '" + command
+                  + "' must be at most " + PngEncoder.MAX_LEVEL);
+        }
+        int filterLine = lines.get(position - 1);
+        String strFilter = nextWord(command).toLowerCase();
+        PngFilter filter = getFilterFromString(strFilter, filterLine);
+        return new Command(command, command + " " + compressionLevel + " " + strFilter, line,
+                controller -> controller.doCompression(compressionLevel, filter),
+                Map.of("level", compressionLevel, "filter", filter));
+      case "blur":
+        return new Command(command, command, line, controller -> controller.doBlur());
+      case "sharpen":
+        return new Command(command, command, line, controller -> controller.doSharpen());
+      case "sepia":
+        return new Command(command, command, line, controller -> controller.doSepia());
+      case "greyscale":
+        return new Command(command, command, line, controller -> controller.doGreyScale());
+      case "resize":
+        // arguments are the new width and height
+        int resizeWidth = nextPositiveInt(command);
+        int resizeHeight = nextPositiveInt(command);
+        return new Command(command, command + " " + resizeWidth + " " + resizeHeight, line,
+                controller -> controller.doResize(resizeWidth, resizeHeight),
+                Map.of("width", resizeWidth, "height", resizeHeight));
+      case "histogram":
+        return new Command(command, command, line, controller -> controller.doHistogram());
+      case "autolevels":
+        return new Command(command, command, line, controller -> controller.doAutoLevels());
+      case "equalize":
+        return new Command(command, command, line, controller -> controller.doEqualize());
+      case "rainbow":
+        // argument order must be specified as orientation, height, width, colors
+        String strOrientation = nextWord(command).toLowerCase();
+        Orientation orientation = getOrientationFromString(strOrientation, line);
+        int height = nextPositiveInt(command);
+        int width = nextPositiveInt(command);
+
+        // take colors formatted as single token with commas
+        // ex: "Red,Blue,Green"
+        String strColors = nextWord(command).toLowerCase();
+        List<Color> colors = parseColorsToList(strColors, line);
+
+        return new Command(command,
+                command + " " + strOrientation + " " + height + " " + width + " " + strColors,
+                line,
+                controller -> controller.doRainbow(orientation, height, width, colors),
+                Map.of("orientation", orientation, "height", height, "width", width,
+                        "colors", colors));
+      case "checkerboard":
+        // argument order must be specified as size, primary color, secondary color
+        int size = nextPositiveInt(command);
+        String strPrimary = nextWord(command).toLowerCase();
+        String strSecondary = nextWord(command).toLowerCase();
+        Color primary = parseColorFromString(strPrimary, line);
+        Color secondary = parseColorFromString(strSecondary, line);
+
+        return new Command(command,
+                command + " " + size + " " + strPrimary + " " + strSecondary, line,
+                controller -> controller.doCheckerboard(size, primary, secondary),
+                Map.of("size", size, "primary", primary, "secondary", secondary));
+      case "dither":
+        // optional arguments are "ordered" or "bluenoise" and the size of the threshold matrix
+        if (!hasNext() || (!tokens.get(position).equalsIgnoreCase("ordered")
+                && !tokens.get(position).equalsIgnoreCase("bluenoise"))) {
+          return new Command(command, command, line, controller -> controller.doDither());
+        }
+        String strMatrix = tokens.get(position++).toLowerCase();
+        DitherMatrix matrix = strMatrix.equals("ordered") ? DitherMatrix.BAYER
+                : DitherMatrix.BLUE_NOISE;
+        int matrixLine = hasNext() ? lines.get(position) : line;
+        int matrixSize = nextInt(command, 2);
+        if (matrixSize > ThresholdMap.MAX_SIZE || Integer.bitCount(matrixSize) != 1) {
+          throw error(matrixLine, "Matrix size for command '" + command
+                  + "' must be a power of 2 up to " + ThresholdMap.MAX_SIZE);
+        }
+        return new Command(command, command + " " + strMatrix + " " + matrixSize, line,
+                controller -> controller.doDither(matrix, matrixSize),
+                Map.of("matrix", matrix, "size", matrixSize));
+      case "mosaic":
+        // arguments will be number of seeds, then optionally how they are spread and "seed" with
+        // the seed of the random number generator
+        int seeds = nextPositiveInt(command);
+        String mosaicText = command + " " + seeds;
+        if (!hasNext() || (!isSeedSampling(tokens.get(position))
+                && !tokens.get(position).equalsIgnoreCase("seed"))) {
+          return new Command(command, mosaicText, line,
+                  controller -> controller.doMosaic(seeds), Map.of("seeds", seeds));
+        }
+        SeedSampling sampling = SeedSampling.UNIFORM;
+        if (isSeedSampling(tokens.get(position))) {
+          sampling = SeedSampling.valueOf(tokens.get(position++).toUpperCase());
+          mosaicText += " " + sampling.name().toLowerCase();
+        }
+        SeedSampling mosaicSampling = sampling;
+        if (hasNext() && tokens.get(position).equalsIgnoreCase("seed")) {
+          position++;
+          int randomSeed = nextInt(command, 0);
+          return new Command(command, mosaicText + " seed " + randomSeed, line,
+                  controller -> controller.doMosaic(seeds, mosaicSampling, randomSeed),
+                  Map.of("seeds", seeds, "sampling", mosaicSampling, "seed", randomSeed));
+        }
+        return new Command(command, mosaicText, line,
+                controller -> controller.doMosaic(seeds, mosaicSampling, new Random().nextLong()),
+                Map.of("seeds", seeds, "sampling", mosaicSampling));
+      case "preview":
+        // argument will be the pyramid level
+        int level = nextPositiveInt(command);
+        return new Command(command, command + " " + level, line,
+                controller -> controller.doPreview(level), Map.of("level", level));
+      case "render":
+        return new Command(command, command, line, controller -> controller.doRender());
+      case "region":
+        // arguments will be "all", or the x, y, width and height of the region
+        if (hasNext() && tokens.get(position).equalsIgnoreCase("all")) {
+          position++;
+          return new Command(command, command + " all", line,
+                  controller -> controller.doClearRegion());
+        }
+        int x = nextInt(command, 0);
+        int y = nextInt(command, 0);
+        int regionWidth = nextPositiveInt(command);
+        int regionHeight = nextPositiveInt(command);
+        return new Command(command,
+                command + " " + x + " " + y + " " + regionWidth + " " + regionHeight, line,
+                controller -> controller.doRegion(x, y, regionWidth, regionHeight),
+                Map.of("x", x, "y", y, "width", regionWidth, "height", regionHeight));
+      default:
+        throw error(line, "Unsupported command '" + command + "'");
+    }
+  }
+
+  /**
+   * Reads the next word of the script as an argument to the specified command.
+   *
+   * @param command the command the argument belongs to
+   * @return the argument
+   * @throws IllegalArgumentException if the script ends before the argument
+   */
+  private String nextWord(String command) throws IllegalArgumentException {
+    if (!hasNext()) {
+      throw error(lines.get(position - 1), "Missing argument for command '" + command + "'");
+    }
+    return tokens.get(position++);
+  }
+
+  /**
+   * Reads the next word of the script as a positive integer argument to the specified command.
+   *
+   * @param command the command the argument belongs to
+   * @return the argument
+   * @throws IllegalArgumentException if the argument is missing, not an integer or less than 1
+   */
+  private int nextPositiveInt(String command) throws IllegalArgumentException {
+    return nextInt(command, 1);
+  }
+
+  /**
+   * Reads the next word of the script as an integer argument to the specified command.
+   *
+   * @param command the command the argument belongs to
+   * @param min     the smallest value allowed
+   * @return the argument
+   * @throws IllegalArgumentException if the argument is missing, not an integer or less than min
+   */
+  private int nextInt(String command, int min) throws IllegalArgumentException {
+    int line = hasNext() ? lines.get(position) : lines.get(position - 1);
+    String word = nextWord(command);
+    int value;
+    try {
+      value = Integer.parseInt(word);
+    } catch (NumberFormatException e) {
+      throw error(line, "Expected a number for command '" + command + "' but found '" + word
+              + "'");
+    }
+    if (value < min) {
+      throw error(line, "Argument for command '" + command + "' must be at least " + min);
+    }
+    return value;
+  }
+
+  /**
+   * Parses a String version of an orientation and returns the correct Orientation enum value.
+   *
+   * @param strOrientation string version of an orientation
+   * @param line           the line of the script the orientation is on
+   * @return the correct orientation enum value
+   * @throws IllegalArgumentException if an unsupported orientation string is passed in
+   */
+  private static Orientation getOrientationFromString(String strOrientation, int line)
+          throws IllegalArgumentException {
+    switch (strOrientation) {
+      case "vertical":
+        return Orientation.VERTICAL;
+      case "horizontal":
+        return Orientation.HORIZONTAL;
+      default:
+        throw error(line, "Unsupported orientation '" + strOrientation + "' specified for "
+                + "rainbow command");
+    }
+  }
+
+  /**
+   * Parses a String version of a border mode and returns the correct BorderMode enum value.
+   *
+   * @param strMode string version of a border mode
+   * @param line    the line of the script the border mode is on
+   * @return the correct border mode enum value
+   * @throws IllegalArgumentException if an unsupported border mode string is passed in
+   */
+  private static BorderMode getBorderModeFromString(String strMode, int line)
+          throws IllegalArgumentException {
+    for (BorderMode mode : BorderMode.values()) {
+      if (mode.name().equalsIgnoreCase(strMode)) {
+        return mode;
+      }
+    }
+    throw error(line, "Unsupported border mode '" + strMode + "' specified for border command");
+  }
+
+  /**
+   * Parses a String version of a fusion mode and returns the correct FusionMode enum value.
+   *
+   * @param strMode string version of a fusion mode
+   * @param line    the line of the script the mode is on
+   * @return the correct fusion mode enum value
+   * @throws IllegalArgumentException if an unsupported fusion mode string is passed in
+   */
+  private static FusionMode getFusionModeFromString(String strMode, int line)
+          throws IllegalArgumentException {
+    for (FusionMode mode : FusionMode.values()) {
+      if (mode.name().equalsIgnoreCase(strMode)) {
+        return mode;
+      }
+    }
+    throw error(line, "Unsupported fusion mode '" + strMode + "' specified for fusion command");
+  }
+
+  /**
+   * Determines if a word names a way of spreading mosaic seeds.
+   *
+   * @param word the word
+   * @return true if the word is the name of a SeedSampling value
+   */
+  private static boolean isSeedSampling(String word) {
+    for (SeedSampling sampling : SeedSampling.values()) {
+      if (sampling.name().equalsIgnoreCase(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses a String version of a PNG row filter and returns the correct PngFilter enum value.
+   *
+   * @param strFilter string version of a filter
+   * @param line      the line of the script the filter is on
+   * @return the correct filter enum value
+   * @throws IllegalArgumentException if an unsupported filter string is passed in
+   */
+  private static PngFilter getFilterFromString(String strFilter, int line)
+          throws IllegalArgumentException {
+    for (PngFilter filter : PngFilter.values()) {
+      if (filter.name().equalsIgnoreCase(strFilter)) {
+        return filter;
+      }
+    }
+    throw error(line, "Unsupported filter '" + strFilter + "' specified for compression command");
+  }
+
+  /**
+   * Parses a single string and returns a List of Colors.
+   *
+   * @param strColors string to parse with colors
+   * @param line      the line of the script the colors are on
+   * @return List of Color objects
+   * @throws IllegalArgumentException if any of the colors is unsupported
+   */
+  private static List<Color> parseColorsToList(String strColors, int line)
+          throws IllegalArgumentException {
+    List<Color> colors = new ArrayList<>();
+    for (String color : strColors.split(",")) {
+      colors.add(parseColorFromString(color, line));
+    }
+    return Collections.unmodifiableList(colors);
+  }
+
+  /**
+   * Parses a Color object from its string representation.
+   *
+   * @param strColor string representation of the color
+   * @param line     the line of the script the color is on
+   * @return the Color object representing the string version
+   * @throws IllegalArgumentException if an invalid color is passed in
+   */
+  private static Color parseColorFromString(String strColor, int line)
+          throws IllegalArgumentException {
+    Color col = COLORS.get(strColor);
+    if (col == null) {
+      throw error(line, "Unsupported color '" + strColor + "'");
+    }
+    return col;
+  }
+
+  /**
+   * Finds the named colors of the Color class. Uses reflection to access static members of the
+   * Color class, as suggested by Erick Robertson at
+   * https://stackoverflow.com/questions/2854043/converting-a-string-to-color-in-java.
+   *
+   * @return the colors keyed by their lower case name
+   */
+  private static Map<String, Color> findColors() {
+    Map<String, Color> colors = new HashMap<>();
+    for (Field field : Color.class.getFields()) {
+      if (Modifier.isStatic(field.getModifiers()) && field.getType() == Color.class) {
+        try {
+          colors.put(field.getName().toLowerCase(), (Color) field.get(null));
+        } catch (IllegalAccessException e) {
+          // public fields of Color are always accessible
+        }
+      }
+    }
+    return Collections.unmodifiableMap(colors);
+  }
+
+  /**
+   * Creates an exception describing a problem on the specified line of the script.
+   *
+   * @param line    the line of the script
+   * @param message the description of the problem
+   * @return the exception to throw
+   */
+  private static IllegalArgumentException error(int line, String message) {
+    return new IllegalArgumentException("Line " + line + ": " + message);
+  }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class represents a strip of consecutive rows of an image, as full width rows held in their
+ * own store together with the position of their top row in the image. Images are streamed through
+ * a StripProcessor as a sequence of strips from the top row to the bottom one.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class Strip {
+
+  /**
+   * Row of the image of the first row of the strip.
+   */
+  private final int top;
+
+  /**
+   * The pixels of the rows.
+   */
+  private final PixelStore pixels;
+
+  /**
+   * Creates a strip, taking ownership of the store of its rows.
+   *
+   * @param top    row of the image of the first row of the strip
+   * @param pixels the pixels of the rows, at least one
+   * @throws IllegalArgumentException if the top row is negative or the strip has no pixels
+   */
+  public Strip(int top, PixelStore pixels) throws IllegalArgumentException {
+    if (top < 0 || pixels.getWidth() < 1 || pixels.getHeight() < 1) {
+      throw new IllegalArgumentException("A strip needs at least one pixel and a top row of at "
+              + "least 0.");
+    }
+    this.top = top;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Creates a strip by copying rows of an image.
+   *
+   * @param image   the image, which is not changed
+   * @param top     the first row to copy
+   * @param rows    number of rows to copy
+   * @param storage the factory creating the store of the strip
+   * @return the strip
+   * @throws IllegalArgumentException if the rows are not all inside of the image
+   */
+  public static Strip copyOf(PixelStore image, int top, int rows, PixelStoreFactory storage)
+          throws IllegalArgumentException {
+    if (top < 0 || rows < 1 || top + rows > image.getHeight()) {
+      throw new IllegalArgumentException("Rows " + top + " to " + (top + rows - 1)
+              + " are not inside of the image.");
+    }
+    PixelStore pixels = storage.create(image.getWidth(), rows);
+    copyRows(image, top, pixels, 0, rows);
+    return new Strip(top, pixels);
+  }
+
+  /**
+   * Returns the row of the image of the first row of the strip.
+   *
+   * @return the top row
+   */
+  public int getTop() {
+    return top;
+  }
+
+  /**
+   * Returns the row of the image after the last row of the strip.
+   *
+   * @return the bottom row, exclusive
+   */
+  public int getBottom() {
+    return top + pixels.getHeight();
+  }
+
+  /**
+   * Returns the pixels of the rows, which belong to whoever holds the strip.
+   *
+   * @return the pixels
+   */
+  public PixelStore getPixels() {
+    return pixels;
+  }
+
+  /**
+   * Copies full rows from one store to another.
+   *
+   * @param source    the store to copy from
+   * @param sourceRow the first row to copy
+   * @param target    the store to copy to, as wide as the source
+   * @param targetRow the row the first row is copied to
+   * @param rows      number of rows to copy
+   */
+  static void copyRows(PixelStore source, int sourceRow, PixelStore target, int targetRow,
+                       int rows) {
+    int width = source.getWidth();
+    int[] values = new int[width];
+    for (int channel = 0; channel < 3; channel++) {
+      for (int row = 0; row < rows; row++) {
+        source.readChannel(sourceRow + row, 0, channel, values, 0, width);
+        target.writeChannel(targetRow + row, 0, channel, values, 0, width);
+      }
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+import observer.ImageController;
+import observer.ImageControllerImpl;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class performs the commands of a script on an image that arrives as a stream of strips of
+ * rows, and publishes the processed rows as a stream of strips as soon as they are final, so the
+ * first rows of the result can be sent on before the last rows of the image have been read. Like
+ * the tiles of a TileCoordinator, the rows are processed with a margin of the rows around them
+ * wide enough for every filter of the script, and only the inner part of the result is kept. The
+ * rows of a strip are published once the rows the margin needs below them have arrived, or once
+ * the image has ended.
+ *
+ * <p>Only one strip is requested from the publisher of the image at a time, and the next one is
+ * requested after the strip has been handled. Publishing a strip waits while the buffer of a
+ * subscriber is full, so a slow subscriber holds back the reading of the image and the number of
+ * rows held in memory stays bounded. Strips must arrive in order from the top row, and all of the
+ * same width. Strips received belong to this processor, and strips published to their subscriber.
+ *
+ * <p>Only commands whose result for a pixel depends on the pixels near it can be streamed: blur,
+ * sharpen, sepia and greyscale, together with the border modes that do not wrap around.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class StripProcessor implements Flow.Processor<Strip, Strip> {
+
+  /**
+   * The commands performed on every part of the image.
+   */
+  private final List<Command> commands;
+
+  /**
+   * Number of rows needed above and below the rows processed.
+   */
+  private final int margin;
+
+  /**
+   * Factory creating the stores of the rows processed and published.
+   */
+  private final PixelStoreFactory storage;
+
+  /**
+   * Publishes the processed strips to the subscribers.
+   */
+  private final SubmissionPublisher<Strip> output;
+
+  /**
+   * Strips received that are still needed as a margin or have not been processed, in order.
+   */
+  private final Deque<Strip> received = new ArrayDeque<>();
+
+  /**
+   * The subscription to the publisher of the image, or null before subscribing.
+   */
+  private Flow.Subscription subscription;
+
+  /**
+   * Width of the image, or 0 before the first strip.
+   */
+  private int width;
+
+  /**
+   * Row after the last row received.
+   */
+  private int receivedRows;
+
+  /**
+   * Row after the last row published.
+   */
+  private int publishedRows;
+
+  /**
+   * Whether the stream has ended, normally or not.
+   */
+  private boolean done;
+
+  /**
+   * Creates a processor that publishes strips using the common pool and the default buffer size
+   * of a SubmissionPublisher.
+   *
+   * @param commands the commands to perform
+   * @param storage  the factory creating the stores of the processed rows
+   * @throws IllegalArgumentException if a command cannot be streamed
+   */
+  public StripProcessor(List<Command> commands, PixelStoreFactory storage)
+          throws IllegalArgumentException {
+    this(commands, storage, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+  }
+
+  /**
+   * Creates a processor.
+   *
+   * @param commands   the commands to perform
+   * @param storage    the factory creating the stores of the processed rows
+   * @param executor   the executor delivering strips to the subscribers
+   * @param bufferSize maximum number of strips waiting for each subscriber
+   * @throws IllegalArgumentException if a command cannot be streamed or the buffer size is less
+   *                                  than 1
+   */
+  public StripProcessor(List<Command> commands, PixelStoreFactory storage, Executor executor,
+                        int bufferSize) throws IllegalArgumentException {
+    this.margin = TileCoordinator.margin(commands, "strips");
+    this.commands = List.copyOf(commands);
+    this.storage = storage;
+    this.output = new SubmissionPublisher<>(executor, bufferSize);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super Strip> subscriber) {
+    output.subscribe(subscriber);
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  @Override
+  public void onNext(Strip strip) {
+    if (done) {
+      strip.getPixels().close();
+      return;
+    }
+    try {
+      if (width == 0) {
+        width = strip.getPixels().getWidth();
+      }
+      if (strip.getTop() != receivedRows || strip.getPixels().getWidth() != width) {
+        strip.getPixels().close();
+        throw new IllegalArgumentException("Expected a strip " + width + " pixels wide starting "
+                + "at row " + receivedRows + " but got one " + strip.getPixels().getWidth()
+                + " pixels wide starting at row " + strip.getTop());
+      }
+      received.add(strip);
+      receivedRows = strip.getBottom();
+      publish(receivedRows - margin);
+    } catch (RuntimeException e) {
+      subscription.cancel();
+      fail(e);
+      return;
+    }
+    subscription.request(1);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    fail(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    if (done) {
+      return;
+    }
+    try {
+      publish(receivedRows);
+    } catch (RuntimeException e) {
+      fail(e);
+      return;
+    }
+    done = true;
+    output.close();
+  }
+
+  /**
+   * Processes the rows received but not yet published up to the specified row and publishes them
+   * as one strip, then lets go of the strips no longer needed as a margin.
+   *
+   * @param end the row after the last row to publish
+   * @throws IllegalArgumentException if a command fails
+   */
+  private void publish(int end) throws IllegalArgumentException {
+    if (end <= publishedRows) {
+      return;
+    }
+    int from = Math.max(0, publishedRows - margin);
+    int to = Math.min(receivedRows, end + margin);
+
+    PixelStore window = storage.create(width, to - from);
+    for (Strip strip : received) {
+      int first = Math.max(from, strip.getTop());
+      int last = Math.min(to, strip.getBottom());
+      if (first < last) {
+        Strip.copyRows(strip.getPixels(), first - strip.getTop(), window, first - from,
+                last - first);
+      }
+    }
+
+    ImageProcessorImpl processor = new ImageProcessorImpl(window, storage);
+    ImageController controller = new ImageControllerImpl(processor);
+    try {
+      for (Command command : commands) {
+        command.execute(controller);
+      }
+    } catch (RuntimeException e) {
+      processor.detachImage().close();
+      throw e;
+    }
+    PixelStore processed = processor.detachImage();
+
+    PixelStore rows = storage.create(width, end - publishedRows);
+    Strip.copyRows(processed, publishedRows - from, rows, 0, end - publishedRows);
+    processed.close();
+    output.submit(new Strip(publishedRows, rows));
+    publishedRows = end;
+
+    while (!received.isEmpty() && received.peek().getBottom() <= publishedRows - margin) {
+      received.remove().getPixels().close();
+    }
+  }
+
+  /**
+   * Ends the stream with an error, letting go of the strips received.
+   *
+   * @param throwable the error passed on to the subscribers
+   */
+  private void fail(Throwable throwable) {
+    if (done) {
+      return;
+    }
+    done = true;
+    while (!received.isEmpty()) {
+      received.remove().getPixels().close();
+    }
+    output.closeExceptionally(throwable);
+  }
+}
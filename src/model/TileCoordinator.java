@@ -0,0 +1,486 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class splits an image into tiles and has a pool of TileWorkers perform the commands of a
+ * script on them, so that the work and the memory it needs are spread over several processes or
+ * machines. Each tile is sent with a margin of the pixels around it wide enough for every filter
+ * of the script, and only the inner part of the result is kept. A tile whose worker cannot be
+ * reached or goes away is sent again to another worker.
+ *
+ * <p>Only commands whose result for a pixel depends on the pixels near it can be split into tiles:
+ * blur, sharpen, sepia and greyscale, together with the border modes that do not wrap around.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class TileCoordinator implements Closeable {
+
+  /**
+   * Width and height of the tiles when none is specified.
+   */
+  public static final int DEFAULT_TILE_SIZE = 512;
+
+  /**
+   * Number of workers a tile is sent to before giving up on it.
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /**
+   * Time to wait for an idle worker before checking if any are left, in milliseconds.
+   */
+  private static final long WORKER_WAIT_MILLIS = 100;
+
+  /**
+   * Time to wait for a connection to a worker, in milliseconds.
+   */
+  public static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+  /**
+   * Time to wait for a worker to reply when no other is set, in milliseconds.
+   */
+  public static final int DEFAULT_REPLY_TIMEOUT_MILLIS = 60000;
+
+  /**
+   * Margin each command that can be split into tiles needs around a tile, by command name. The
+   * sharpen kernel reaches three rows up and down.
+   */
+  private static final Map<String, Integer> MARGINS = new HashMap<>();
+
+  static {
+    MARGINS.put("blur", 1);
+    MARGINS.put("sharpen", 3);
+    MARGINS.put("sepia", 0);
+    MARGINS.put("greyscale", 0);
+    MARGINS.put("border", 0);
+    MARGINS.put("fusion", 0);
+  }
+
+  /**
+   * Addresses of the workers that are not processing a tile.
+   */
+  private final BlockingQueue<InetSocketAddress> idle;
+
+  /**
+   * Number of workers.
+   */
+  private final int workerCount;
+
+  /**
+   * Width and height of the tiles.
+   */
+  private final int tileSize;
+
+  /**
+   * Worker processes started by this coordinator, stopped when it is closed.
+   */
+  private final List<Process> processes;
+
+  /**
+   * Time to wait for each read from a worker, in milliseconds.
+   */
+  private int replyTimeoutMillis = DEFAULT_REPLY_TIMEOUT_MILLIS;
+
+  /**
+   * Creates a coordinator using workers that are already running.
+   *
+   * @param workers  the addresses of the workers
+   * @param tileSize width and height of the tiles
+   * @throws IllegalArgumentException if there are no workers or the tile size is less than 1
+   */
+  public TileCoordinator(List<InetSocketAddress> workers, int tileSize)
+          throws IllegalArgumentException {
+    this(workers, tileSize, new ArrayList<>());
+  }
+
+  /**
+   * Creates a coordinator using workers that are already running.
+   *
+   * @param workers   the addresses of the workers
+   * @param tileSize  width and height of the tiles
+   * @param processes worker processes to stop when the coordinator is closed
+   * @throws IllegalArgumentException if there are no workers or the tile size is less than 1
+   */
+  private TileCoordinator(List<InetSocketAddress> workers, int tileSize, List<Process> processes)
+          throws IllegalArgumentException {
+    if (workers.isEmpty() || tileSize < 1) {
+      throw new IllegalArgumentException("At least one worker and a tile size of at least 1 "
+              + "are needed.");
+    }
+    this.idle = new LinkedBlockingQueue<>(workers);
+    this.workerCount = workers.size();
+    this.tileSize = tileSize;
+    this.processes = processes;
+  }
+
+  /**
+   * Sets how long to wait for a worker to send the next part of its reply, including the time it
+   * takes to process a tile, before treating it like a worker that went away and sending the tile
+   * to another one.
+   *
+   * @param millis the time to wait in milliseconds
+   * @throws IllegalArgumentException if the time is less than 1
+   */
+  public void setReplyTimeout(int millis) throws IllegalArgumentException {
+    if (millis < 1) {
+      throw new IllegalArgumentException("The reply timeout must be at least 1 millisecond.");
+    }
+    this.replyTimeoutMillis = millis;
+  }
+
+  /**
+   * Starts the specified number of worker processes on this machine, running the same program
+   * as this one, and creates a coordinator using them.
+   *
+   * @param count    the number of workers to start
+   * @param tileSize width and height of the tiles
+   * @return the coordinator, which stops the workers when it is closed
+   * @throws IOException if a worker cannot be started
+   */
+  public static TileCoordinator startLocal(int count, int tileSize) throws IOException {
+    List<Process> processes = new ArrayList<>();
+    List<InetSocketAddress> workers = new ArrayList<>();
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    try {
+      for (int i = 0; i < count; i++) {
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ImageDriver.class.getName(), "--worker", "0")
+                .redirectErrorStream(true).start();
+        processes.add(process);
+
+        // the worker announces the port it is listening on
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = output.readLine();
+        if (line == null || !line.startsWith(ImageDriver.WORKER_BANNER)) {
+          throw new IOException("Worker did not start: " + line);
+        }
+        int port = Integer.parseInt(line.substring(ImageDriver.WORKER_BANNER.length()).trim());
+        workers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+      }
+    } catch (IOException | RuntimeException e) {
+      for (Process process : processes) {
+        process.destroy();
+      }
+      throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+    return new TileCoordinator(workers, tileSize, processes);
+  }
+
+  /**
+   * Performs the commands on an image tile by tile and returns the result.
+   *
+   * @param image    the image, which is not changed
+   * @param commands the commands to perform
+   * @param storage  the factory creating the store of the result
+   * @return the processed image
+   * @throws IllegalArgumentException if a command cannot be split into tiles or fails on a tile
+   * @throws IOException              if a tile could not be processed by any worker
+   */
+  public PixelStore process(PixelStore image, List<Command> commands, PixelStoreFactory storage)
+          throws IllegalArgumentException, IOException {
+    int margin = margin(commands, "tiles");
+    StringBuilder script = new StringBuilder();
+    for (Command command : commands) {
+      script.append(command).append('\n');
+    }
+
+    PixelStore result = storage.create(image.getWidth(), image.getHeight());
+    Queue<InetSocketAddress> failed = new ConcurrentLinkedQueue<>();
+    Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    ExecutorService senders = Executors.newFixedThreadPool(workerCount);
+    CompletionService<Void> completion = new ExecutorCompletionService<>(senders);
+    List<Future<Void>> tiles = new ArrayList<>();
+    try {
+      for (int y = 0; y < image.getHeight(); y += tileSize) {
+        for (int x = 0; x < image.getWidth(); x += tileSize) {
+          Tile tile = new Tile(x, y, Math.min(tileSize, image.getWidth() - x),
+                  Math.min(tileSize, image.getHeight() - y), margin, image);
+          tiles.add(completion.submit(() -> {
+            processTile(tile, script.toString(), image, result, failed, connections);
+            return null;
+          }));
+        }
+      }
+
+      // tiles are checked as they finish, so a failed tile ends the run straight away
+      for (int i = 0; i < tiles.size(); i++) {
+        completion.take().get();
+      }
+    } catch (ExecutionException e) {
+      stopSenders(senders, tiles, connections);
+      result.close();
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw cause instanceof RuntimeException ? (RuntimeException) cause
+              : new IllegalStateException(cause);
+    } catch (InterruptedException e) {
+      stopSenders(senders, tiles, connections);
+      result.close();
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for tiles", e);
+    } finally {
+      senders.shutdownNow();
+      // workers that failed are tried again on the next run
+      idle.addAll(failed);
+    }
+    return result;
+  }
+
+  /**
+   * Cancels the tiles still being sent and waits until every sender has stopped, so that none of
+   * them writes to the result or hands a worker back after the run has ended. Blocking socket I/O
+   * does not respond to interrupts, so the open connections are closed as well, until the
+   * senders have stopped.
+   *
+   * @param senders     the threads sending the tiles
+   * @param tiles       the tasks sending the tiles
+   * @param connections the connections the senders have open
+   */
+  private static void stopSenders(ExecutorService senders, List<Future<Void>> tiles,
+                                  Set<Socket> connections) {
+    for (Future<Void> tile : tiles) {
+      tile.cancel(true);
+    }
+    senders.shutdownNow();
+
+    boolean interrupted = false;
+    while (true) {
+      for (Socket connection : connections) {
+        try {
+          connection.close();
+        } catch (IOException e) {
+          // the sender using it fails and stops either way
+        }
+      }
+      try {
+        if (senders.awaitTermination(WORKER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        // the senders must still stop before the result can be released
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the number of pixels needed around a part of an image for the commands to give the
+   * same result on it as on the whole image.
+   *
+   * @param commands the commands to perform
+   * @param parts    what the image is split into, for the error message
+   * @return the margin
+   * @throws IllegalArgumentException if a command cannot be performed on part of the image
+   */
+  static int margin(List<Command> commands, String parts) throws IllegalArgumentException {
+    int margin = 0;
+    for (Command command : commands) {
+      Integer commandMargin = MARGINS.get(command.getName());
+      if (commandMargin == null || command.toString().equals("border wrap")) {
+        throw new IllegalArgumentException("Command '" + command + "' on line "
+                + command.getLine() + " cannot be split into " + parts);
+      }
+      margin += commandMargin;
+    }
+    return margin;
+  }
+
+  /**
+   * Sends a tile to idle workers until one of them processes it, and copies the inner part of the
+   * result into the processed image. A worker that cannot be reached or does not reply in time is
+   * left out until the end of the run, so the retry goes to another one.
+   *
+   * @param tile        the tile
+   * @param script      the commands to perform
+   * @param image       the image the tile is taken from
+   * @param result      the processed image
+   * @param failed      the workers that could not be reached during this run
+   * @param connections the connections open during this run
+   * @throws IOException          if no worker could process the tile
+   * @throws InterruptedException if the thread is interrupted while waiting for a worker
+   */
+  private void processTile(Tile tile, String script, PixelStore image, PixelStore result,
+                           Queue<InetSocketAddress> failed, Set<Socket> connections)
+          throws IOException, InterruptedException {
+    IOException failure = null;
+
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      InetSocketAddress worker = null;
+      while (worker == null) {
+        if (failed.size() == workerCount) {
+          throw new IOException("No workers left to process tile at (" + tile.x + ", " + tile.y
+                  + ")", failure);
+        }
+        worker = idle.poll(WORKER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      }
+
+      PixelStore processed;
+      try {
+        processed = send(worker, tile, script, image, connections, replyTimeoutMillis);
+      } catch (IOException e) {
+        failure = e;
+        failed.add(worker);
+        continue;
+      } catch (RuntimeException e) {
+        idle.add(worker);
+        throw e;
+      }
+      idle.add(worker);
+      tile.copyInner(processed, result);
+      return;
+    }
+    throw new IOException("Tile at (" + tile.x + ", " + tile.y + ") failed on " + MAX_ATTEMPTS
+            + " workers: " + failure.getMessage(), failure);
+  }
+
+  /**
+   * Sends a tile with its margin to a worker and waits for the result.
+   *
+   * @param worker      the address of the worker
+   * @param tile        the tile
+   * @param script      the commands to perform
+   * @param image       the image the tile is taken from
+   * @param connections the connections open during this run, which the connection to the worker
+   *                    belongs to while it is open
+   * @param timeout     time to wait for each read from the worker, in milliseconds
+   * @return the processed tile with its margin
+   * @throws IOException              if the worker cannot be reached, goes away or stalls, or the
+   *                                  connection is closed because the run has ended
+   * @throws IllegalArgumentException if the worker could not perform the commands
+   */
+  private static PixelStore send(InetSocketAddress worker, Tile tile, String script,
+                                 PixelStore image, Set<Socket> connections, int timeout)
+          throws IOException, IllegalArgumentException {
+    try (Socket socket = new Socket()) {
+      connections.add(socket);
+      // a worker that hangs times out like one that went away, so the tile moves to another
+      socket.setSoTimeout(timeout);
+      socket.connect(worker, CONNECT_TIMEOUT_MILLIS);
+      DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(socket.getOutputStream()));
+      out.writeUTF(script);
+      out.writeInt(tile.outerWidth);
+      out.writeInt(tile.outerHeight);
+      TileWorker.writePixels(image, tile.outerX, tile.outerY, tile.outerWidth, tile.outerHeight,
+              out);
+      out.flush();
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      if (!in.readBoolean()) {
+        throw new IllegalArgumentException(in.readUTF());
+      }
+      PixelStore processed = new HeapPixelStore(tile.outerWidth, tile.outerHeight);
+      TileWorker.readPixels(in, processed);
+      return processed;
+    } finally {
+      connections.removeIf(Socket::isClosed);
+    }
+  }
+
+  @Override
+  public void close() {
+    for (Process process : processes) {
+      process.destroy();
+    }
+  }
+
+  /**
+   * A tile of the image, and the larger area around it sent to a worker.
+   */
+  private static final class Tile {
+
+    /**
+     * The area of the image the tile covers.
+     */
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    /**
+     * The area sent to the worker, the tile with its margin cut off at the edges of the image.
+     */
+    private final int outerX;
+    private final int outerY;
+    private final int outerWidth;
+    private final int outerHeight;
+
+    /**
+     * Creates a tile.
+     *
+     * @param x      the leftmost column of the tile
+     * @param y      the top row of the tile
+     * @param width  width of the tile
+     * @param height height of the tile
+     * @param margin number of pixels needed around the tile
+     * @param image  the image the tile is taken from
+     */
+    private Tile(int x, int y, int width, int height, int margin, PixelStore image) {
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      this.outerX = Math.max(0, x - margin);
+      this.outerY = Math.max(0, y - margin);
+      this.outerWidth = Math.min(image.getWidth(), x + width + margin) - outerX;
+      this.outerHeight = Math.min(image.getHeight(), y + height + margin) - outerY;
+    }
+
+    /**
+     * Copies the part of a processed tile that lies inside of the tile into the result.
+     *
+     * @param processed the processed tile with its margin
+     * @param result    the processed image
+     */
+    private void copyInner(PixelStore processed, PixelStore result) {
+      int[] values = new int[width];
+      for (int channel = 0; channel < 3; channel++) {
+        for (int row = 0; row < height; row++) {
+          processed.readChannel(y - outerY + row, x - outerX, channel, values, 0, width);
+          result.writeChannel(y + row, x, channel, values, 0, width);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import observer.ImageController;
+import observer.ImageControllerImpl;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+/**
+ * This class represents a worker that performs the commands of a script on tiles of an image sent
+ * to it by a TileCoordinator, usually running in a process of its own.
+ *
+ * <p>Each connection carries one tile. The coordinator sends the script as a UTF string, the width
+ * and height of the tile as ints and then its pixels as red, green and blue bytes, row by row. The
+ * worker replies with true followed by the pixels of the processed tile, or with false followed by
+ * the reason the script could not be performed as a UTF string.
+ *
+ * <p>Since anyone who can reach the worker may connect to it, it checks everything it is sent
+ * before acting on it: the script may only contain the commands a coordinator splits into tiles,
+ * so it can neither read nor write files nor change the size of the tile, and a tile larger than
+ * MAX_TILE_PIXELS is refused before anything is allocated for it.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class TileWorker implements Closeable {
+
+  /**
+   * Largest number of pixels of a tile, margin included, that a worker accepts.
+   */
+  public static final int MAX_TILE_PIXELS = 1 << 24;
+
+  /**
+   * Socket accepting connections from coordinators.
+   */
+  private final ServerSocket serverSocket;
+
+  /**
+   * Threads processing the tiles.
+   */
+  private final ExecutorService threads;
+
+  /**
+   * Creates a worker listening on the specified port of the loopback address.
+   *
+   * @param port the port to listen on, or 0 to pick any free port
+   * @throws IOException if the port cannot be opened
+   */
+  public TileWorker(int port) throws IOException {
+    this(port, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Creates a worker listening on the specified port and address, so that coordinators on other
+   * machines can reach it.
+   *
+   * @param port    the port to listen on, or 0 to pick any free port
+   * @param address the local address to listen on
+   * @throws IOException if the port cannot be opened
+   */
+  public TileWorker(int port, InetAddress address) throws IOException {
+    this.serverSocket = new ServerSocket(port, 50, address);
+    this.threads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Returns the port this worker is listening on.
+   *
+   * @return the local port
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Accepts tiles and processes them until this worker is closed.
+   *
+   * @throws IOException if accepting a connection fails for a reason other than closing
+   */
+  public void serve() throws IOException {
+    while (!serverSocket.isClosed()) {
+      Socket client;
+      try {
+        client = serverSocket.accept();
+      } catch (SocketException e) {
+        // the server socket was closed while waiting
+        break;
+      }
+      threads.execute(() -> handle(client));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    threads.shutdown();
+  }
+
+  /**
+   * Processes the tile sent over a single connection and replies with the result.
+   *
+   * @param client the connection to the coordinator
+   */
+  private void handle(Socket client) {
+    try (Socket socket = client) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(socket.getOutputStream()));
+
+      String script = in.readUTF();
+
+      PixelStore result;
+      try {
+        result = perform(script, readTile(in));
+      } catch (RuntimeException e) {
+        out.writeBoolean(false);
+        out.writeUTF(String.valueOf(e.getMessage()));
+        out.flush();
+        return;
+      }
+
+      out.writeBoolean(true);
+      writePixels(result, out);
+      out.flush();
+    } catch (IOException e) {
+      // the coordinator went away and will send the tile to another worker
+    }
+  }
+
+  /**
+   * Performs the commands of a script on a tile, after checking that every command can be
+   * performed on a tile.
+   *
+   * @param script the text of the script
+   * @param tile   the tile, which the processor takes ownership of
+   * @return the processed tile
+   * @throws RuntimeException if the script cannot be parsed, contains a command that cannot be
+   *                          performed on a tile, or a command fails
+   */
+  private static PixelStore perform(String script, PixelStore tile) {
+    List<Command> commands;
+    try {
+      commands = ScriptParser.parse(script);
+      TileCoordinator.margin(commands, "tiles");
+    } catch (RuntimeException e) {
+      tile.close();
+      throw e;
+    }
+    ImageProcessorImpl processor = new ImageProcessorImpl(tile, HeapPixelStore::new);
+    ImageController controller = new ImageControllerImpl(processor);
+    for (Command command : commands) {
+      command.execute(controller);
+    }
+    return processor.detachImage();
+  }
+
+  /**
+   * Reads the size and pixels of a tile.
+   *
+   * @param in the stream to read from
+   * @return the tile
+   * @throws IOException              if the stream ends early
+   * @throws IllegalArgumentException if the tile is empty or has more than MAX_TILE_PIXELS pixels
+   */
+  private static PixelStore readTile(DataInputStream in)
+          throws IOException, IllegalArgumentException {
+    int width = in.readInt();
+    int height = in.readInt();
+    if (width < 1 || height < 1 || (long) width * height > MAX_TILE_PIXELS) {
+      throw new IllegalArgumentException("Tile of " + width + "x" + height + " pixels is not "
+              + "between 1 and " + MAX_TILE_PIXELS + " pixels");
+    }
+    PixelStore tile = new HeapPixelStore(width, height);
+    readPixels(in, tile);
+    return tile;
+  }
+
+  /**
+   * Reads the pixels of a store of known size as red, green and blue bytes, row by row.
+   *
+   * @param in    the stream to read from
+   * @param store the store to read the pixels into
+   * @throws IOException if the stream ends early
+   */
+  static void readPixels(DataInputStream in, PixelStore store) throws IOException {
+    int width = store.getWidth();
+    byte[] bytes = new byte[width * 3];
+    int[][] channels = new int[3][width];
+
+    for (int row = 0; row < store.getHeight(); row++) {
+      in.readFully(bytes);
+      for (int column = 0; column < width; column++) {
+        for (int channel = 0; channel < 3; channel++) {
+          channels[channel][column] = bytes[column * 3 + channel] & 0xFF;
+        }
+      }
+      for (int channel = 0; channel < 3; channel++) {
+        store.writeChannel(row, 0, channel, channels[channel], 0, width);
+      }
+    }
+  }
+
+  /**
+   * Writes the pixels of an area of an image as red, green and blue bytes, row by row.
+   *
+   * @param image the image
+   * @param out   the stream to write to
+   * @throws IOException if the stream cannot be written to
+   */
+  static void writePixels(PixelStore image, DataOutputStream out) throws IOException {
+    writePixels(image, 0, 0, image.getWidth(), image.getHeight(), out);
+  }
+
+  /**
+   * Writes the pixels of an area of an image as red, green and blue bytes, row by row.
+   *
+   * @param image  the image
+   * @param x      the leftmost column of the area
+   * @param y      the top row of the area
+   * @param width  width of the area
+   * @param height height of the area
+   * @param out    the stream to write to
+   * @throws IOException if the stream cannot be written to
+   */
+  static void writePixels(PixelStore image, int x, int y, int width, int height,
+                          DataOutputStream out) throws IOException {
+    byte[] bytes = new byte[width * 3];
+    int[][] channels = new int[3][width];
+
+    for (int row = y; row < y + height; row++) {
+      for (int channel = 0; channel < 3; channel++) {
+        image.readChannel(row, x, channel, channels[channel], 0, width);
+      }
+      for (int column = 0; column < width; column++) {
+        for (int channel = 0; channel < 3; channel++) {
+          bytes[column * 3 + channel] = (byte) channels[channel][column];
+        }
+      }
+      out.write(bytes);
+    }
+  }
+}
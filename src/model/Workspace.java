@@ -0,0 +1,301 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+
+/**
+ * This class represents a set of named images that are not currently being processed. It keeps
+ * the memory used by those images within a budget by spilling the least recently used ones to
+ * scratch files as raw pixels, and reads them back in when they are needed again.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class Workspace implements AutoCloseable {
+
+  /**
+   * The images of this workspace by name, from least to most recently used.
+   */
+  private final Map<String, Slot> slots;
+
+  /**
+   * Maximum number of bytes of images to keep in memory.
+   */
+  private final long budget;
+
+  /**
+   * Directory scratch files are created in.
+   */
+  private final Path scratchDirectory;
+
+  /**
+   * Factory creating the stores images are read back into.
+   */
+  private final PixelStoreFactory storage;
+
+  /**
+   * Number of bytes of images currently held in memory.
+   */
+  private long residentBytes;
+
+  /**
+   * Creates an empty workspace.
+   *
+   * @param budget           maximum number of bytes of images to keep in memory
+   * @param scratchDirectory directory to spill images to
+   * @param storage          factory creating the stores spilled images are read back into
+   */
+  public Workspace(long budget, Path scratchDirectory, PixelStoreFactory storage) {
+    this.slots = new LinkedHashMap<>(16, 0.75f, true);
+    this.budget = budget;
+    this.scratchDirectory = scratchDirectory;
+    this.storage = storage;
+  }
+
+  /**
+   * Determines if this workspace holds an image with the specified name.
+   *
+   * @param name the name of the image
+   * @return true if there is an image with that name
+   */
+  public boolean contains(String name) {
+    return slots.containsKey(name);
+  }
+
+  /**
+   * Adds an image to this workspace, replacing any image with the same name. The workspace takes
+   * ownership of the store.
+   *
+   * @param name  the name of the image
+   * @param image the image
+   */
+  public void put(String name, PixelStore image) {
+    remove(name);
+    slots.put(name, new Slot(image));
+    residentBytes += image.sizeInBytes();
+  }
+
+  /**
+   * Removes an image from this workspace and returns it, reading it back in if it was spilled.
+   * The caller takes ownership of the store.
+   *
+   * @param name the name of the image
+   * @return the image
+   * @throws IllegalArgumentException if there is no image with that name
+   */
+  public PixelStore take(String name) throws IllegalArgumentException {
+    Slot slot = slots.remove(name);
+    if (slot == null) {
+      throw new IllegalArgumentException("There is no image named '" + name + "'.");
+    }
+
+    if (slot.image == null) {
+      try {
+        return slot.pageIn();
+      } catch (IOException e) {
+        slot.release();
+        throw new UncheckedIOException("Could not read back image '" + name + "'", e);
+      }
+    }
+    residentBytes -= slot.image.sizeInBytes();
+    return slot.image;
+  }
+
+  /**
+   * Removes an image from this workspace and releases it. Does nothing if there is no image with
+   * the specified name.
+   *
+   * @param name the name of the image
+   */
+  public void remove(String name) {
+    Slot slot = slots.remove(name);
+    if (slot != null) {
+      if (slot.image != null) {
+        residentBytes -= slot.image.sizeInBytes();
+      }
+      slot.release();
+    }
+  }
+
+  /**
+   * Spills the least recently used images until the images held in memory, together with the
+   * specified number of bytes used elsewhere, fit within the budget.
+   *
+   * @param reserved number of bytes used by images outside of this workspace
+   */
+  public void trim(long reserved) {
+    Iterator<Slot> leastRecent = slots.values().iterator();
+    while (residentBytes + reserved > budget && leastRecent.hasNext()) {
+      Slot slot = leastRecent.next();
+      if (slot.image != null) {
+        long size = slot.image.sizeInBytes();
+        try {
+          slot.spill();
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not spill image to " + scratchDirectory, e);
+        }
+        residentBytes -= size;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes of images currently held in memory.
+   *
+   * @return the number of bytes
+   */
+  public long getResidentBytes() {
+    return residentBytes;
+  }
+
+  @Override
+  public void close() {
+    List<String> names = new ArrayList<>(slots.keySet());
+    for (String name : names) {
+      remove(name);
+    }
+  }
+
+  /**
+   * An image in the workspace, held either in memory or in a scratch file.
+   */
+  private class Slot {
+
+    /**
+     * The image, or null while it is spilled.
+     */
+    private PixelStore image;
+
+    /**
+     * The scratch file holding the spilled image, or null while it is in memory.
+     */
+    private Path file;
+
+    /**
+     * Width of the image.
+     */
+    private final int width;
+
+    /**
+     * Height of the image.
+     */
+    private final int height;
+
+    /**
+     * Creates a slot holding an image in memory.
+     *
+     * @param image the image
+     */
+    private Slot(PixelStore image) {
+      this.image = image;
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+    }
+
+    /**
+     * Writes the image to a scratch file as raw pixels and releases its memory.
+     *
+     * @throws IOException if the scratch file cannot be written
+     */
+    private void spill() throws IOException {
+      Path spillFile = Files.createTempFile(scratchDirectory, "workspace", ".raw");
+
+      try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(width * 3);
+        int[][] channels = new int[3][width];
+        for (int row = 0; row < height; row++) {
+          for (int c = 0; c < 3; c++) {
+            image.readChannel(row, 0, c, channels[c], 0, width);
+          }
+          buffer.clear();
+          for (int column = 0; column < width; column++) {
+            buffer.put((byte) channels[0][column]);
+            buffer.put((byte) channels[1][column]);
+            buffer.put((byte) channels[2][column]);
+          }
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(spillFile);
+        throw e;
+      }
+
+      image.close();
+      image = null;
+      file = spillFile;
+    }
+
+    /**
+     * Reads a spilled image back from its scratch file and deletes the file. The file is kept if
+     * it cannot be read.
+     *
+     * @return the image
+     * @throws IOException if the scratch file cannot be read or is shorter than the image
+     */
+    private PixelStore pageIn() throws IOException {
+      PixelStore result = storage.create(width, height);
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer buffer = ByteBuffer.allocate(width * 3);
+        int[][] channels = new int[3][width];
+        for (int row = 0; row < height; row++) {
+          buffer.clear();
+          while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+              throw new IOException("Scratch file " + file + " ends before row " + row + ".");
+            }
+          }
+          buffer.flip();
+          for (int column = 0; column < width; column++) {
+            channels[0][column] = buffer.get() & 0xFF;
+            channels[1][column] = buffer.get() & 0xFF;
+            channels[2][column] = buffer.get() & 0xFF;
+          }
+          for (int c = 0; c < 3; c++) {
+            result.writeChannel(row, 0, c, channels[c], 0, width);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        result.close();
+        throw e;
+      }
+
+      release();
+      return result;
+    }
+
+    /**
+     * Releases the memory or scratch file holding the image.
+     */
+    private void release() {
+      if (image != null) {
+        image.close();
+        image = null;
+      }
+      if (file != null) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          // the file is left in the scratch directory
+        }
+        file = null;
+      }
+    }
+  }
+}
@@ -13,7 +13,7 @@ public abstract class AbstractImageObserver implements ImageObserver {
   /**
    * Represents the last completed action of the ImageProcessor model.
    */
-  private String status;
+  private volatile String status;
 
   /**
    * Default constructor.
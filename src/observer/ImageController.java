@@ -3,7 +3,12 @@ package observer;
 import java.awt.Color;
 import java.util.List;
 
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
 import utilities.Orientation;
+import utilities.PngFilter;
+import utilities.SeedSampling;
 
 /**
  * Represents a controlling object for the ImageProcessor model.
@@ -28,6 +33,21 @@ public interface ImageController extends ImageObserver {
    */
   void doGreyScale();
 
+  /**
+   * Sends a call to the ImageProcessor to compute the histograms of the observed image.
+   */
+  void doHistogram();
+
+  /**
+   * Sends a call to the ImageProcessor to stretch the levels of the observed image.
+   */
+  void doAutoLevels();
+
+  /**
+   * Sends a call to the ImageProcessor to equalize the observed image.
+   */
+  void doEqualize();
+
   /**
    * Sends a call to the ImageProcessor to sepia the observed image.
    */
@@ -61,6 +81,15 @@ public interface ImageController extends ImageObserver {
    */
   void doDither();
 
+  /**
+   * Sends a call to the ImageProcessor to dither the observed image with a threshold matrix.
+   *
+   * @param matrix how the thresholds are spread over the matrix
+   * @param size   width and height of the matrix
+   * @throws IllegalArgumentException if the size is not supported
+   */
+  void doDither(DitherMatrix matrix, int size) throws IllegalArgumentException;
+
   /**
    * Sends a call to the ImageProcessor to mosaic the observed image.
    *
@@ -68,6 +97,86 @@ public interface ImageController extends ImageObserver {
    */
   void doMosaic(int seeds);
 
+  /**
+   * Sends a call to the ImageProcessor to mosaic the observed image with seeds spread in the
+   * specified way by a random number generator created with the specified seed.
+   *
+   * @param seeds      the number of sets of points representing the "glass pieces" in the mosaic
+   * @param sampling   how the seeds are spread over the image
+   * @param randomSeed the seed of the random number generator picking the seeds
+   */
+  void doMosaic(int seeds, SeedSampling sampling, long randomSeed);
+
+  /**
+   * Sends a call to the ImageProcessor to preview the observed image at a specified pyramid level.
+   *
+   * @param level the pyramid level to preview, where each level halves the width and height
+   * @throws IllegalArgumentException if the level is invalid or there is no image to preview
+   */
+  void doPreview(int level) throws IllegalArgumentException;
+
+  /**
+   * Sends a call to the ImageProcessor to render the previewed operations at full resolution.
+   */
+  void doRender();
+
+  /**
+   * Sends a call to the ImageProcessor to restrict the following operations to a region of the
+   * observed image.
+   *
+   * @param x      the column of the left edge of the region
+   * @param y      the row of the top edge of the region
+   * @param width  the width of the region
+   * @param height the height of the region
+   * @throws IllegalArgumentException if the position is negative or the size is not positive
+   */
+  void doRegion(int x, int y, int width, int height) throws IllegalArgumentException;
+
+  /**
+   * Sends a call to the ImageProcessor to apply the following operations to the whole image.
+   */
+  void doClearRegion();
+
+  /**
+   * Sends a call to the ImageProcessor to stop any operation that is still running once the
+   * specified time has passed.
+   *
+   * @param millis the time allowed for the following operations, in milliseconds
+   */
+  void doDeadline(long millis);
+
+  /**
+   * Sends a call to the ImageProcessor to change how pixels outside of the image are made up when
+   * filtering.
+   *
+   * @param mode the border mode
+   */
+  void doBorder(BorderMode mode);
+
+  /**
+   * Sends a call to the ImageProcessor to filter in place or into a copy of the image.
+   *
+   * @param inPlace true to filter in place
+   */
+  void doInPlace(boolean inPlace);
+
+  /**
+   * Sends a call to the ImageProcessor to change how consecutive blur and sharpen operations are
+   * performed.
+   *
+   * @param mode the fusion mode
+   */
+  void doFusion(FusionMode mode);
+
+  /**
+   * Sends a call to the ImageProcessor to change how images are compressed when saved as PNG.
+   *
+   * @param level  the compression level from 0 (none) to 9 (smallest)
+   * @param filter the filter applied to each row before compressing it
+   * @throws IllegalArgumentException if the level is not between 0 and 9
+   */
+  void doCompression(int level, PngFilter filter) throws IllegalArgumentException;
+
   /**
    * Sends a call to the ImageProcess to create/load the specified image.
    *
@@ -76,6 +185,43 @@ public interface ImageController extends ImageObserver {
    */
   void loadImage(String name) throws IllegalArgumentException;
 
+  /**
+   * Sends a call to the ImageProcess to load the specified image under a name, making it the
+   * current image.
+   *
+   * @param filename the image file to load
+   * @param name     the name to give the image
+   * @throws IllegalArgumentException if the specified file cannot be loaded
+   */
+  void loadImage(String filename, String name) throws IllegalArgumentException;
+
+  /**
+   * Sends a call to the ImageProcess to load the specified image at a reduced size.
+   *
+   * @param filename the image file to load
+   * @param scale    the factor to reduce the width and height by
+   * @throws IllegalArgumentException if the specified file cannot be loaded
+   */
+  void loadImage(String filename, int scale) throws IllegalArgumentException;
+
+  /**
+   * Sends a call to the ImageProcessor to resize the observed image.
+   *
+   * @param width  the new width
+   * @param height the new height
+   * @throws IllegalArgumentException if the width or height is less than 1
+   */
+  void doResize(int width, int height) throws IllegalArgumentException;
+
+  /**
+   * Sends a call to the ImageProcessor to make the image with the specified name the current
+   * image.
+   *
+   * @param name the name of the image
+   * @throws IllegalArgumentException if there is no image with that name
+   */
+  void doSelect(String name) throws IllegalArgumentException;
+
   /**
    * Sends a call to the ImageProcessor to save the specified image.
    *
@@ -4,8 +4,14 @@ import java.awt.Color;
 import java.io.IOException;
 import java.util.List;
 
+import model.CancellationToken;
 import model.ImageProcessor;
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
 import utilities.Orientation;
+import utilities.PngFilter;
+import utilities.SeedSampling;
 
 /**
  * This class represents a controller (and observer) of the ImageProcessor class.
@@ -44,6 +50,21 @@ public class ImageControllerImpl extends AbstractImageObserver implements ImageC
     imageProcessor.greyscale();
   }
 
+  @Override
+  public void doHistogram() {
+    imageProcessor.histogram();
+  }
+
+  @Override
+  public void doAutoLevels() {
+    imageProcessor.autolevels();
+  }
+
+  @Override
+  public void doEqualize() {
+    imageProcessor.equalize();
+  }
+
   @Override
   public void doSepia() {
     imageProcessor.sepia();
@@ -74,11 +95,70 @@ public class ImageControllerImpl extends AbstractImageObserver implements ImageC
     imageProcessor.dither();
   }
 
+  @Override
+  public void doDither(DitherMatrix matrix, int size) throws IllegalArgumentException {
+    imageProcessor.dither(matrix, size);
+  }
+
   @Override
   public void doMosaic(int seeds) {
     imageProcessor.mosaic(seeds);
   }
 
+  @Override
+  public void doMosaic(int seeds, SeedSampling sampling, long randomSeed) {
+    imageProcessor.mosaic(seeds, sampling, randomSeed);
+  }
+
+  @Override
+  public void doPreview(int level) throws IllegalArgumentException {
+    try {
+      imageProcessor.preview(level);
+    } catch (IllegalStateException e) {
+      throw new IllegalArgumentException(e.getMessage());
+    }
+  }
+
+  @Override
+  public void doRender() {
+    imageProcessor.render();
+  }
+
+  @Override
+  public void doRegion(int x, int y, int width, int height) throws IllegalArgumentException {
+    imageProcessor.region(x, y, width, height);
+  }
+
+  @Override
+  public void doClearRegion() {
+    imageProcessor.clearRegion();
+  }
+
+  @Override
+  public void doDeadline(long millis) {
+    imageProcessor.setCancellationToken(CancellationToken.withTimeout(millis));
+  }
+
+  @Override
+  public void doBorder(BorderMode mode) {
+    imageProcessor.setBorderMode(mode);
+  }
+
+  @Override
+  public void doInPlace(boolean inPlace) {
+    imageProcessor.setInPlace(inPlace);
+  }
+
+  @Override
+  public void doFusion(FusionMode mode) {
+    imageProcessor.setFusion(mode);
+  }
+
+  @Override
+  public void doCompression(int level, PngFilter filter) throws IllegalArgumentException {
+    imageProcessor.setCompression(level, filter);
+  }
+
   @Override
   public void loadImage(String name) throws IllegalArgumentException {
     try {
@@ -88,6 +168,34 @@ public class ImageControllerImpl extends AbstractImageObserver implements ImageC
     }
   }
 
+  @Override
+  public void loadImage(String filename, String name) throws IllegalArgumentException {
+    try {
+      imageProcessor.load(filename, name);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not load image '" + filename + "'");
+    }
+  }
+
+  @Override
+  public void loadImage(String filename, int scale) throws IllegalArgumentException {
+    try {
+      imageProcessor.load(filename, scale);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not load image '" + filename + "'");
+    }
+  }
+
+  @Override
+  public void doResize(int width, int height) throws IllegalArgumentException {
+    imageProcessor.resize(width, height);
+  }
+
+  @Override
+  public void doSelect(String name) throws IllegalArgumentException {
+    imageProcessor.select(name);
+  }
+
   @Override
   public void saveImage(String name) {
     imageProcessor.save(name);
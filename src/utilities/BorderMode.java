@@ -0,0 +1,38 @@
+package utilities;
+
+/**
+ * Represents how pixels outside of an image are made up when a kernel reaches past its edges.
+ * ZERO treats them as black, CLAMP repeats the edge pixel, MIRROR reflects the image about its
+ * edge pixel and WRAP continues with the opposite edge of the image.
+ */
+public enum BorderMode {
+  ZERO, CLAMP, MIRROR, WRAP;
+
+  /**
+   * Finds the index inside of an image that stands in for an index that may be outside of it.
+   *
+   * @param index the index, which may be negative or past the end
+   * @param size  the number of rows or columns of the image, at least 1
+   * @return the index to use, or -1 if the pixel is black
+   */
+  public int map(int index, int size) {
+    if (index >= 0 && index < size) {
+      return index;
+    }
+    switch (this) {
+      case CLAMP:
+        return index < 0 ? 0 : size - 1;
+      case MIRROR:
+        if (size == 1) {
+          return 0;
+        }
+        int period = 2 * (size - 1);
+        int folded = Math.floorMod(index, period);
+        return folded < size ? folded : period - folded;
+      case WRAP:
+        return Math.floorMod(index, size);
+      default:
+        return -1;
+    }
+  }
+}
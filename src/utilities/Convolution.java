@@ -0,0 +1,437 @@
+package utilities;
+
+/**
+ * This class applies a convolution kernel to rows of one channel of an image. Kernels of 3x3, 5x5
+ * and 7x7 pixels, and the 7 rows by 5 columns of sharpen, are applied by a class of their own, in
+ * which the loops over the rows and columns of the kernel are written out term by term, so the
+ * weights stay in registers and no loop has to be unrolled at run time. Other sizes fall back to
+ * the loops. The class is chosen once, when the convolution is created, so an operation picks it
+ * once rather than for every pixel.
+ *
+ * <p>Every implementation adds the terms in the same order, row by row from the top left of the
+ * kernel, so they all give exactly the same results. The sum is truncated and clipped to the range
+ * of a channel.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public abstract class Convolution {
+
+  /**
+   * Number of rows of the kernel.
+   */
+  private final int rows;
+
+  /**
+   * Number of columns of the kernel.
+   */
+  private final int columns;
+
+  /**
+   * The weights of the kernel, row by row.
+   */
+  final double[] weights;
+
+  /**
+   * Creates a convolution.
+   *
+   * @param rows    number of rows of the kernel
+   * @param columns number of columns of the kernel
+   * @param weights the weights of the kernel, row by row
+   */
+  private Convolution(int rows, int columns, double[] weights) {
+    this.rows = rows;
+    this.columns = columns;
+    this.weights = weights;
+  }
+
+  /**
+   * Creates the convolution of a kernel, picking the implementation for its size.
+   *
+   * @param kernel the kernel, with an odd number of rows and of columns, which may differ
+   * @return the convolution
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length, or it has
+   *                                  an even number of rows or columns
+   */
+  public static Convolution of(double[][] kernel) throws IllegalArgumentException {
+    int rows = kernel.length;
+    int columns = rows == 0 ? 0 : kernel[0].length;
+    if (rows % 2 == 0 || columns % 2 == 0) {
+      throw new IllegalArgumentException("A kernel must have an odd number of rows and columns.");
+    }
+
+    double[] weights = new double[rows * columns];
+    for (int i = 0; i < rows; i++) {
+      if (kernel[i].length != columns) {
+        throw new IllegalArgumentException("All rows of a kernel must have the same length.");
+      }
+      System.arraycopy(kernel[i], 0, weights, i * columns, columns);
+    }
+
+    if (rows == 3 && columns == 3) {
+      return new Kernel3x3(weights);
+    } else if (rows == 5 && columns == 5) {
+      return new Kernel5x5(weights);
+    } else if (rows == 7 && columns == 5) {
+      return new Kernel7x5(weights);
+    } else if (rows == 7 && columns == 7) {
+      return new Kernel7x7(weights);
+    }
+    return new AnySize(rows, columns, weights);
+  }
+
+  /**
+   * Returns the number of rows of the kernel.
+   *
+   * @return the number of rows
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns of the kernel.
+   *
+   * @return the number of columns
+   */
+  public int getColumns() {
+    return columns;
+  }
+
+  /**
+   * Applies the kernel to consecutive pixels of a row. The values the kernel covers for the first
+   * pixel start at the offset, one row of the kernel every stride values, and each following pixel
+   * is one value further along.
+   *
+   * @param values       the values of the rows the kernel covers, padded by its range on the left
+   *                     and right
+   * @param offset       index of the value under the top left of the kernel for the first pixel
+   * @param stride       number of values from one row to the next
+   * @param result       the array to write the filtered values to
+   * @param resultOffset index of the result of the first pixel
+   * @param count        number of pixels to filter
+   */
+  public abstract void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                             int count);
+
+  /**
+   * Truncates a sum and clips it to the range of a channel.
+   *
+   * @param sum the weighted sum
+   * @return the value of the channel
+   */
+  static int clip(double sum) {
+    return Math.max(0, Math.min(255, (int) sum));
+  }
+
+  /**
+   * A kernel of any size, applied with loops over its rows and columns.
+   */
+  private static final class AnySize extends Convolution {
+
+    /**
+     * Creates the convolution.
+     *
+     * @param rows    number of rows of the kernel
+     * @param columns number of columns of the kernel
+     * @param weights the weights of the kernel, row by row
+     */
+    private AnySize(int rows, int columns, double[] weights) {
+      super(rows, columns, weights);
+    }
+
+    @Override
+    public void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                      int count) {
+      int rows = getRows();
+      int columns = getColumns();
+      for (int column = 0; column < count; column++) {
+        double sum = 0;
+        for (int i = 0; i < rows; i++) {
+          int start = offset + i * stride + column;
+          for (int j = 0; j < columns; j++) {
+            sum += weights[i * columns + j] * values[start + j];
+          }
+        }
+        result[resultOffset + column] = clip(sum);
+      }
+    }
+  }
+
+  /**
+   * A 3x3 kernel with every weight held in a local variable and every term written out.
+   */
+  private static final class Kernel3x3 extends Convolution {
+
+    /**
+     * Creates the convolution.
+     *
+     * @param weights the weights of the kernel, row by row
+     */
+    private Kernel3x3(double[] weights) {
+      super(3, 3, weights);
+    }
+
+    @Override
+    public void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                      int count) {
+      double w00 = weights[0];
+      double w01 = weights[1];
+      double w02 = weights[2];
+      double w10 = weights[3];
+      double w11 = weights[4];
+      double w12 = weights[5];
+      double w20 = weights[6];
+      double w21 = weights[7];
+      double w22 = weights[8];
+
+      for (int column = 0; column < count; column++) {
+        int p0 = offset + column;
+        int p1 = p0 + stride;
+        int p2 = p1 + stride;
+        double sum = w00 * values[p0] + w01 * values[p0 + 1] + w02 * values[p0 + 2]
+                + w10 * values[p1] + w11 * values[p1 + 1] + w12 * values[p1 + 2] + w20 * values[p2]
+                + w21 * values[p2 + 1] + w22 * values[p2 + 2];
+        result[resultOffset + column] = clip(sum);
+      }
+    }
+  }
+
+  /**
+   * A 5x5 kernel with every weight held in a local variable and every term written out.
+   */
+  private static final class Kernel5x5 extends Convolution {
+
+    /**
+     * Creates the convolution.
+     *
+     * @param weights the weights of the kernel, row by row
+     */
+    private Kernel5x5(double[] weights) {
+      super(5, 5, weights);
+    }
+
+    @Override
+    public void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                      int count) {
+      double w00 = weights[0];
+      double w01 = weights[1];
+      double w02 = weights[2];
+      double w03 = weights[3];
+      double w04 = weights[4];
+      double w10 = weights[5];
+      double w11 = weights[6];
+      double w12 = weights[7];
+      double w13 = weights[8];
+      double w14 = weights[9];
+      double w20 = weights[10];
+      double w21 = weights[11];
+      double w22 = weights[12];
+      double w23 = weights[13];
+      double w24 = weights[14];
+      double w30 = weights[15];
+      double w31 = weights[16];
+      double w32 = weights[17];
+      double w33 = weights[18];
+      double w34 = weights[19];
+      double w40 = weights[20];
+      double w41 = weights[21];
+      double w42 = weights[22];
+      double w43 = weights[23];
+      double w44 = weights[24];
+
+      for (int column = 0; column < count; column++) {
+        int p0 = offset + column;
+        int p1 = p0 + stride;
+        int p2 = p1 + stride;
+        int p3 = p2 + stride;
+        int p4 = p3 + stride;
+        double sum = w00 * values[p0] + w01 * values[p0 + 1] + w02 * values[p0 + 2]
+                + w03 * values[p0 + 3] + w04 * values[p0 + 4] + w10 * values[p1]
+                + w11 * values[p1 + 1] + w12 * values[p1 + 2] + w13 * values[p1 + 3]
+                + w14 * values[p1 + 4] + w20 * values[p2] + w21 * values[p2 + 1]
+                + w22 * values[p2 + 2] + w23 * values[p2 + 3] + w24 * values[p2 + 4]
+                + w30 * values[p3] + w31 * values[p3 + 1] + w32 * values[p3 + 2]
+                + w33 * values[p3 + 3] + w34 * values[p3 + 4] + w40 * values[p4]
+                + w41 * values[p4 + 1] + w42 * values[p4 + 2] + w43 * values[p4 + 3]
+                + w44 * values[p4 + 4];
+        result[resultOffset + column] = clip(sum);
+      }
+    }
+  }
+
+  /**
+   * A 7x5 kernel with every weight held in a local variable and every term written out.
+   */
+  private static final class Kernel7x5 extends Convolution {
+
+    /**
+     * Creates the convolution.
+     *
+     * @param weights the weights of the kernel, row by row
+     */
+    private Kernel7x5(double[] weights) {
+      super(7, 5, weights);
+    }
+
+    @Override
+    public void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                      int count) {
+      double w00 = weights[0];
+      double w01 = weights[1];
+      double w02 = weights[2];
+      double w03 = weights[3];
+      double w04 = weights[4];
+      double w10 = weights[5];
+      double w11 = weights[6];
+      double w12 = weights[7];
+      double w13 = weights[8];
+      double w14 = weights[9];
+      double w20 = weights[10];
+      double w21 = weights[11];
+      double w22 = weights[12];
+      double w23 = weights[13];
+      double w24 = weights[14];
+      double w30 = weights[15];
+      double w31 = weights[16];
+      double w32 = weights[17];
+      double w33 = weights[18];
+      double w34 = weights[19];
+      double w40 = weights[20];
+      double w41 = weights[21];
+      double w42 = weights[22];
+      double w43 = weights[23];
+      double w44 = weights[24];
+      double w50 = weights[25];
+      double w51 = weights[26];
+      double w52 = weights[27];
+      double w53 = weights[28];
+      double w54 = weights[29];
+      double w60 = weights[30];
+      double w61 = weights[31];
+      double w62 = weights[32];
+      double w63 = weights[33];
+      double w64 = weights[34];
+
+      for (int column = 0; column < count; column++) {
+        int p0 = offset + column;
+        int p1 = p0 + stride;
+        int p2 = p1 + stride;
+        int p3 = p2 + stride;
+        int p4 = p3 + stride;
+        int p5 = p4 + stride;
+        int p6 = p5 + stride;
+        double sum = w00 * values[p0] + w01 * values[p0 + 1] + w02 * values[p0 + 2]
+                + w03 * values[p0 + 3] + w04 * values[p0 + 4] + w10 * values[p1]
+                + w11 * values[p1 + 1] + w12 * values[p1 + 2] + w13 * values[p1 + 3]
+                + w14 * values[p1 + 4] + w20 * values[p2] + w21 * values[p2 + 1]
+                + w22 * values[p2 + 2] + w23 * values[p2 + 3] + w24 * values[p2 + 4]
+                + w30 * values[p3] + w31 * values[p3 + 1] + w32 * values[p3 + 2]
+                + w33 * values[p3 + 3] + w34 * values[p3 + 4] + w40 * values[p4]
+                + w41 * values[p4 + 1] + w42 * values[p4 + 2] + w43 * values[p4 + 3]
+                + w44 * values[p4 + 4] + w50 * values[p5] + w51 * values[p5 + 1]
+                + w52 * values[p5 + 2] + w53 * values[p5 + 3] + w54 * values[p5 + 4]
+                + w60 * values[p6] + w61 * values[p6 + 1] + w62 * values[p6 + 2]
+                + w63 * values[p6 + 3] + w64 * values[p6 + 4];
+        result[resultOffset + column] = clip(sum);
+      }
+    }
+  }
+
+  /**
+   * A 7x7 kernel with every weight held in a local variable and every term written out.
+   */
+  private static final class Kernel7x7 extends Convolution {
+
+    /**
+     * Creates the convolution.
+     *
+     * @param weights the weights of the kernel, row by row
+     */
+    private Kernel7x7(double[] weights) {
+      super(7, 7, weights);
+    }
+
+    @Override
+    public void apply(int[] values, int offset, int stride, int[] result, int resultOffset,
+                      int count) {
+      double w00 = weights[0];
+      double w01 = weights[1];
+      double w02 = weights[2];
+      double w03 = weights[3];
+      double w04 = weights[4];
+      double w05 = weights[5];
+      double w06 = weights[6];
+      double w10 = weights[7];
+      double w11 = weights[8];
+      double w12 = weights[9];
+      double w13 = weights[10];
+      double w14 = weights[11];
+      double w15 = weights[12];
+      double w16 = weights[13];
+      double w20 = weights[14];
+      double w21 = weights[15];
+      double w22 = weights[16];
+      double w23 = weights[17];
+      double w24 = weights[18];
+      double w25 = weights[19];
+      double w26 = weights[20];
+      double w30 = weights[21];
+      double w31 = weights[22];
+      double w32 = weights[23];
+      double w33 = weights[24];
+      double w34 = weights[25];
+      double w35 = weights[26];
+      double w36 = weights[27];
+      double w40 = weights[28];
+      double w41 = weights[29];
+      double w42 = weights[30];
+      double w43 = weights[31];
+      double w44 = weights[32];
+      double w45 = weights[33];
+      double w46 = weights[34];
+      double w50 = weights[35];
+      double w51 = weights[36];
+      double w52 = weights[37];
+      double w53 = weights[38];
+      double w54 = weights[39];
+      double w55 = weights[40];
+      double w56 = weights[41];
+      double w60 = weights[42];
+      double w61 = weights[43];
+      double w62 = weights[44];
+      double w63 = weights[45];
+      double w64 = weights[46];
+      double w65 = weights[47];
+      double w66 = weights[48];
+
+      for (int column = 0; column < count; column++) {
+        int p0 = offset + column;
+        int p1 = p0 + stride;
+        int p2 = p1 + stride;
+        int p3 = p2 + stride;
+        int p4 = p3 + stride;
+        int p5 = p4 + stride;
+        int p6 = p5 + stride;
+        double sum = w00 * values[p0] + w01 * values[p0 + 1] + w02 * values[p0 + 2]
+                + w03 * values[p0 + 3] + w04 * values[p0 + 4] + w05 * values[p0 + 5]
+                + w06 * values[p0 + 6] + w10 * values[p1] + w11 * values[p1 + 1]
+                + w12 * values[p1 + 2] + w13 * values[p1 + 3] + w14 * values[p1 + 4]
+                + w15 * values[p1 + 5] + w16 * values[p1 + 6] + w20 * values[p2]
+                + w21 * values[p2 + 1] + w22 * values[p2 + 2] + w23 * values[p2 + 3]
+                + w24 * values[p2 + 4] + w25 * values[p2 + 5] + w26 * values[p2 + 6]
+                + w30 * values[p3] + w31 * values[p3 + 1] + w32 * values[p3 + 2]
+                + w33 * values[p3 + 3] + w34 * values[p3 + 4] + w35 * values[p3 + 5]
+                + w36 * values[p3 + 6] + w40 * values[p4] + w41 * values[p4 + 1]
+                + w42 * values[p4 + 2] + w43 * values[p4 + 3] + w44 * values[p4 + 4]
+                + w45 * values[p4 + 5] + w46 * values[p4 + 6] + w50 * values[p5]
+                + w51 * values[p5 + 1] + w52 * values[p5 + 2] + w53 * values[p5 + 3]
+                + w54 * values[p5 + 4] + w55 * values[p5 + 5] + w56 * values[p5 + 6]
+                + w60 * values[p6] + w61 * values[p6 + 1] + w62 * values[p6 + 2]
+                + w63 * values[p6 + 3] + w64 * values[p6 + 4] + w65 * values[p6 + 5]
+                + w66 * values[p6 + 6];
+        result[resultOffset + column] = clip(sum);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package utilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class implements the PixelStore interface by holding the pixels outside of the Java heap,
+ * in a direct or memory-mapped byte buffer with one byte per channel. Stores are created and owned
+ * by a PixelArena, which releases them when it is closed. The memory of a closed store is only
+ * given back once the garbage collector reclaims its buffer.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class DirectPixelStore implements PixelStore {
+
+  /**
+   * The pixels of the image, row by row with the channels of each pixel next to each other. This
+   * is null once the store is closed.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Width of the image.
+   */
+  private final int width;
+
+  /**
+   * Height of the image.
+   */
+  private final int height;
+
+  /**
+   * Action releasing the resources behind the buffer, such as its scratch file, run once when the
+   * store is closed.
+   */
+  private Runnable release;
+
+  /**
+   * Creates a store over the specified buffer.
+   *
+   * @param buffer  buffer of at least width * height * 3 bytes holding the pixels
+   * @param width   width of the image
+   * @param height  height of the image
+   * @param release action releasing the resources behind the buffer when the store is closed
+   */
+  DirectPixelStore(ByteBuffer buffer, int width, int height, Runnable release) {
+    this.buffer = buffer;
+    this.width = width;
+    this.height = height;
+    this.release = release;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int get(int row, int column, int channel) {
+    return buffer().get((row * width + column) * 3 + channel) & 0xFF;
+  }
+
+  @Override
+  public void set(int row, int column, int channel, int value) {
+    buffer().put((row * width + column) * 3 + channel, (byte) value);
+  }
+
+  @Override
+  public void getPixel(int row, int column, int[] rgb) {
+    ByteBuffer pixels = buffer();
+    int index = (row * width + column) * 3;
+    rgb[0] = pixels.get(index) & 0xFF;
+    rgb[1] = pixels.get(index + 1) & 0xFF;
+    rgb[2] = pixels.get(index + 2) & 0xFF;
+  }
+
+  @Override
+  public void setPixel(int row, int column, int[] rgb) {
+    ByteBuffer pixels = buffer();
+    int index = (row * width + column) * 3;
+    pixels.put(index, (byte) rgb[0]);
+    pixels.put(index + 1, (byte) rgb[1]);
+    pixels.put(index + 2, (byte) rgb[2]);
+  }
+
+  @Override
+  public void readChannel(int row, int column, int channel, int[] values, int offset,
+                          int count) {
+    ByteBuffer pixels = buffer();
+    int index = (row * width + column) * 3 + channel;
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = pixels.get(index + i * 3) & 0xFF;
+    }
+  }
+
+  @Override
+  public void writeChannel(int row, int column, int channel, int[] values, int offset,
+                           int count) {
+    ByteBuffer pixels = buffer();
+    int index = (row * width + column) * 3 + channel;
+    for (int i = 0; i < count; i++) {
+      pixels.put(index + i * 3, (byte) values[offset + i]);
+    }
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return (long) width * height * 3;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (buffer != null) {
+      buffer = null;
+      release.run();
+      release = null;
+    }
+  }
+
+  /**
+   * Returns the buffer holding the pixels.
+   *
+   * @return the buffer
+   * @throws IllegalStateException if this store has been closed
+   */
+  private ByteBuffer buffer() throws IllegalStateException {
+    ByteBuffer pixels = buffer;
+    if (pixels == null) {
+      throw new IllegalStateException("Pixel store has already been closed.");
+    }
+    return pixels;
+  }
+}
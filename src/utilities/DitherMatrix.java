@@ -0,0 +1,11 @@
+package utilities;
+
+/**
+ * Represents the threshold matrix of an ordered dither. BAYER spreads the thresholds in a regular
+ * recursive pattern, which is fast to build but shows a visible cross-hatch. BLUE_NOISE spreads
+ * them so that no two similar thresholds are close together, which looks like grain rather than a
+ * pattern.
+ */
+public enum DitherMatrix {
+  BAYER, BLUE_NOISE
+}
@@ -0,0 +1,12 @@
+package utilities;
+
+/**
+ * Represents how consecutive blur and sharpen operations are performed. OFF performs each one over
+ * the whole image as soon as it is requested. ON collects consecutive filters and performs them
+ * together tile by tile, giving the same result. COMPOSE also combines the collected kernels into
+ * a single kernel, which is faster but skips the rounding and clipping between filters, so the
+ * result may differ slightly.
+ */
+public enum FusionMode {
+  OFF, ON, COMPOSE
+}
@@ -0,0 +1,108 @@
+package utilities;
+
+/**
+ * This class implements the PixelStore interface by holding the pixels on the Java heap as a 3D
+ * integer array (height, width, channels).
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class HeapPixelStore implements PixelStore {
+
+  /**
+   * The pixels of the image.
+   */
+  private final int[][][] pixels;
+
+  /**
+   * Creates a black image of the specified size.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   */
+  public HeapPixelStore(int width, int height) {
+    this(new int[height][width][3]);
+  }
+
+  /**
+   * Creates a store holding the specified pixels. The array is used directly, not copied.
+   *
+   * @param pixels the image as 3D integer array (height, width, channels)
+   */
+  public HeapPixelStore(int[][][] pixels) {
+    this.pixels = pixels;
+  }
+
+  @Override
+  public int getWidth() {
+    return pixels.length == 0 ? 0 : pixels[0].length;
+  }
+
+  @Override
+  public int getHeight() {
+    return pixels.length;
+  }
+
+  @Override
+  public int get(int row, int column, int channel) {
+    return pixels[row][column][channel];
+  }
+
+  @Override
+  public void set(int row, int column, int channel, int value) {
+    pixels[row][column][channel] = value;
+  }
+
+  @Override
+  public void getPixel(int row, int column, int[] rgb) {
+    int[] pixel = pixels[row][column];
+    rgb[0] = pixel[0];
+    rgb[1] = pixel[1];
+    rgb[2] = pixel[2];
+  }
+
+  @Override
+  public void setPixel(int row, int column, int[] rgb) {
+    int[] pixel = pixels[row][column];
+    pixel[0] = rgb[0];
+    pixel[1] = rgb[1];
+    pixel[2] = rgb[2];
+  }
+
+  @Override
+  public void readChannel(int row, int column, int channel, int[] values, int offset,
+                          int count) {
+    int[][] line = pixels[row];
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = line[column + i][channel];
+    }
+  }
+
+  @Override
+  public void writeChannel(int row, int column, int channel, int[] values, int offset,
+                           int count) {
+    int[][] line = pixels[row];
+    for (int i = 0; i < count; i++) {
+      line[column + i][channel] = values[offset + i];
+    }
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return (long) getWidth() * getHeight() * 3 * Integer.BYTES;
+  }
+
+  @Override
+  public void close() {
+    // heap memory is reclaimed by the garbage collector
+  }
+
+  /**
+   * Returns the pixels of this store. The array is shared, not copied.
+   *
+   * @return the image as 3D integer array (height, width, channels)
+   */
+  public int[][][] getPixels() {
+    return pixels;
+  }
+}
@@ -0,0 +1,238 @@
+package utilities;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the histograms of the red, green and blue channels and of the luminance of
+ * an area of an image. It is computed in parallel, each band of rows being counted into its own
+ * bins which are added together at the end.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class Histogram {
+
+  /**
+   * Index of the luminance histogram, following the red, green and blue channels.
+   */
+  public static final int LUMINANCE = 3;
+
+  /**
+   * Number of distinct values of a channel.
+   */
+  public static final int LEVELS = 256;
+
+  /**
+   * Number of rows counted by each parallel task.
+   */
+  private static final int BAND_ROWS = 64;
+
+  /**
+   * The number of pixels with each value, for the red, green and blue channels and the luminance.
+   */
+  private final long[][] counts;
+
+  /**
+   * The number of pixels counted.
+   */
+  private final long total;
+
+  /**
+   * Creates a histogram from its bins.
+   *
+   * @param counts the number of pixels with each value, for every channel and the luminance
+   * @param total  the number of pixels counted
+   */
+  private Histogram(long[][] counts, long total) {
+    this.counts = counts;
+    this.total = total;
+  }
+
+  /**
+   * Computes the histograms of an area of an image. The luminance uses the same weights as the
+   * greyscale operation and drops the fractions the same way, so it is the grey value the pixel
+   * would be given.
+   *
+   * @param image  the image
+   * @param x      the leftmost column of the area
+   * @param y      the top row of the area
+   * @param width  width of the area
+   * @param height height of the area
+   * @return the histograms of the area
+   */
+  public static Histogram of(PixelStore image, int x, int y, int width, int height) {
+    int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+    long[][] counts = IntStream.range(0, bands).parallel()
+            .mapToObj(band -> count(image, x, width, y + band * BAND_ROWS,
+                    Math.min(y + height, y + (band + 1) * BAND_ROWS)))
+            .reduce(Histogram::merge)
+            .orElseGet(() -> new long[LUMINANCE + 1][LEVELS]);
+    return new Histogram(counts, (long) width * height);
+  }
+
+  /**
+   * Counts the values of a band of rows into new bins.
+   *
+   * @param image  the image
+   * @param x      the leftmost column of the area
+   * @param width  width of the area
+   * @param from   first row of the band
+   * @param to     row after the last row of the band
+   * @return the bins of the band
+   */
+  private static long[][] count(PixelStore image, int x, int width, int from, int to) {
+    long[][] bins = new long[LUMINANCE + 1][LEVELS];
+    int[][] channels = new int[3][width];
+
+    for (int row = from; row < to; row++) {
+      for (int channel = 0; channel < 3; channel++) {
+        image.readChannel(row, x, channel, channels[channel], 0, width);
+      }
+      for (int column = 0; column < width; column++) {
+        int red = channels[0][column];
+        int green = channels[1][column];
+        int blue = channels[2][column];
+        bins[0][red]++;
+        bins[1][green]++;
+        bins[2][blue]++;
+        // the fraction of each weighted channel is dropped, as greyscale does
+        bins[LUMINANCE][2126 * red / 10000 + 7152 * green / 10000 + 722 * blue / 10000]++;
+      }
+    }
+    return bins;
+  }
+
+  /**
+   * Adds the bins of one band to those of another.
+   *
+   * @param into  the bins to add to
+   * @param other the bins to add
+   * @return the bins added to
+   */
+  private static long[][] merge(long[][] into, long[][] other) {
+    for (int channel = 0; channel < into.length; channel++) {
+      for (int value = 0; value < LEVELS; value++) {
+        into[channel][value] += other[channel][value];
+      }
+    }
+    return into;
+  }
+
+  /**
+   * Returns the number of pixels counted.
+   *
+   * @return the number of pixels
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the number of pixels with the specified value.
+   *
+   * @param channel the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @param value   the value, from 0 to 255
+   * @return the number of pixels
+   */
+  public long getCount(int channel, int value) {
+    return counts[channel][value];
+  }
+
+  /**
+   * Returns the mean value of a channel.
+   *
+   * @param channel the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @return the mean, or 0 if no pixels were counted
+   */
+  public double getMean(int channel) {
+    if (total == 0) {
+      return 0;
+    }
+    long sum = 0;
+    for (int value = 0; value < LEVELS; value++) {
+      sum += value * counts[channel][value];
+    }
+    return (double) sum / total;
+  }
+
+  /**
+   * Returns the smallest value that at least the specified fraction of the pixels do not exceed.
+   *
+   * @param channel  the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @param fraction the fraction of pixels, from 0 to 1
+   * @return the value, from 0 to 255
+   */
+  public int getPercentile(int channel, double fraction) {
+    long target = Math.max(1, (long) Math.ceil(fraction * total));
+    long cumulative = 0;
+    for (int value = 0; value < LEVELS; value++) {
+      cumulative += counts[channel][value];
+      if (cumulative >= target) {
+        return value;
+      }
+    }
+    return LEVELS - 1;
+  }
+
+  /**
+   * Builds the table mapping every value of a channel to the value that spreads the values of the
+   * channel evenly over the whole range, based on its cumulative distribution.
+   *
+   * @param channel the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @return the table, indexed by value
+   */
+  public int[] getEqualizationTable(int channel) {
+    int[] table = new int[LEVELS];
+    long first = 0;
+    for (int value = 0; value < LEVELS && first == 0; value++) {
+      first = counts[channel][value];
+    }
+
+    long cumulative = 0;
+    for (int value = 0; value < LEVELS; value++) {
+      cumulative += counts[channel][value];
+      if (total == first) {
+        // a single value cannot be spread out
+        table[value] = value;
+      } else {
+        table[value] = (int) Math.max(0,
+                Math.round((double) (cumulative - first) * (LEVELS - 1) / (total - first)));
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Builds the table stretching the values of a channel linearly, so that the specified fraction
+   * of the darkest pixels becomes 0 and the same fraction of the brightest pixels becomes 255.
+   *
+   * @param channel the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @param clip    the fraction of pixels at each end allowed to be clipped
+   * @return the table, indexed by value
+   */
+  public int[] getStretchTable(int channel, double clip) {
+    int low = getPercentile(channel, clip);
+    int high = getPercentile(channel, 1 - clip);
+    int[] table = new int[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      if (high <= low) {
+        table[value] = value;
+      } else {
+        int stretched = Math.round((float) (value - low) * (LEVELS - 1) / (high - low));
+        table[value] = Math.max(0, Math.min(LEVELS - 1, stretched));
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Summarizes the histogram of a channel.
+   *
+   * @param channel the channel, 0 to 2 for red, green and blue or LUMINANCE
+   * @return the minimum, median, maximum and mean of the channel
+   */
+  public String describe(int channel) {
+    return String.format("min %d, median %d, max %d, mean %.1f", getPercentile(channel, 0),
+            getPercentile(channel, 0.5), getPercentile(channel, 1), getMean(channel));
+  }
+}
@@ -0,0 +1,104 @@
+package utilities;
+
+import java.awt.image.ColorModel;
+
+/**
+ * This class represents what the header of an image file says about the image: its size, how its
+ * pixels are stored and the format of the file.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class ImageInfo {
+
+  /**
+   * Width of the image.
+   */
+  private final int width;
+
+  /**
+   * Height of the image.
+   */
+  private final int height;
+
+  /**
+   * How the pixels of the image are stored in the file, or null if the reader cannot tell without
+   * decoding.
+   */
+  private final ColorModel colorModel;
+
+  /**
+   * Name of the format of the file, such as "png".
+   */
+  private final String format;
+
+  /**
+   * Creates the information about an image.
+   *
+   * @param width      width of the image
+   * @param height     height of the image
+   * @param colorModel how the pixels are stored in the file, may be null
+   * @param format     name of the format of the file
+   */
+  public ImageInfo(int width, int height, ColorModel colorModel, String format) {
+    this.width = width;
+    this.height = height;
+    this.colorModel = colorModel;
+    this.format = format;
+  }
+
+  /**
+   * Returns the width of the image.
+   *
+   * @return the width
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the image.
+   *
+   * @return the height
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns how the pixels of the image are stored in the file.
+   *
+   * @return the color model, or null if the reader cannot tell without decoding
+   */
+  public ColorModel getColorModel() {
+    return colorModel;
+  }
+
+  /**
+   * Returns the name of the format of the file.
+   *
+   * @return the format name, such as "png"
+   */
+  public String getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the number of bytes the image takes up once decoded into a store of one byte per
+   * channel.
+   *
+   * @return the number of bytes
+   */
+  public long getDecodedBytes() {
+    return (long) width * height * 3;
+  }
+
+  @Override
+  public String toString() {
+    String channels = colorModel == null ? "unknown"
+            : colorModel.getNumComponents() + " channel"
+            + (colorModel.getNumComponents() == 1 ? "" : "s") + " of "
+            + colorModel.getPixelSize() / colorModel.getNumComponents() + " bits";
+    return width + "x" + height + " " + format + ", " + channels;
+  }
+}
@@ -0,0 +1,93 @@
+package utilities;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class represents a Flight Recorder event covering the reading or writing of an image file
+ * by ImageUtil. The event is timed from its creation to finish(), and its fields are only filled
+ * in when it is going to be recorded, so it costs next to nothing while the event is disabled.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+@Name("imageprocessor.ImageIO")
+@Label("Image File I/O")
+@Category("Image Processor")
+@Description("An image file read, probed or written")
+@StackTrace(false)
+public final class ImageIoEvent extends Event {
+
+  /**
+   * What was done with the file: read, probe or write.
+   */
+  @Label("Operation")
+  private String operation;
+
+  /**
+   * Path of the file.
+   */
+  @Label("File")
+  private String file;
+
+  /**
+   * Width of the image.
+   */
+  @Label("Width")
+  private int width;
+
+  /**
+   * Height of the image.
+   */
+  @Label("Height")
+  private int height;
+
+  /**
+   * Size of the file.
+   */
+  @Label("Bytes")
+  @DataAmount
+  private long bytes;
+
+  /**
+   * Number of threads encoding or decoding the image may run on.
+   */
+  @Label("Threads")
+  private int threads;
+
+  /**
+   * Creates an event and starts timing it.
+   */
+  ImageIoEvent() {
+    begin();
+  }
+
+  /**
+   * Stops timing this event and records it if Flight Recorder is recording it.
+   *
+   * @param operation what was done with the file: read, probe or write
+   * @param file      path of the file
+   * @param width     width of the image
+   * @param height    height of the image
+   * @param threads   number of threads encoding or decoding the image may run on
+   */
+  void finish(String operation, String file, int width, int height, int threads) {
+    end();
+    if (shouldCommit()) {
+      this.operation = operation;
+      this.file = file;
+      this.width = width;
+      this.height = height;
+      this.bytes = new File(file).length();
+      this.threads = threads;
+      commit();
+    }
+  }
+}
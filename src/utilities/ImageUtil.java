@@ -1,12 +1,19 @@
 package utilities;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class contains utility methods to read an image from file and write to a file.
@@ -21,26 +28,73 @@ public class ImageUtil {
    * @return the image as a 3D array of integer values
    */
   public static int[][][] readImage(String filename) throws IOException {
-    BufferedImage input;
+    HeapPixelStore result = (HeapPixelStore) readImage(filename, HeapPixelStore::new);
+    return result.getPixels();
+  }
+
+  /**
+   * Read an image file into a pixel store created by the specified factory.
+   *
+   * @param filename the path of the file. Look at the ImageIO documentation to see which file
+   *                 formats are supported.
+   * @param factory  the factory to create the store with
+   * @return the image as a pixel store
+   * @throws IOException if the file cannot be read
+   */
+  public static PixelStore readImage(String filename, PixelStoreFactory factory)
+          throws IOException {
+    return readImage(filename, factory, 1);
+  }
 
-    input = ImageIO.read(new FileInputStream(filename));
+  /**
+   * Read an image file into a pixel store created by the specified factory, decoding only every
+   * nth pixel of every nth row. Decoding at a reduced size skips most of the work of decoding and
+   * converting the pixels that are left out.
+   *
+   * @param filename    the path of the file. Look at the ImageIO documentation to see which file
+   *                    formats are supported.
+   * @param factory     the factory to create the store with
+   * @param subsampling the distance between decoded pixels, 1 to decode every pixel
+   * @return the image as a pixel store
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if the subsampling is less than 1
+   */
+  public static PixelStore readImage(String filename, PixelStoreFactory factory, int subsampling)
+          throws IOException, IllegalArgumentException {
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("Subsampling must be at least 1.");
+    }
+    ImageIoEvent event = new ImageIoEvent();
+    BufferedImage input = useReader(filename, reader -> {
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+      return reader.read(0, param);
+    });
 
-    int[][][] result = new int[input.getHeight()][input.getWidth()][3];
+    int width = input.getWidth();
+    int height = input.getHeight();
+    PixelStore result = factory.create(width, height);
+    int[] row = new int[width];
+    int[][] channels = new int[3][width];
 
-    for (int i = 0; i < input.getHeight(); i++) {
-      for (int j = 0; j < input.getWidth(); j++) {
-        int color = input.getRGB(j, i);
-        Color c = new Color(color);
-        result[i][j][0] = c.getRed();
-        result[i][j][1] = c.getGreen();
-        result[i][j][2] = c.getBlue();
+    for (int i = 0; i < height; i++) {
+      input.getRGB(0, i, width, 1, row, 0, width);
+      for (int j = 0; j < width; j++) {
+        int color = row[j];
+        channels[0][j] = (color >> 16) & 0xFF;
+        channels[1][j] = (color >> 8) & 0xFF;
+        channels[2][j] = color & 0xFF;
+      }
+      for (int channel = 0; channel < 3; channel++) {
+        result.writeChannel(i, 0, channel, channels[channel], 0, width);
       }
     }
+    event.finish("read", filename, width, height, 1);
     return result;
   }
 
   /**
-   * Convenience function to get the width of an image.
+   * Convenience function to get the width of an image. Only the header of the file is read.
    *
    * @param filename the full path of the image file. Look at the ImageIO class to see which file
    *                 formats are supported
@@ -49,15 +103,11 @@ public class ImageUtil {
    */
 
   public static int getWidth(String filename) throws IOException {
-    BufferedImage input;
-
-    input = ImageIO.read(new FileInputStream(filename));
-
-    return input.getWidth();
+    return probe(filename).getWidth();
   }
 
   /**
-   * Convenience function to get the height of an image.
+   * Convenience function to get the height of an image. Only the header of the file is read.
    *
    * @param filename the full path of the image file. Look at the ImageIO class to see which file
    *                 formats are supported
@@ -65,11 +115,76 @@ public class ImageUtil {
    * @throws IOException if the file is not found
    */
   public static int getHeight(String filename) throws IOException {
-    BufferedImage input;
+    return probe(filename).getHeight();
+  }
+
+  /**
+   * Reads the size, color model and format of an image from the header of its file, without
+   * decoding any pixels.
+   *
+   * @param filename the full path of the image file. Look at the ImageIO class to see which file
+   *                 formats are supported
+   * @return the information about the image
+   * @throws IOException if the file is not found or its format is not supported
+   */
+  public static ImageInfo probe(String filename) throws IOException {
+    ImageIoEvent event = new ImageIoEvent();
+    ImageInfo info = useReader(filename, reader -> {
+      ImageTypeSpecifier type = reader.getRawImageType(0);
+      if (type == null) {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        type = types.hasNext() ? types.next() : null;
+      }
+      return new ImageInfo(reader.getWidth(0), reader.getHeight(0),
+              type == null ? null : type.getColorModel(), reader.getFormatName().toLowerCase());
+    });
+    event.finish("probe", filename, info.getWidth(), info.getHeight(), 1);
+    return info;
+  }
+
+  /**
+   * Opens an image file with a reader for its format, runs a task with the reader and closes the
+   * file again.
+   *
+   * @param filename the full path of the image file
+   * @param task     the task to run with the reader
+   * @param <T>      the type of the result of the task
+   * @return the result of the task
+   * @throws IOException if the file is not found, its format is not supported or the task fails
+   */
+  private static <T> T useReader(String filename, ReaderTask<T> task) throws IOException {
+    try (FileInputStream in = new FileInputStream(filename);
+         ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+      Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+      if (readers == null || !readers.hasNext()) {
+        throw new IOException("Unsupported image format '" + filename + "'");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        return task.run(reader);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
 
-    input = ImageIO.read(new FileInputStream(filename));
+  /**
+   * A task run with the reader of an image file.
+   *
+   * @param <T> the type of the result of the task
+   */
+  @FunctionalInterface
+  private interface ReaderTask<T> {
 
-    return input.getHeight();
+    /**
+     * Runs the task.
+     *
+     * @param reader the reader, positioned at the start of the file
+     * @return the result of the task
+     * @throws IOException if the file cannot be read
+     */
+    T run(ImageReader reader) throws IOException;
   }
 
   /**
@@ -87,6 +202,7 @@ public class ImageUtil {
           filename)
           throws IOException {
 
+    ImageIoEvent event = new ImageIoEvent();
     BufferedImage output = new BufferedImage(
             width,
             height,
@@ -107,5 +223,69 @@ public class ImageUtil {
     }
     String extension = filename.substring(filename.indexOf(".") + 1);
     ImageIO.write(output, extension, new FileOutputStream(filename));
+    event.finish("write", filename, width, height, 1);
+  }
+
+  /**
+   * Write an image held in a pixel store to a file in a given format.
+   *
+   * @param image    the image to write
+   * @param filename the full path of where the image must be stored. This should include the name
+   *                 and extension of the file
+   * @throws IOException if the file cannot be written to the provided path
+   */
+  public static void writeImage(PixelStore image, String filename) throws IOException {
+    writeImage(image, filename, new PngEncoder());
+  }
+
+  /**
+   * Write a pixel store to a file. PNG files are written with the specified encoder, other
+   * formats with ImageIO.
+   *
+   * @param image    the image to write
+   * @param filename the path of the file, whose extension decides the format
+   * @param encoder  the encoder to write PNG files with
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if the image has no pixels
+   */
+  public static void writeImage(PixelStore image, String filename, PngEncoder encoder)
+          throws IOException, IllegalArgumentException {
+    // checked before the file is created, so that no empty file is left behind
+    if (image.getWidth() < 1 || image.getHeight() < 1) {
+      throw new IllegalArgumentException("Cannot write an empty image of " + image.getWidth()
+              + "x" + image.getHeight() + " pixels.");
+    }
+    ImageIoEvent event = new ImageIoEvent();
+    String extension = filename.substring(filename.indexOf(".") + 1);
+    if (extension.equalsIgnoreCase("png")) {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+        encoder.write(image, out);
+      }
+      // the encoder compresses on the common pool as well as the calling thread
+      event.finish("write", filename, image.getWidth(), image.getHeight(),
+              ForkJoinPool.getCommonPoolParallelism() + 1);
+      return;
+    }
+
+    int width = image.getWidth();
+    int height = image.getHeight();
+    BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+    int[][] channels = new int[3][width];
+
+    for (int i = 0; i < height; i++) {
+      for (int channel = 0; channel < 3; channel++) {
+        image.readChannel(i, 0, channel, channels[channel], 0, width);
+      }
+      for (int j = 0; j < width; j++) {
+        row[j] = (channels[0][j] << 16) + (channels[1][j] << 8) + channels[2][j];
+      }
+      output.setRGB(0, i, width, 1, row, 0, width);
+    }
+
+    try (FileOutputStream out = new FileOutputStream(filename)) {
+      ImageIO.write(output, extension, out);
+    }
+    event.finish("write", filename, width, height, 1);
   }
 }
@@ -0,0 +1,207 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * This class creates pixel stores outside of the Java heap and owns them until it is closed. Heap
+ * usage and garbage collection cost therefore stay the same no matter how large the images are.
+ *
+ * <p>An arena either allocates direct memory, or maps every store onto a temporary file in a
+ * scratch directory so that images can be larger than physical memory. Existing raw files can also
+ * be mapped directly with map(). Closing the arena closes every store it created that has not been
+ * closed yet.
+ *
+ * <p>Closing a store only makes it unusable and deletes its scratch file. Java 17 offers no
+ * supported way to free a direct buffer or unmap a file, so the memory behind a store is given back
+ * when the garbage collector finds its buffer unreachable. Direct memory is also limited by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size; maxDirectMemory() returns that
+ * limit so that callers can keep the images they hold well below it. When the limit is reached,
+ * allocating another buffer first runs the garbage collector to reclaim closed ones.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class PixelArena implements PixelStoreFactory, AutoCloseable {
+
+  /**
+   * Directory temporary files are mapped from, or null to allocate direct memory.
+   */
+  private final Path directory;
+
+  /**
+   * Stores created by this arena that are still open.
+   */
+  private final List<PixelStore> stores;
+
+  /**
+   * True once this arena has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * Creates an arena that allocates direct memory.
+   */
+  public PixelArena() {
+    this(null);
+  }
+
+  /**
+   * Creates an arena that maps every store onto a temporary file in the specified directory.
+   *
+   * @param directory the scratch directory, or null to allocate direct memory instead
+   */
+  public PixelArena(Path directory) {
+    this.directory = directory;
+    this.stores = new ArrayList<>();
+  }
+
+  @Override
+  public PixelStore create(int width, int height) throws IllegalStateException {
+    int size = byteSize(width, height);
+    if (directory == null) {
+      return register(ByteBuffer.allocateDirect(size), width, height, () -> { });
+    }
+
+    try {
+      Path file = Files.createTempFile(directory, "pixels", ".raw");
+      ByteBuffer buffer = mapFile(file, size);
+      return register(buffer, width, height, () -> deleteQuietly(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not map scratch file in " + directory, e);
+    }
+  }
+
+  /**
+   * Maps the specified file as a store of raw pixels, three bytes per pixel row by row. The file
+   * is created or extended if it is too small, and is kept when the store is closed.
+   *
+   * @param file   the raw pixel file
+   * @param width  width of the image
+   * @param height height of the image
+   * @return a store whose pixels are the contents of the file
+   * @throws IOException if the file cannot be mapped
+   */
+  public PixelStore map(Path file, int width, int height) throws IOException {
+    ByteBuffer buffer = mapFile(file, byteSize(width, height));
+    return register(buffer, width, height, () -> { });
+  }
+
+  @Override
+  public void close() {
+    List<PixelStore> open;
+    synchronized (this) {
+      closed = true;
+      open = new ArrayList<>(stores);
+      stores.clear();
+    }
+    for (PixelStore store : open) {
+      store.close();
+    }
+  }
+
+  /**
+   * Returns the most direct memory the JVM allows, which bounds the stores an arena without a
+   * scratch directory can hold at once, including closed stores not yet garbage collected.
+   *
+   * @return the limit in bytes, the maximum heap size unless -XX:MaxDirectMemorySize is given
+   */
+  public static long maxDirectMemory() {
+    try {
+      long limit = Long.parseLong(ManagementFactory.getPlatformMXBean(
+              HotSpotDiagnosticMXBean.class).getVMOption("MaxDirectMemorySize").getValue());
+      if (limit > 0) {
+        return limit;
+      }
+    } catch (IllegalArgumentException | NullPointerException e) {
+      // not a HotSpot JVM, which also defaults to the maximum heap size
+    }
+    return Runtime.getRuntime().maxMemory();
+  }
+
+  /**
+   * Creates a store over a buffer and keeps track of it until it is closed.
+   *
+   * @param buffer  the buffer holding the pixels
+   * @param width   width of the image
+   * @param height  height of the image
+   * @param release action releasing the resources behind the buffer
+   * @return the store
+   * @throws IllegalStateException if this arena has been closed
+   */
+  private synchronized PixelStore register(ByteBuffer buffer, int width, int height,
+                                           Runnable release) throws IllegalStateException {
+    if (closed) {
+      release.run();
+      throw new IllegalStateException("Pixel arena has already been closed.");
+    }
+
+    PixelStore[] store = new PixelStore[1];
+    store[0] = new DirectPixelStore(buffer, width, height, () -> {
+      synchronized (this) {
+        stores.remove(store[0]);
+      }
+      release.run();
+    });
+    stores.add(store[0]);
+    return store[0];
+  }
+
+  /**
+   * Maps a file into memory for reading and writing, extending it to the specified size.
+   *
+   * @param file the file to map
+   * @param size the number of bytes to map
+   * @return the mapped buffer
+   * @throws IOException if the file cannot be mapped
+   */
+  private static ByteBuffer mapFile(Path file, int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      if (raf.length() < size) {
+        raf.setLength(size);
+      }
+      // the mapping stays valid after the channel is closed
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  /**
+   * Computes the number of bytes needed for an image of the specified size.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @return the number of bytes
+   * @throws IllegalArgumentException if the size is negative or too large for a single buffer
+   */
+  private static int byteSize(int width, int height) throws IllegalArgumentException {
+    long size = (long) width * height * 3;
+    if (width < 0 || height < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+              "Cannot store an image of " + width + "x" + height + " pixels off-heap.");
+    }
+    return (int) size;
+  }
+
+  /**
+   * Deletes a scratch file, ignoring failures since it is only temporary.
+   *
+   * @param file the file to delete
+   */
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // the file is left in the scratch directory
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package utilities;
+
+/**
+ * This interface represents the storage of an image's pixels as 8-bit red, green and blue
+ * channels, addressed by row, column and channel. Implementations may keep the pixels on the Java
+ * heap or outside of it.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public interface PixelStore extends AutoCloseable {
+
+  /**
+   * Returns the width of the stored image.
+   *
+   * @return the width in pixels
+   */
+  int getWidth();
+
+  /**
+   * Returns the height of the stored image.
+   *
+   * @return the height in pixels
+   */
+  int getHeight();
+
+  /**
+   * Returns the value of one channel of a pixel.
+   *
+   * @param row     row of the pixel
+   * @param column  column of the pixel
+   * @param channel channel of the pixel (0 for red, 1 for green and 2 for blue)
+   * @return the value of the channel, between 0 and 255
+   */
+  int get(int row, int column, int channel);
+
+  /**
+   * Sets the value of one channel of a pixel.
+   *
+   * @param row     row of the pixel
+   * @param column  column of the pixel
+   * @param channel channel of the pixel (0 for red, 1 for green and 2 for blue)
+   * @param value   the value of the channel, between 0 and 255
+   */
+  void set(int row, int column, int channel, int value);
+
+  /**
+   * Releases the memory held by this store. The store cannot be used afterwards.
+   */
+  @Override
+  void close();
+
+  /**
+   * Reads the red, green and blue channels of a pixel into the specified array.
+   *
+   * @param row    row of the pixel
+   * @param column column of the pixel
+   * @param rgb    array of at least 3 elements to read the channels into
+   */
+  default void getPixel(int row, int column, int[] rgb) {
+    rgb[0] = get(row, column, 0);
+    rgb[1] = get(row, column, 1);
+    rgb[2] = get(row, column, 2);
+  }
+
+  /**
+   * Sets the red, green and blue channels of a pixel from the specified array.
+   *
+   * @param row    row of the pixel
+   * @param column column of the pixel
+   * @param rgb    array of at least 3 elements holding the channels
+   */
+  default void setPixel(int row, int column, int[] rgb) {
+    set(row, column, 0, rgb[0]);
+    set(row, column, 1, rgb[1]);
+    set(row, column, 2, rgb[2]);
+  }
+
+  /**
+   * Reads one channel of consecutive pixels of a row into the specified array.
+   *
+   * @param row     row of the pixels
+   * @param column  column of the first pixel to read
+   * @param channel channel to read
+   * @param values  array to read the values into
+   * @param offset  index in the array of the first value
+   * @param count   number of pixels to read
+   */
+  default void readChannel(int row, int column, int channel, int[] values, int offset,
+                           int count) {
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = get(row, column + i, channel);
+    }
+  }
+
+  /**
+   * Sets one channel of consecutive pixels of a row from the specified array.
+   *
+   * @param row     row of the pixels
+   * @param column  column of the first pixel to set
+   * @param channel channel to set
+   * @param values  array holding the values, between 0 and 255
+   * @param offset  index in the array of the first value
+   * @param count   number of pixels to set
+   */
+  default void writeChannel(int row, int column, int channel, int[] values, int offset,
+                            int count) {
+    for (int i = 0; i < count; i++) {
+      set(row, column + i, channel, values[offset + i]);
+    }
+  }
+
+  /**
+   * Returns the number of bytes used to hold the pixels of this store.
+   *
+   * @return the size of the pixel data in bytes
+   */
+  long sizeInBytes();
+
+  /**
+   * Creates a copy of the specified store using the specified factory.
+   *
+   * @param source  the store to copy
+   * @param factory the factory to create the copy with
+   * @return a new store holding the same pixels
+   */
+  static PixelStore copyOf(PixelStore source, PixelStoreFactory factory) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    PixelStore copy = factory.create(width, height);
+    int[] values = new int[width];
+
+    for (int channel = 0; channel < 3; channel++) {
+      for (int row = 0; row < height; row++) {
+        source.readChannel(row, 0, channel, values, 0, width);
+        copy.writeChannel(row, 0, channel, values, 0, width);
+      }
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,20 @@
+package utilities;
+
+/**
+ * Represents a way of creating new, black pixel stores of a given size.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+@FunctionalInterface
+public interface PixelStoreFactory {
+
+  /**
+   * Creates a new store with every channel of every pixel set to 0.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @return the new store
+   */
+  PixelStore create(int width, int height);
+}
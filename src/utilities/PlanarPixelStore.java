@@ -0,0 +1,95 @@
+package utilities;
+
+/**
+ * This class implements the PixelStore interface by holding each channel of the image in its own
+ * byte array, one byte per pixel. This uses a quarter of the memory of a 3D integer array, and
+ * operations working on one channel at a time read consecutive bytes.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class PlanarPixelStore implements PixelStore {
+
+  /**
+   * The red, green and blue planes of the image, each holding the pixels row by row.
+   */
+  private final byte[][] planes;
+
+  /**
+   * Width of the image.
+   */
+  private final int width;
+
+  /**
+   * Height of the image.
+   */
+  private final int height;
+
+  /**
+   * Creates a black image of the specified size.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @throws IllegalArgumentException if the size is negative or too large for a single plane
+   */
+  public PlanarPixelStore(int width, int height) throws IllegalArgumentException {
+    long size = (long) width * height;
+    if (width < 0 || height < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+              "Cannot store an image of " + width + "x" + height + " pixels in planes.");
+    }
+    this.width = width;
+    this.height = height;
+    this.planes = new byte[3][(int) size];
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int get(int row, int column, int channel) {
+    return planes[channel][row * width + column] & 0xFF;
+  }
+
+  @Override
+  public void set(int row, int column, int channel, int value) {
+    planes[channel][row * width + column] = (byte) value;
+  }
+
+  @Override
+  public void readChannel(int row, int column, int channel, int[] values, int offset,
+                          int count) {
+    byte[] plane = planes[channel];
+    int start = row * width + column;
+    for (int i = 0; i < count; i++) {
+      values[offset + i] = plane[start + i] & 0xFF;
+    }
+  }
+
+  @Override
+  public void writeChannel(int row, int column, int channel, int[] values, int offset,
+                           int count) {
+    byte[] plane = planes[channel];
+    int start = row * width + column;
+    for (int i = 0; i < count; i++) {
+      plane[start + i] = (byte) values[offset + i];
+    }
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return (long) width * height * 3;
+  }
+
+  @Override
+  public void close() {
+    // heap memory is reclaimed by the garbage collector
+  }
+}
@@ -0,0 +1,369 @@
+package utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class writes images as 8-bit RGB PNG files. The filtered rows are split into chunks which
+ * are filtered and compressed in parallel by independent deflaters, each primed with the end of
+ * the chunk before it, and then joined into a single zlib stream.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public class PngEncoder {
+
+  /**
+   * Highest compression level, which gives the smallest files.
+   */
+  public static final int MAX_LEVEL = 9;
+
+  /**
+   * The 8 bytes every PNG file starts with.
+   */
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+  /**
+   * Size of the window deflate can refer back to, used as the dictionary of each chunk.
+   */
+  private static final int DICTIONARY_SIZE = 32768;
+
+  /**
+   * Approximate number of filtered bytes compressed by each task.
+   */
+  private static final int CHUNK_SIZE = 256 * 1024;
+
+  /**
+   * Maximum number of bytes written in each IDAT chunk of the file.
+   */
+  private static final int IDAT_SIZE = 64 * 1024;
+
+  /**
+   * Compression level from 0 (none) to 9 (smallest).
+   */
+  private final int level;
+
+  /**
+   * Filter applied to each row.
+   */
+  private final PngFilter filter;
+
+  /**
+   * Creates an encoder with the default compression level and adaptive filtering.
+   */
+  public PngEncoder() {
+    this(6, PngFilter.ADAPTIVE);
+  }
+
+  /**
+   * Creates an encoder with the specified compression level and filter.
+   *
+   * @param level  compression level from 0 (none) to 9 (smallest)
+   * @param filter filter applied to each row
+   * @throws IllegalArgumentException if the level is not between 0 and 9
+   */
+  public PngEncoder(int level, PngFilter filter) throws IllegalArgumentException {
+    if (level < 0 || level > MAX_LEVEL) {
+      throw new IllegalArgumentException("PNG compression level must be between 0 and "
+              + MAX_LEVEL + ".");
+    }
+    this.level = level;
+    this.filter = filter;
+  }
+
+  /**
+   * Writes the specified image to a stream as a PNG file.
+   *
+   * @param image the image to write
+   * @param out   the stream to write to
+   * @throws IOException              if the stream cannot be written to
+   * @throws IllegalArgumentException if the image has no pixels, which PNG files cannot hold
+   */
+  public void write(PixelStore image, OutputStream out)
+          throws IOException, IllegalArgumentException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (width < 1 || height < 1) {
+      // there would also be no chunk to end the compressed stream
+      throw new IllegalArgumentException("Cannot write an empty image of " + width + "x"
+              + height + " pixels.");
+    }
+    int stride = width * 3 + 1;
+    int rowsPerChunk = Math.max(1, CHUNK_SIZE / stride);
+    int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+
+    // filter the rows of every chunk, then compress every chunk with the end of the previous one
+    byte[][] filtered = new byte[chunks][];
+    IntStream.range(0, chunks).parallel().forEach(chunk -> filtered[chunk] =
+            filterRows(image, chunk * rowsPerChunk,
+                    Math.min(height, (chunk + 1) * rowsPerChunk)));
+    byte[][] compressed = new byte[chunks][];
+    IntStream.range(0, chunks).parallel().forEach(chunk -> compressed[chunk] =
+            compress(filtered[chunk], chunk == 0 ? null : filtered[chunk - 1],
+                    chunk == chunks - 1));
+
+    Adler32 adler = new Adler32();
+    for (byte[] rows : filtered) {
+      adler.update(rows, 0, rows.length);
+    }
+
+    DataOutputStream png = new DataOutputStream(out);
+    png.write(SIGNATURE);
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(width);
+    headerData.writeInt(height);
+    // 8 bits per channel, RGB, deflate, adaptive filtering, no interlacing
+    headerData.write(new byte[]{8, 2, 0, 0, 0});
+    writeChunk(png, "IHDR", header.toByteArray(), 0, header.size());
+
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    data.write(0x78);
+    data.write(zlibLevelFlag());
+    for (byte[] block : compressed) {
+      data.write(block);
+    }
+    long checksum = adler.getValue();
+    data.write(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16),
+        (byte) (checksum >>> 8), (byte) checksum});
+
+    byte[] stream = data.toByteArray();
+    for (int offset = 0; offset < stream.length; offset += IDAT_SIZE) {
+      writeChunk(png, "IDAT", stream, offset, Math.min(IDAT_SIZE, stream.length - offset));
+    }
+    writeChunk(png, "IEND", new byte[0], 0, 0);
+    png.flush();
+  }
+
+  /**
+   * Filters a range of rows of an image, each row starting with the type of filter used.
+   *
+   * @param image the image
+   * @param from  first row to filter
+   * @param to    row after the last row to filter
+   * @return the filtered rows
+   */
+  private byte[] filterRows(PixelStore image, int from, int to) {
+    int width = image.getWidth();
+    int length = width * 3;
+    byte[] result = new byte[(to - from) * (length + 1)];
+    byte[] previous = new byte[length];
+    byte[] current = new byte[length];
+    byte[][] candidates = new byte[5][length];
+    int[] channel = new int[width];
+
+    if (from > 0) {
+      readRow(image, from - 1, channel, previous);
+    }
+
+    for (int row = from; row < to; row++) {
+      readRow(image, row, channel, current);
+      int offset = (row - from) * (length + 1);
+
+      int type;
+      if (filter == PngFilter.ADAPTIVE) {
+        type = 0;
+        long best = Long.MAX_VALUE;
+        for (int candidate = 0; candidate < 5; candidate++) {
+          applyFilter(candidate, current, previous, candidates[candidate]);
+          long cost = cost(candidates[candidate]);
+          if (cost < best) {
+            best = cost;
+            type = candidate;
+          }
+        }
+      } else {
+        type = filter.ordinal();
+        applyFilter(type, current, previous, candidates[type]);
+      }
+
+      result[offset] = (byte) type;
+      System.arraycopy(candidates[type], 0, result, offset + 1, length);
+
+      byte[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return result;
+  }
+
+  /**
+   * Reads one row of an image as interleaved RGB bytes.
+   *
+   * @param image   the image
+   * @param row     the row to read
+   * @param channel scratch array as wide as the image
+   * @param bytes   array to read the row into
+   */
+  private static void readRow(PixelStore image, int row, int[] channel, byte[] bytes) {
+    for (int c = 0; c < 3; c++) {
+      image.readChannel(row, 0, c, channel, 0, channel.length);
+      for (int column = 0; column < channel.length; column++) {
+        bytes[column * 3 + c] = (byte) channel[column];
+      }
+    }
+  }
+
+  /**
+   * Applies one of the PNG filter types to a row.
+   *
+   * @param type     the filter type, 0 (none) to 4 (Paeth)
+   * @param current  the row to filter
+   * @param previous the row above, all zero for the first row
+   * @param result   array to write the filtered row to
+   */
+  private static void applyFilter(int type, byte[] current, byte[] previous, byte[] result) {
+    for (int i = 0; i < current.length; i++) {
+      int x = current[i] & 0xFF;
+      int a = i >= 3 ? current[i - 3] & 0xFF : 0;
+      int b = previous[i] & 0xFF;
+      int c = i >= 3 ? previous[i - 3] & 0xFF : 0;
+
+      switch (type) {
+        case 0:
+          result[i] = (byte) x;
+          break;
+        case 1:
+          result[i] = (byte) (x - a);
+          break;
+        case 2:
+          result[i] = (byte) (x - b);
+          break;
+        case 3:
+          result[i] = (byte) (x - ((a + b) >> 1));
+          break;
+        default:
+          result[i] = (byte) (x - paeth(a, b, c));
+          break;
+      }
+    }
+  }
+
+  /**
+   * Predicts a byte from its left, upper and upper left neighbours as defined by PNG.
+   *
+   * @param a the byte to the left
+   * @param b the byte above
+   * @param c the byte above and to the left
+   * @return the predicted byte
+   */
+  private static int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) {
+      return a;
+    }
+    return pb <= pc ? b : c;
+  }
+
+  /**
+   * Estimates how well a filtered row will compress as the sum of its bytes read as signed values.
+   *
+   * @param filtered the filtered row
+   * @return the estimate, lower is better
+   */
+  private static long cost(byte[] filtered) {
+    long sum = 0;
+    for (byte value : filtered) {
+      sum += Math.abs(value);
+    }
+    return sum;
+  }
+
+  /**
+   * Compresses a chunk of filtered rows as raw deflate blocks. Every chunk but the last ends on a
+   * byte boundary without a final block, so that the chunks can be joined into one stream.
+   *
+   * @param input    the chunk to compress
+   * @param previous the chunk before it, whose end is used as dictionary, or null for the first
+   * @param last     true if this is the last chunk of the stream
+   * @return the compressed chunk
+   */
+  private byte[] compress(byte[] input, byte[] previous, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (previous != null) {
+        int length = Math.min(DICTIONARY_SIZE, previous.length);
+        deflater.setDictionary(previous, previous.length - length, length);
+      }
+      deflater.setInput(input);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+      byte[] buffer = new byte[64 * 1024];
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          out.write(buffer, 0, deflater.deflate(buffer));
+        }
+      } else {
+        int count;
+        do {
+          count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          out.write(buffer, 0, count);
+        } while (count == buffer.length);
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Returns the second byte of the zlib header, which records the compression level.
+   *
+   * @return the header byte
+   */
+  private int zlibLevelFlag() {
+    if (level <= 1) {
+      return 0x01;
+    } else if (level <= 5) {
+      return 0x5E;
+    } else if (level == 6) {
+      return 0x9C;
+    }
+    return 0xDA;
+  }
+
+  /**
+   * Writes a PNG chunk with its length and checksum.
+   *
+   * @param png    the stream to write to
+   * @param type   the four letter type of the chunk
+   * @param data   array holding the data of the chunk
+   * @param offset index of the first byte of the data
+   * @param length number of bytes of data
+   * @throws IOException if the stream cannot be written to
+   */
+  private static void writeChunk(DataOutputStream png, String type, byte[] data, int offset,
+                                 int length) throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data, offset, length);
+
+    png.writeInt(length);
+    png.write(typeBytes);
+    png.write(data, offset, length);
+    png.writeInt((int) crc.getValue());
+  }
+
+  /**
+   * Returns a description of this encoder's settings.
+   *
+   * @return the compression level and filter
+   */
+  @Override
+  public String toString() {
+    return "level " + level + ", " + filter.name().toLowerCase() + " filter";
+  }
+}
@@ -0,0 +1,9 @@
+package utilities;
+
+/**
+ * Represents the filter applied to each row of a PNG image before it is compressed. ADAPTIVE picks
+ * the filter for each row that gives the smallest sum of absolute filtered values.
+ */
+public enum PngFilter {
+  NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+}
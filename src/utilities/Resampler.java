@@ -0,0 +1,96 @@
+package utilities;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class resizes images by area averaging: every pixel of the result is the average of the
+ * part of the original image it covers, with pixels that are only partly covered counting for
+ * that part. Rows of the result are computed in parallel.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class Resampler {
+
+  /**
+   * Private constructor, this class only has static methods.
+   */
+  private Resampler() {
+  }
+
+  /**
+   * Resizes an image to the size of the target store.
+   *
+   * @param source the image to resize
+   * @param target the store to write the resized image to, of the size wanted
+   */
+  public static void areaAverage(PixelStore source, PixelStore target) {
+    int sourceWidth = source.getWidth();
+    int targetWidth = target.getWidth();
+    if (sourceWidth == 0 || source.getHeight() == 0) {
+      return;
+    }
+
+    // the source columns each target column covers, and how much of each it covers
+    int[] firstColumn = new int[targetWidth];
+    double[][] columnWeights = new double[targetWidth][];
+    double scaleX = (double) sourceWidth / targetWidth;
+    for (int column = 0; column < targetWidth; column++) {
+      firstColumn[column] = (int) Math.floor(column * scaleX);
+      columnWeights[column] = coverage(column * scaleX, (column + 1) * scaleX, sourceWidth);
+    }
+
+    double scaleY = (double) source.getHeight() / target.getHeight();
+    double area = scaleX * scaleY;
+
+    IntStream.range(0, target.getHeight()).parallel().forEach(row -> {
+      int firstRow = (int) Math.floor(row * scaleY);
+      double[] rowWeights = coverage(row * scaleY, (row + 1) * scaleY, source.getHeight());
+      int[] values = new int[sourceWidth];
+      double[] sums = new double[targetWidth];
+      int[] result = new int[targetWidth];
+
+      for (int channel = 0; channel < 3; channel++) {
+        Arrays.fill(sums, 0);
+        for (int i = 0; i < rowWeights.length; i++) {
+          source.readChannel(firstRow + i, 0, channel, values, 0, sourceWidth);
+          double rowWeight = rowWeights[i];
+
+          for (int column = 0; column < targetWidth; column++) {
+            double[] weights = columnWeights[column];
+            int first = firstColumn[column];
+            double sum = 0;
+            for (int j = 0; j < weights.length; j++) {
+              sum += weights[j] * values[first + j];
+            }
+            sums[column] += rowWeight * sum;
+          }
+        }
+
+        for (int column = 0; column < targetWidth; column++) {
+          result[column] = Math.min(255, (int) Math.round(sums[column] / area));
+        }
+        target.writeChannel(row, 0, channel, result, 0, targetWidth);
+      }
+    });
+  }
+
+  /**
+   * Computes how much of each whole pixel an interval covers.
+   *
+   * @param start the start of the interval, in pixels
+   * @param end   the end of the interval, in pixels
+   * @param size  the number of pixels, beyond which the interval is cut off
+   * @return the part of each pixel covered, starting with the pixel the interval starts in
+   */
+  private static double[] coverage(double start, double end, int size) {
+    int first = (int) Math.floor(start);
+    int last = Math.min(size, (int) Math.ceil(end)) - 1;
+    double[] weights = new double[Math.max(0, last - first + 1)];
+    for (int pixel = first; pixel <= last; pixel++) {
+      weights[pixel - first] = Math.min(end, pixel + 1) - Math.max(start, pixel);
+    }
+    return weights;
+  }
+}
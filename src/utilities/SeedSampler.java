@@ -0,0 +1,220 @@
+package utilities;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * This class picks distinct pixels of an area as the seeds of a mosaic. Pixels are identified by
+ * their index in the area, row by row, and a bit set of the pixels already picked makes checking
+ * for a duplicate take constant time. Uniform seeds are picked with Floyd's algorithm, which draws
+ * exactly one random number per seed. Spaced seeds are picked by throwing random pixels and
+ * keeping the ones far enough from the seeds kept so far. Every seed kept marks the disc of pixels
+ * around it in a second bit set, so each throw is checked by reading a single bit instead of
+ * measuring its distance to nearby seeds. The spacing shrinks whenever throws keep missing, so the
+ * requested number of seeds is always reached. The seeds only depend on the size
+ * of the area, the number of seeds and the random number generator, so a generator created with a
+ * fixed seed always gives the same mosaic.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class SeedSampler {
+
+  /**
+   * Starting distance between spaced seeds, relative to the side of the square each seed would
+   * have if the area was split evenly. Random throws stop finding room at about this distance
+   * once the requested number of seeds is reached, so it rarely has to shrink.
+   */
+  private static final double SPACING = 0.62;
+
+  /**
+   * Number of throws in a row that may miss before the spacing shrinks.
+   */
+  private static final int MAX_MISSES = 100;
+
+  /**
+   * Factor the spacing shrinks by when throws keep missing.
+   */
+  private static final double SHRINK = 0.95;
+
+  /**
+   * Private constructor, this class only has static methods.
+   */
+  private SeedSampler() {
+  }
+
+  /**
+   * Picks distinct pixels of an area.
+   *
+   * @param width    number of columns of the area
+   * @param height   number of rows of the area
+   * @param count    number of pixels to pick
+   * @param sampling how the pixels are spread over the area
+   * @param random   the generator of the random numbers
+   * @return the index of every picked pixel, row times width plus column
+   * @throws IllegalArgumentException if the area is empty or has more pixels than an int can
+   *                                  count, or the count is not between 1 and the number of pixels
+   */
+  public static int[] sample(int width, int height, int count, SeedSampling sampling,
+                             Random random) throws IllegalArgumentException {
+    long area = (long) width * height;
+    if (width < 1 || height < 1 || area > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Cannot pick seeds from an area of " + width + "x"
+              + height + " pixels.");
+    }
+    if (count < 1 || count > area) {
+      throw new IllegalArgumentException("Number of seeds must be between 1 and " + area + ".");
+    }
+
+    int[] seeds = new int[count];
+    BitSet taken = new BitSet((int) area);
+    int picked = 0;
+    if (sampling == SeedSampling.POISSON) {
+      picked = pickSpaced(width, height, seeds, taken, random);
+    }
+    pickUniform((int) area, seeds, picked, taken, random);
+    return seeds;
+  }
+
+  /**
+   * Fills up the seeds with pixels that have not been picked yet, each with the same chance.
+   *
+   * @param area   number of pixels of the area
+   * @param seeds  the seeds, of which the first ones are already picked
+   * @param picked number of seeds already picked
+   * @param taken  the pixels already picked
+   * @param random the generator of the random numbers
+   */
+  private static void pickUniform(int area, int[] seeds, int picked, BitSet taken,
+                                  Random random) {
+    int needed = seeds.length - picked;
+    if (needed == 0) {
+      return;
+    }
+
+    if (picked == 0) {
+      // Floyd's algorithm: every pixel below j + 1 has the same chance, and if the pixel drawn is
+      // taken, j itself cannot be
+      for (int j = area - needed; j < area; j++) {
+        int pixel = random.nextInt(j + 1);
+        if (taken.get(pixel)) {
+          pixel = j;
+        }
+        taken.set(pixel);
+        seeds[picked++] = pixel;
+      }
+      return;
+    }
+
+    // only reached when spaced seeds cover most of the area, so listing the rest is cheap
+    int[] free = new int[area - picked];
+    int count = 0;
+    for (int pixel = taken.nextClearBit(0); pixel < area; pixel = taken.nextClearBit(pixel + 1)) {
+      free[count++] = pixel;
+    }
+    for (int i = 0; i < needed; i++) {
+      int chosen = i + random.nextInt(count - i);
+      int pixel = free[chosen];
+      free[chosen] = free[i];
+      taken.set(pixel);
+      seeds[picked++] = pixel;
+    }
+  }
+
+  /**
+   * Picks pixels that are at least a spacing apart from each other, shrinking the spacing when
+   * throws keep missing, until every seed is picked or the spacing no longer keeps pixels apart.
+   *
+   * @param width  number of columns of the area
+   * @param height number of rows of the area
+   * @param seeds  the seeds to pick
+   * @param taken  the pixels picked, updated as pixels are picked
+   * @param random the generator of the random numbers
+   * @return number of seeds picked
+   */
+  private static int pickSpaced(int width, int height, int[] seeds, BitSet taken,
+                                Random random) {
+    int area = width * height;
+    double spacing = SPACING * Math.sqrt((double) area / seeds.length);
+    // a bit for every pixel nearer than the spacing to a seed, so a throw is checked by reading a
+    // single bit
+    long[] covered = new long[(area + 63) >> 6];
+
+    int picked = 0;
+    int misses = 0;
+    while (picked < seeds.length) {
+      int pixel = random.nextInt(area);
+      // the shift only uses the low 6 bits of the pixel, its bit within the element
+      if ((covered[pixel >> 6] & 1L << pixel) == 0) {
+        cover(covered, width, height, pixel, spacing);
+        taken.set(pixel);
+        seeds[picked++] = pixel;
+        misses = 0;
+      } else if (++misses == MAX_MISSES) {
+        spacing *= SHRINK;
+        if (spacing <= 1) {
+          break;
+        }
+        Arrays.fill(covered, 0);
+        for (int i = 0; i < picked; i++) {
+          cover(covered, width, height, seeds[i], spacing);
+        }
+        misses = 0;
+      }
+    }
+    return picked;
+  }
+
+  /**
+   * Marks the pixels nearer than the spacing to a seed as covered.
+   *
+   * @param covered the covered pixels, a bit each
+   * @param width   number of columns of the area
+   * @param height  number of rows of the area
+   * @param pixel   the seed, row times width plus column
+   * @param spacing the smallest distance allowed between seeds
+   */
+  private static void cover(long[] covered, int width, int height, int pixel, double spacing) {
+    int row = pixel / width;
+    int column = pixel % width;
+    double limit = spacing * spacing;
+    int reach = (int) Math.ceil(spacing) - 1;
+
+    for (int i = Math.max(0, row - reach); i <= Math.min(height - 1, row + reach); i++) {
+      // widest column distance whose square is below what is left of the limit
+      double remaining = limit - (double) (i - row) * (i - row);
+      int half = (int) Math.sqrt(remaining);
+      if ((double) half * half >= remaining) {
+        half--;
+      }
+      int start = i * width;
+      setBits(covered, start + Math.max(0, column - half),
+              start + Math.min(width, column + half + 1));
+    }
+  }
+
+  /**
+   * Sets a range of bits.
+   *
+   * @param bits the bits, 64 per element
+   * @param from the first bit to set
+   * @param to   the bit after the last one to set
+   */
+  private static void setBits(long[] bits, int from, int to) {
+    int first = from >> 6;
+    int last = (to - 1) >> 6;
+    // shifts only use the low 6 bits of the bit index
+    long firstMask = -1L << from;
+    long lastMask = -1L >>> -to;
+    if (first == last) {
+      bits[first] |= firstMask & lastMask;
+      return;
+    }
+    bits[first] |= firstMask;
+    for (int i = first + 1; i < last; i++) {
+      bits[i] = -1L;
+    }
+    bits[last] |= lastMask;
+  }
+}
@@ -0,0 +1,10 @@
+package utilities;
+
+/**
+ * Represents how the seeds of a mosaic are spread over the image. UNIFORM picks every pixel with
+ * the same chance, so seeds may clump together and leave gaps. POISSON keeps the seeds about the
+ * same distance apart from each other, so the pieces of the mosaic have similar sizes.
+ */
+public enum SeedSampling {
+  UNIFORM, POISSON
+}
@@ -0,0 +1,256 @@
+package utilities;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class applies a chain of convolution kernels to a region of an image in a single pass.
+ * The region is split into tiles, and every tile goes through all of the kernels while it is
+ * small enough to stay in the processor cache. To do so, each kernel is applied to the tile
+ * together with a margin wide enough for the kernels that follow it, so the margins shrink down to
+ * the tile itself by the last kernel. Every kernel rounds and clips its result as if it had been
+ * applied to the whole image on its own, and pixels outside of the region keep their values, so
+ * the result is exactly the same as applying the kernels one after the other.
+ *
+ * <p>Tiles are processed in parallel, one band of tiles at a time.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class StencilChain {
+
+  /**
+   * Height of the tiles.
+   */
+  private static final int TILE_ROWS = 64;
+
+  /**
+   * Width of the tiles.
+   */
+  private static final int TILE_COLUMNS = 128;
+
+  /**
+   * Private constructor, this class only has static methods.
+   */
+  private StencilChain() {
+  }
+
+  /**
+   * Applies the kernels one after the other to a region of an image, reading pixels around the
+   * region as needed.
+   *
+   * @param image    the image, which is not changed
+   * @param bounds   the region to filter, inside of the image
+   * @param kernels  the kernels to apply in order, each with an odd number of rows and columns
+   * @param border   how pixels outside of the image are made up, which cannot be WRAP since it
+   *                 reads the opposite edge of the image
+   * @param result   the store to write the filtered region to, of the size of the region
+   * @param progress called from the calling thread with the number of rows of the region done
+   *                 after every band of tiles, and may stop the operation by throwing
+   * @throws IllegalArgumentException if the border mode is WRAP
+   */
+  public static void apply(PixelStore image, Rectangle bounds, List<double[][]> kernels,
+                           BorderMode border, PixelStore result, IntConsumer progress)
+          throws IllegalArgumentException {
+    if (border == BorderMode.WRAP) {
+      throw new IllegalArgumentException("Filters cannot be chained with the wrap border mode.");
+    }
+
+    // margin each kernel is applied with, so that the kernels after it have the pixels they need
+    int count = kernels.size();
+    int[] rowMargins = new int[count + 1];
+    int[] columnMargins = new int[count + 1];
+    for (int k = count - 1; k >= 0; k--) {
+      rowMargins[k] = rowMargins[k + 1] + kernels.get(k).length / 2;
+      columnMargins[k] = columnMargins[k + 1] + kernels.get(k)[0].length / 2;
+    }
+
+    List<Convolution> convolutions = new ArrayList<>();
+    for (double[][] kernel : kernels) {
+      convolutions.add(Convolution.of(kernel));
+    }
+
+    int columnTiles = (bounds.width + TILE_COLUMNS - 1) / TILE_COLUMNS;
+    for (int top = bounds.y; top < bounds.y + bounds.height; top += TILE_ROWS) {
+      int y = top;
+      int height = Math.min(TILE_ROWS, bounds.y + bounds.height - top);
+      IntStream.range(0, columnTiles).parallel().forEach(tile -> {
+        int x = bounds.x + tile * TILE_COLUMNS;
+        Rectangle area = new Rectangle(x, y, Math.min(TILE_COLUMNS, bounds.x + bounds.width - x),
+                height);
+        applyToTile(image, bounds, area, convolutions, rowMargins, columnMargins, border,
+                result);
+      });
+      progress.accept(top + height - bounds.y);
+    }
+  }
+
+  /**
+   * Applies the kernels to a single tile.
+   *
+   * @param image         the image
+   * @param bounds        the region being filtered
+   * @param tile          the tile, inside of the region
+   * @param convolutions  the kernels to apply in order
+   * @param rowMargins    number of rows each kernel is applied to above and below the tile
+   * @param columnMargins number of columns each kernel is applied to left and right of the tile
+   * @param border        how pixels outside of the image are made up
+   * @param result        the store to write the filtered region to
+   */
+  private static void applyToTile(PixelStore image, Rectangle bounds, Rectangle tile,
+                                  List<Convolution> convolutions, int[] rowMargins,
+                                  int[] columnMargins,
+                                  BorderMode border, PixelStore result) {
+    Rectangle whole = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+
+    for (int channel = 0; channel < 3; channel++) {
+      // the values read from the image, then the values after each kernel
+      Rectangle area = grow(tile, rowMargins[0], columnMargins[0]).intersection(whole);
+      int[] values = new int[area.width * area.height];
+      for (int row = 0; row < area.height; row++) {
+        image.readChannel(area.y + row, area.x, channel, values, row * area.width, area.width);
+      }
+
+      for (int k = 0; k < convolutions.size(); k++) {
+        Convolution convolution = convolutions.get(k);
+        int rowRange = convolution.getRows() / 2;
+        int columnRange = convolution.getColumns() / 2;
+        Rectangle next = grow(tile, rowMargins[k + 1], columnMargins[k + 1]).intersection(whole);
+
+        int paddedWidth = next.width + 2 * columnRange;
+        int[] padded = pad(values, area, next.x - columnRange, next.y - rowRange, paddedWidth,
+                next.height + 2 * rowRange, border, whole);
+        values = convolve(convolution, padded, paddedWidth, next, bounds);
+        area = next;
+      }
+
+      for (int row = 0; row < tile.height; row++) {
+        result.writeChannel(tile.y + row - bounds.y, tile.x - bounds.x, channel, values,
+                row * tile.width, tile.width);
+      }
+    }
+  }
+
+  /**
+   * Applies a kernel to every pixel of an area that lies in the region being filtered, and copies
+   * the other pixels unchanged.
+   *
+   * @param convolution the kernel
+   * @param padded      the values around the area, with the range of the kernel on every side
+   * @param paddedWidth number of columns of the padded values
+   * @param area        the area to compute
+   * @param bounds      the region being filtered
+   * @return the values of the area, row by row
+   */
+  private static int[] convolve(Convolution convolution, int[] padded, int paddedWidth,
+                                Rectangle area, Rectangle bounds) {
+    int rowRange = convolution.getRows() / 2;
+    int columnRange = convolution.getColumns() / 2;
+    int[] values = new int[area.width * area.height];
+
+    // columns of the area inside of the region
+    int first = Math.max(bounds.x, area.x) - area.x;
+    int last = Math.min(bounds.x + bounds.width, area.x + area.width) - area.x;
+
+    for (int row = 0; row < area.height; row++) {
+      int imageRow = area.y + row;
+      int start = row * area.width;
+      int center = (row + rowRange) * paddedWidth + columnRange;
+      if (imageRow < bounds.y || imageRow >= bounds.y + bounds.height || first >= last) {
+        System.arraycopy(padded, center, values, start, area.width);
+        continue;
+      }
+
+      System.arraycopy(padded, center, values, start, first);
+      convolution.apply(padded, row * paddedWidth + first, paddedWidth, values, start + first,
+              last - first);
+      System.arraycopy(padded, center + last, values, start + last, area.width - last);
+    }
+    return values;
+  }
+
+  /**
+   * Copies the values of an area into a larger block, making up the values outside of the image
+   * according to the border mode. The block only reaches outside of the area where it reaches
+   * outside of the image, and the border mode maps those positions back into the area.
+   *
+   * @param values the values of the area, row by row
+   * @param area   the area, inside of the image
+   * @param x      column of the image of the first column of the block
+   * @param y      row of the image of the first row of the block
+   * @param width  number of columns of the block
+   * @param height number of rows of the block
+   * @param border how pixels outside of the image are made up
+   * @param whole  the bounds of the image
+   * @return the block, row by row
+   */
+  private static int[] pad(int[] values, Rectangle area, int x, int y, int width, int height,
+                           BorderMode border, Rectangle whole) {
+    int[] padded = new int[width * height];
+    int start = Math.max(x, 0);
+    int end = Math.min(x + width, whole.width);
+
+    for (int row = 0; row < height; row++) {
+      int source = border.map(y + row, whole.height);
+      if (source < 0) {
+        // rows outside of the image are black and were left as zeros
+        continue;
+      }
+      int sourceStart = (source - area.y) * area.width - area.x;
+      int target = row * width - x;
+
+      if (end > start) {
+        System.arraycopy(values, sourceStart + start, padded, target + start, end - start);
+      }
+      for (int column = x; column < Math.min(start, x + width); column++) {
+        int mapped = border.map(column, whole.width);
+        padded[target + column] = mapped < 0 ? 0 : values[sourceStart + mapped];
+      }
+      for (int column = Math.max(end, x); column < x + width; column++) {
+        int mapped = border.map(column, whole.width);
+        padded[target + column] = mapped < 0 ? 0 : values[sourceStart + mapped];
+      }
+    }
+    return padded;
+  }
+
+  /**
+   * Combines two kernels into a single kernel that has the same effect as applying the first and
+   * then the second, apart from the rounding and clipping in between and near the edges of the
+   * image.
+   *
+   * @param first  the kernel applied first
+   * @param second the kernel applied second
+   * @return the combined kernel, as tall and as wide as the two kernels together less one
+   */
+  public static double[][] compose(double[][] first, double[][] second) {
+    double[][] result = new double[first.length + second.length - 1]
+            [first[0].length + second[0].length - 1];
+    for (int i = 0; i < first.length; i++) {
+      for (int j = 0; j < first[i].length; j++) {
+        for (int k = 0; k < second.length; k++) {
+          for (int l = 0; l < second[k].length; l++) {
+            result[i + k][j + l] += first[i][j] * second[k][l];
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a rectangle grown by the specified number of rows and columns on every side.
+   *
+   * @param rectangle the rectangle
+   * @param rows      number of rows to add above and below
+   * @param columns   number of columns to add left and right
+   * @return the grown rectangle
+   */
+  private static Rectangle grow(Rectangle rectangle, int rows, int columns) {
+    return new Rectangle(rectangle.x - columns, rectangle.y - rows,
+            rectangle.width + 2 * columns, rectangle.height + 2 * rows);
+  }
+}
@@ -0,0 +1,261 @@
+package utilities;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents the square threshold matrix of an ordered dither, which is tiled over the
+ * image so that a pixel turns white when its grey value reaches the threshold at its position.
+ * Since every pixel only depends on itself and its position, any part of the image can be dithered
+ * independently of the rest. Each threshold is stored as the smallest grey value that turns white,
+ * so the share of white pixels in an area of constant grey matches that grey as closely as the size
+ * of the matrix allows.
+ *
+ * <p>Blue noise matrices are built with the void-and-cluster method, which ranks the cells so
+ * that the cells of similar rank are spread as evenly as possible, wrapping around the edges so
+ * the tiles join without seams. Building them takes time proportional to the square of the number
+ * of cells, so they are kept once built.
+ *
+ * @author Durga Sivamani, Carlo Mutuc
+ * @version 0.1
+ */
+public final class ThresholdMap {
+
+  /**
+   * Largest width and height of a matrix.
+   */
+  public static final int MAX_SIZE = 64;
+
+  /**
+   * Spread of the Gaussian used to measure how crowded a cell of a blue noise matrix is.
+   */
+  private static final double SIGMA = 1.5;
+
+  /**
+   * Share of the cells set in the starting pattern of a blue noise matrix.
+   */
+  private static final double INITIAL_DENSITY = 0.1;
+
+  /**
+   * Blue noise ranks already built, keyed by size.
+   */
+  private static final Map<Integer, int[]> BLUE_NOISE_RANKS = new ConcurrentHashMap<>();
+
+  /**
+   * Width and height of the matrix.
+   */
+  private final int size;
+
+  /**
+   * The smallest grey value that turns white in every cell, row by row.
+   */
+  private final int[] thresholds;
+
+  /**
+   * Creates a threshold map from the rank of every cell.
+   *
+   * @param size  width and height of the matrix
+   * @param ranks the rank of every cell, row by row, each from 0 to size * size - 1 once
+   */
+  private ThresholdMap(int size, int[] ranks) {
+    this.size = size;
+    this.thresholds = new int[ranks.length];
+    for (int i = 0; i < ranks.length; i++) {
+      // the cell turns white when grey / 255 is above the middle of its rank's share
+      thresholds[i] = (int) ((2L * ranks[i] + 1) * 255 / (2L * ranks.length)) + 1;
+    }
+  }
+
+  /**
+   * Creates the threshold map of the specified matrix and size.
+   *
+   * @param matrix how the thresholds are spread over the matrix
+   * @param size   width and height of the matrix, a power of 2 from 2 to MAX_SIZE
+   * @return the threshold map
+   * @throws IllegalArgumentException if the size is not supported
+   */
+  public static ThresholdMap of(DitherMatrix matrix, int size) throws IllegalArgumentException {
+    if (size < 2 || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("Dither matrix size must be a power of 2 from 2 to "
+              + MAX_SIZE + ".");
+    }
+    if (matrix == DitherMatrix.BAYER) {
+      return new ThresholdMap(size, bayerRanks(size));
+    }
+    return new ThresholdMap(size, BLUE_NOISE_RANKS.computeIfAbsent(size,
+            ThresholdMap::blueNoiseRanks));
+  }
+
+  /**
+   * Returns the width and height of the matrix.
+   *
+   * @return the size
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Copies the thresholds of a row of pixels into an array, tiling the matrix from the left edge
+   * of the image.
+   *
+   * @param row        row of the image
+   * @param column     column of the image of the first pixel
+   * @param thresholds the array to fill, as many pixels as it holds
+   */
+  public void fillRow(int row, int column, int[] thresholds) {
+    int mask = size - 1;
+    int start = (row & mask) * size;
+    for (int i = 0; i < thresholds.length; i++) {
+      thresholds[i] = this.thresholds[start + ((column + i) & mask)];
+    }
+  }
+
+  /**
+   * Builds the ranks of a Bayer matrix, where each doubling of the size places four copies of the
+   * smaller matrix so that consecutive ranks land as far apart as possible.
+   *
+   * @param size width and height of the matrix, a power of 2
+   * @return the rank of every cell, row by row
+   */
+  private static int[] bayerRanks(int size) {
+    int[] ranks = {0};
+    for (int half = 1; half < size; half *= 2) {
+      int width = half * 2;
+      int[] next = new int[width * width];
+      for (int row = 0; row < half; row++) {
+        for (int column = 0; column < half; column++) {
+          int rank = 4 * ranks[row * half + column];
+          next[row * width + column] = rank;
+          next[row * width + column + half] = rank + 2;
+          next[(row + half) * width + column] = rank + 3;
+          next[(row + half) * width + column + half] = rank + 1;
+        }
+      }
+      ranks = next;
+    }
+    return ranks;
+  }
+
+  /**
+   * Builds the ranks of a blue noise matrix with the void-and-cluster method. A few random cells
+   * are set, then moved from the most crowded set cell to the emptiest unset cell until that would
+   * put a cell back where it came from. The set cells are ranked from the last by removing the
+   * most crowded one at a time, and the other cells are ranked from the first by setting the
+   * emptiest one at a time. The random cells always start from the same seed, so a size always
+   * gives the same matrix.
+   *
+   * @param size width and height of the matrix
+   * @return the rank of every cell, row by row
+   */
+  private static int[] blueNoiseRanks(int size) {
+    int cells = size * size;
+    double[] kernel = crowdingKernel(size);
+
+    boolean[] pattern = new boolean[cells];
+    double[] crowding = new double[cells];
+    Random random = new Random(size);
+    int count = Math.max(1, (int) (cells * INITIAL_DENSITY));
+    for (int placed = 0; placed < count; ) {
+      int cell = random.nextInt(cells);
+      if (!pattern[cell]) {
+        pattern[cell] = true;
+        spread(crowding, kernel, size, cell, 1);
+        placed++;
+      }
+    }
+
+    // move cells from clusters to voids until the pattern is even
+    for (int moves = 0; moves < cells; moves++) {
+      int cluster = find(pattern, crowding, true);
+      pattern[cluster] = false;
+      spread(crowding, kernel, size, cluster, -1);
+      int empty = find(pattern, crowding, false);
+      pattern[empty] = true;
+      spread(crowding, kernel, size, empty, 1);
+      if (empty == cluster) {
+        break;
+      }
+    }
+
+    int[] ranks = new int[cells];
+    boolean[] remaining = Arrays.copyOf(pattern, cells);
+    double[] remainingCrowding = Arrays.copyOf(crowding, cells);
+    for (int rank = count - 1; rank >= 0; rank--) {
+      int cluster = find(remaining, remainingCrowding, true);
+      remaining[cluster] = false;
+      spread(remainingCrowding, kernel, size, cluster, -1);
+      ranks[cluster] = rank;
+    }
+    for (int rank = count; rank < cells; rank++) {
+      int empty = find(pattern, crowding, false);
+      pattern[empty] = true;
+      spread(crowding, kernel, size, empty, 1);
+      ranks[empty] = rank;
+    }
+    return ranks;
+  }
+
+  /**
+   * Computes how much a set cell adds to the crowding of every cell, by its offset from the set
+   * cell wrapping around the edges.
+   *
+   * @param size width and height of the matrix
+   * @return the amount for every row and column offset, row by row
+   */
+  private static double[] crowdingKernel(int size) {
+    double[] kernel = new double[size * size];
+    for (int row = 0; row < size; row++) {
+      int rowDistance = Math.min(row, size - row);
+      for (int column = 0; column < size; column++) {
+        int columnDistance = Math.min(column, size - column);
+        kernel[row * size + column] = Math.exp(-(rowDistance * rowDistance
+                + columnDistance * columnDistance) / (2 * SIGMA * SIGMA));
+      }
+    }
+    return kernel;
+  }
+
+  /**
+   * Adds or removes the crowding a set cell causes to every cell.
+   *
+   * @param crowding the crowding of every cell
+   * @param kernel   the crowding a set cell causes at every offset
+   * @param size     width and height of the matrix
+   * @param cell     the cell set or unset
+   * @param sign     1 when the cell is set, -1 when it is unset
+   */
+  private static void spread(double[] crowding, double[] kernel, int size, int cell, int sign) {
+    int mask = size - 1;
+    int cellRow = cell / size;
+    int cellColumn = cell % size;
+    for (int row = 0; row < size; row++) {
+      int kernelStart = ((row - cellRow) & mask) * size;
+      for (int column = 0; column < size; column++) {
+        crowding[row * size + column] +=
+                sign * kernel[kernelStart + ((column - cellColumn) & mask)];
+      }
+    }
+  }
+
+  /**
+   * Finds the most crowded set cell or the least crowded unset cell, the first one on a tie.
+   *
+   * @param pattern  which cells are set
+   * @param crowding the crowding of every cell
+   * @param set      true to find the most crowded set cell, false for the emptiest unset cell
+   * @return the cell
+   */
+  private static int find(boolean[] pattern, double[] crowding, boolean set) {
+    int found = -1;
+    for (int cell = 0; cell < pattern.length; cell++) {
+      if (pattern[cell] == set && (found < 0
+              || (set ? crowding[cell] > crowding[found] : crowding[cell] < crowding[found]))) {
+        found = cell;
+      }
+    }
+    return found;
+  }
+}
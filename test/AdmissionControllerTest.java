@@ -0,0 +1,116 @@
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.AdmissionController;
+import model.ScriptParser;
+import utilities.HeapPixelStore;
+import utilities.PlanarPixelStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the AdmissionController class.
+ */
+public class AdmissionControllerTest {
+
+  /**
+   * Tests the estimate counts the image and the copy a filter writes its result to, and depends
+   * on the storage and on in-place filtering.
+   */
+  @Test
+  public void testEstimate() {
+    // a checkerboard of 10 pixel squares is 80 by 80 pixels
+    assertEquals(2 * 6400 * 12, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\nblur"), HeapPixelStore::new));
+    assertEquals(2 * 6400 * 3, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\nsepia"), PlanarPixelStore::new));
+    assertEquals(6400 * 12, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\ninplace on\nblur"),
+            HeapPixelStore::new));
+  }
+
+  /**
+   * Tests a file that cannot be probed counts as the bytes given for it or the largest image so
+   * far rather than as nothing, and a file saved earlier in the script as the image saved to it.
+   */
+  @Test
+  public void testEstimateUnknownFiles() {
+    // 100000 heap pixels, decoded, then held together with the copy blur writes to
+    assertEquals(2 * 1200000, AdmissionController.estimate(
+            ScriptParser.parse("load missing.png\nblur"), HeapPixelStore::new, 1200000));
+    // the checkerboard being replaced is still held while the missing file is decoded
+    assertEquals(6400 * (12 + 4 + 12), AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\nload missing.png\nblur"),
+            HeapPixelStore::new));
+
+    // the saved copy, the encoder buffers, the image loaded, the one it replaces, and the
+    // decoded file
+    assertEquals(6400 * (3 + 15 + 3 + 3 + 4), AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\nsave a.png\nload res/a.png\nblur"),
+            PlanarPixelStore::new, Long.MAX_VALUE));
+  }
+
+  /**
+   * Tests the pyramid of a preview is counted until the image changes at full resolution, and a
+   * saved copy and the buffers of the encoder until the end of the script.
+   */
+  @Test
+  public void testEstimatePreviewAndSave() {
+    // the pyramid is a third of the image, and the preview at level 1 a quarter of it
+    long previewed = 6400 + 6400 / 3 + 6400 / 4;
+    assertEquals(previewed * 3, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\npreview 1"), PlanarPixelStore::new));
+    assertEquals(previewed * 3 + 6400 * 3, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\npreview 1\nrender\ngreyscale"),
+            PlanarPixelStore::new));
+
+    // the copy saved is still held while the next command writes to a copy of its own
+    assertEquals(3 * 6400 * 3 + 6400 * 15, AdmissionController.estimate(
+            ScriptParser.parse("checkerboard 10 red blue\nsave a.png\nsepia"),
+            PlanarPixelStore::new));
+  }
+
+  /**
+   * Tests a script waits while the budget is taken and is admitted once it is released, and that
+   * a script larger than the budget still runs on its own.
+   */
+  @Test
+  public void testAdmission() throws InterruptedException {
+    AdmissionController admission = new AdmissionController(100);
+    AdmissionController.Permit first = admission.admit(60);
+    CountDownLatch admitted = new CountDownLatch(1);
+    AtomicLong secondBytes = new AtomicLong();
+
+    Thread second = new Thread(() -> {
+      try (AdmissionController.Permit permit = admission.admit(60)) {
+        secondBytes.set(permit.getBytes());
+        admitted.countDown();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    second.start();
+
+    assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+    assertEquals(1, admission.getQueueDepth());
+    assertEquals(60, admission.getAdmittedBytes());
+
+    first.close();
+    assertTrue(admitted.await(5, TimeUnit.SECONDS));
+    second.join();
+    assertEquals(60, secondBytes.get());
+    assertEquals(0, admission.getRunning());
+    assertEquals(0, admission.getQueueDepth());
+
+    try (AdmissionController.Permit large = admission.admit(1000)) {
+      assertEquals(1000, large.getBytes());
+    }
+    assertEquals(3, admission.getAdmittedCount());
+    assertEquals(1, admission.getPeakQueueDepth());
+  }
+}
@@ -0,0 +1,105 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import utilities.Convolution;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A JUnit test class for the Convolution class.
+ */
+public class ConvolutionTest {
+
+  /**
+   * Tests the kernels applied by a class of their own and those applied with loops give the same
+   * results as applying the kernel directly, for square and rectangular kernels.
+   */
+  @Test
+  public void testMatchesDirectConvolution() {
+    Random random = new Random(5);
+    int stride = 40;
+    int count = 30;
+    int[][] sizes = {{3, 3}, {5, 5}, {7, 5}, {7, 7}, {1, 3}, {9, 5}};
+
+    for (int[] size : sizes) {
+      double[][] kernel = new double[size[0]][size[1]];
+      for (double[] row : kernel) {
+        for (int j = 0; j < row.length; j++) {
+          row[j] = random.nextDouble() - 0.3;
+        }
+      }
+      int[] values = new int[size[0] * stride];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = random.nextInt(256);
+      }
+
+      int[] expected = new int[count];
+      for (int column = 0; column < count; column++) {
+        double sum = 0;
+        for (int i = 0; i < size[0]; i++) {
+          for (int j = 0; j < size[1]; j++) {
+            sum += kernel[i][j] * values[i * stride + 2 + column + j];
+          }
+        }
+        expected[column] = Math.max(0, Math.min(255, (int) sum));
+      }
+
+      Convolution convolution = Convolution.of(kernel);
+      assertEquals(size[0], convolution.getRows());
+      assertEquals(size[1], convolution.getColumns());
+      int[] actual = new int[count + 1];
+      convolution.apply(values, 2, stride, actual, 1, count);
+      for (int column = 0; column < count; column++) {
+        assertEquals(size[0] + "x" + size[1] + " column " + column, expected[column],
+                actual[column + 1]);
+      }
+    }
+  }
+
+  /**
+   * Tests a kernel with a single weight of 1 picks out the value under that weight, for every
+   * position of the weight in rectangular kernels, so a kernel read with its rows and columns
+   * swapped is caught without comparing against another implementation.
+   */
+  @Test
+  public void testKnownValues() {
+    int stride = 10;
+    int[][] sizes = {{7, 5}, {3, 1}, {1, 3}};
+
+    for (int[] size : sizes) {
+      int[] values = new int[size[0] * stride];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = i + 1;
+      }
+      for (int i = 0; i < size[0]; i++) {
+        for (int j = 0; j < size[1]; j++) {
+          double[][] kernel = new double[size[0]][size[1]];
+          kernel[i][j] = 1;
+          int[] actual = new int[3];
+          Convolution.of(kernel).apply(values, 1, stride, actual, 0, 3);
+          for (int column = 0; column < 3; column++) {
+            assertEquals(size[0] + "x" + size[1] + " weight " + i + "," + j,
+                    i * stride + 1 + column + j + 1, actual[column]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests kernels without a center are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEvenKernel() {
+    Convolution.of(new double[4][3]);
+  }
+
+  /**
+   * Tests kernels whose rows differ in length are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRaggedKernel() {
+    Convolution.of(new double[][]{{1, 1, 1}, {1}, {1, 1, 1}});
+  }
+}
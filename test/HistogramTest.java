@@ -0,0 +1,63 @@
+import org.junit.Test;
+
+import utilities.HeapPixelStore;
+import utilities.Histogram;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A JUnit test class for the Histogram class.
+ */
+public class HistogramTest {
+
+  /**
+   * Tests the bins counted by every band of rows add up, and the luminance uses the greyscale
+   * weights.
+   */
+  @Test
+  public void testCounts() {
+    PixelStore image = new HeapPixelStore(10, 300);
+    for (int row = 0; row < 300; row++) {
+      image.set(row, row % 10, 0, 255);
+    }
+
+    Histogram histogram = Histogram.of(image, 0, 0, 10, 300);
+    assertEquals(3000, histogram.getTotal());
+    assertEquals(300, histogram.getCount(0, 255));
+    assertEquals(2700, histogram.getCount(0, 0));
+    assertEquals(3000, histogram.getCount(1, 0));
+    assertEquals(300, histogram.getCount(Histogram.LUMINANCE, 54));
+    assertEquals(25.5, histogram.getMean(0), 1e-9);
+  }
+
+  /**
+   * Tests the luminance of a white pixel drops the fraction of each weighted channel, giving the
+   * same value as converting the pixel to greyscale.
+   */
+  @Test
+  public void testLuminanceTruncates() {
+    PixelStore image = new HeapPixelStore(1, 1);
+    image.setPixel(0, 0, new int[]{255, 255, 255});
+
+    Histogram histogram = Histogram.of(image, 0, 0, 1, 1);
+    assertEquals(1, histogram.getCount(Histogram.LUMINANCE, 254));
+  }
+
+  /**
+   * Tests equalization spreads the values present over the whole range in order.
+   */
+  @Test
+  public void testEqualizationTable() {
+    PixelStore image = new HeapPixelStore(4, 1);
+    int[] values = {10, 20, 20, 30};
+    for (int column = 0; column < 4; column++) {
+      image.set(0, column, 1, values[column]);
+    }
+
+    int[] table = Histogram.of(image, 0, 0, 4, 1).getEqualizationTable(1);
+    assertEquals(0, table[10]);
+    assertEquals(170, table[20]);
+    assertEquals(255, table[30]);
+  }
+}
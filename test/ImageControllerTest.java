@@ -8,7 +8,11 @@ import observer.ImageController;
 import observer.ImageControllerImpl;
 import model.ImageProcessor;
 import model.MockImageProcessorImpl;
+import utilities.BorderMode;
+import utilities.FusionMode;
 import utilities.Orientation;
+import utilities.PngFilter;
+import utilities.SeedSampling;
 
 import static org.junit.Assert.assertEquals;
 
@@ -117,6 +121,128 @@ public class ImageControllerTest {
   public void testMosaic() {
     a_Controller.doMosaic(305);
     assertEquals("added mosaic effect to image with 305 seeds", a_Controller.getStatus());
+    a_Controller.doMosaic(305, SeedSampling.POISSON, 7);
+    assertEquals("added poisson mosaic effect to image with 305 seeds from random seed 7",
+            a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doPreview().
+   */
+  @Test
+  public void testPreview() {
+    a_Controller.doPreview(2);
+    assertEquals("previewing image at level 2", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doRender().
+   */
+  @Test
+  public void testRender() {
+    a_Controller.doRender();
+    assertEquals("rendered image at full resolution", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doRegion().
+   */
+  @Test
+  public void testRegion() {
+    a_Controller.doRegion(10, 20, 300, 200);
+    assertEquals("selected region 300x200 at (10, 20)", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doClearRegion().
+   */
+  @Test
+  public void testClearRegion() {
+    a_Controller.doClearRegion();
+    assertEquals("selected whole image", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests loadImage() with a name.
+   */
+  @Test
+  public void testLoadNamedImage() {
+    a_Controller.loadImage("photo.png", "a");
+    assertEquals("loaded image 'photo.png' as 'a'", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doSelect().
+   */
+  @Test
+  public void testSelect() {
+    a_Controller.doSelect("a");
+    assertEquals("selected image 'a'", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doDeadline().
+   */
+  @Test
+  public void testDeadline() {
+    a_Controller.doDeadline(500);
+    assertEquals("set cancellation token", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doHistogram().
+   */
+  @Test
+  public void testHistogram() {
+    a_Controller.doHistogram();
+    assertEquals("computed histogram", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doAutoLevels() and doEqualize().
+   */
+  @Test
+  public void testLevels() {
+    a_Controller.doAutoLevels();
+    assertEquals("stretched image levels", a_Controller.getStatus());
+    a_Controller.doEqualize();
+    assertEquals("equalized image", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doBorder().
+   */
+  @Test
+  public void testBorder() {
+    a_Controller.doBorder(BorderMode.MIRROR);
+    assertEquals("set border mode to mirror", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doInPlace().
+   */
+  @Test
+  public void testInPlace() {
+    a_Controller.doInPlace(true);
+    assertEquals("set in-place filtering on", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doFusion().
+   */
+  @Test
+  public void testFusion() {
+    a_Controller.doFusion(FusionMode.COMPOSE);
+    assertEquals("set filter fusion compose", a_Controller.getStatus());
+  }
+
+  /**
+   * Tests doCompression().
+   */
+  @Test
+  public void testCompression() {
+    a_Controller.doCompression(9, PngFilter.PAETH);
+    assertEquals("set compression level 9, paeth filter", a_Controller.getStatus());
   }
 
   /**
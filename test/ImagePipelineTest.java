@@ -0,0 +1,90 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.ImagePipeline;
+import model.ScriptParser;
+import utilities.HeapPixelStore;
+import utilities.ImageUtil;
+import utilities.PixelStoreFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the ImagePipeline class.
+ */
+public class ImagePipelineTest {
+
+  /**
+   * Tests scripts that save images themselves are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSaveRejected() {
+    new ImagePipeline(ScriptParser.parse("blur\nsave out.png"), HeapPixelStore::new, 1, 1, 1, 1);
+  }
+
+  /**
+   * Tests a file that cannot be read is reported without stopping the other files, and that every
+   * stage sees every file.
+   */
+  @Test
+  public void testMissingFiles() throws InterruptedException {
+    ImagePipeline pipeline = new ImagePipeline(ScriptParser.parse("blur"), HeapPixelStore::new,
+            2, 2, 1, 1);
+    List<String> results = pipeline.run(Arrays.asList("missing1.png", "missing2.png",
+            "missing3.png"));
+
+    assertEquals(3, results.size());
+    assertTrue(results.get(1).startsWith("Unable to read image 'missing2.png'"));
+    assertEquals("encode: 1 threads, 3 images", pipeline.getReport().get(2).substring(0, 27));
+  }
+
+  /**
+   * Tests an image failing once the commands have been performed, when the filters collected for
+   * fusion run as the image is handed to the encoders, is reported without stopping the pipeline
+   * or the other images.
+   */
+  @Test(timeout = 10000)
+  public void testFailureAfterCommands() throws IOException, InterruptedException {
+    Path directory = Files.createTempDirectory("pipeline");
+    Path good = directory.resolve("pipeline-good.png");
+    Path bad = directory.resolve("pipeline-bad.png");
+    ImageUtil.writeImage(new HeapPixelStore(5, 4), good.toString());
+    ImageUtil.writeImage(new HeapPixelStore(7, 4), bad.toString());
+
+    // the first store 7 pixels wide is the bad image as read, the next the result of its filters
+    AtomicInteger wide = new AtomicInteger();
+    PixelStoreFactory storage = (width, height) -> {
+      if (width == 7 && wide.incrementAndGet() > 1) {
+        throw new IllegalStateException("out of space");
+      }
+      return new HeapPixelStore(width, height);
+    };
+
+    Path results = Paths.get("res");
+    boolean created = !Files.isDirectory(results);
+    Files.createDirectories(results);
+    try {
+      ImagePipeline pipeline = new ImagePipeline(ScriptParser.parse("fusion on\nblur"), storage,
+              1, 1, 1, 1);
+      List<String> statuses = pipeline.run(Arrays.asList(good.toString(), bad.toString()));
+
+      assertEquals("saved file 'pipeline-good.png'", statuses.get(0));
+      assertEquals("Unable to process image '" + bad + "': out of space", statuses.get(1));
+      assertTrue(Files.exists(results.resolve("pipeline-good.png")));
+      assertEquals("encode: 1 threads, 2 images", pipeline.getReport().get(2).substring(0, 27));
+    } finally {
+      Files.deleteIfExists(results.resolve("pipeline-good.png"));
+      if (created) {
+        Files.delete(results);
+      }
+    }
+  }
+}
@@ -2,13 +2,47 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import model.CancellationToken;
 import model.ImageProcessor;
 import model.ImageProcessorImpl;
+import model.ScriptParser;
+import model.Strip;
+import model.StripProcessor;
+import observer.AbstractImageObserver;
+import observer.ImageObserver;
+import utilities.BorderMode;
+import utilities.DitherMatrix;
+import utilities.FusionMode;
+import utilities.HeapPixelStore;
+import utilities.Histogram;
+import utilities.ImageUtil;
+import utilities.PixelStore;
+import utilities.PixelStoreFactory;
+import utilities.PlanarPixelStore;
+import utilities.SeedSampling;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * A JUnit test class for selected methods in the model.ImageProcessor interface and related subclasses.
@@ -71,4 +105,627 @@ public class ImageProcessorTest {
     rainbowH.rainbowHorizontal(1920, 780, new ArrayList<>());
   }
 
-}
\ No newline at end of file
+  /**
+   * Tests preview() rejects levels below 1.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testPreviewInvalidLevel() {
+    rainbowH.checkerboard(16, Color.white, Color.black);
+    rainbowH.preview(0);
+  }
+
+  /**
+   * Tests preview() downscales the image and render() replays the previewed operations.
+   */
+  @Test
+  public void testPreviewAndRender() {
+    ImageObserver observer = new AbstractImageObserver() { };
+    rainbowH.registerObserver(observer);
+
+    rainbowH.checkerboard(16, Color.white, Color.black);
+    rainbowH.preview(1);
+    assertEquals("previewing image at level 1 (64x64)", observer.getStatus());
+
+    rainbowH.blur();
+    rainbowH.render();
+    assertEquals("rendered 1 operations at full resolution", observer.getStatus());
+  }
+
+  /**
+   * Tests rendering the operations performed while previewing gives the same pixels as performing
+   * them without a preview.
+   */
+  @Test
+  public void testRenderMatchesFullResolution() throws IOException {
+    PixelStore[] results = new PixelStore[2];
+    for (int i = 0; i < 2; i++) {
+      ImageProcessor processor = new ImageProcessorImpl();
+      processor.checkerboard(5, Color.orange, Color.blue);
+      if (i == 1) {
+        processor.preview(1);
+      }
+      processor.blur();
+      processor.sepia();
+      processor.sharpen();
+      if (i == 1) {
+        processor.render();
+      }
+      results[i] = savedPixels(processor);
+    }
+
+    int[] expected = new int[3];
+    int[] actual = new int[3];
+    for (int row = 0; row < 40; row++) {
+      for (int column = 0; column < 40; column++) {
+        results[0].getPixel(row, column, expected);
+        results[1].getPixel(row, column, actual);
+        assertArrayEquals("pixel " + row + "," + column, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Tests select() rejects names that no image has been given.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSelectUnknownImage() {
+    rainbowH.select("missing");
+  }
+
+  /**
+   * Tests select() switches back to the default image.
+   */
+  @Test
+  public void testSelectDefaultImage() {
+    ImageObserver observer = new AbstractImageObserver() { };
+    rainbowH.registerObserver(observer);
+
+    rainbowH.select("default");
+    assertEquals("selected image 'default'", observer.getStatus());
+  }
+
+  /**
+   * Tests operations stop when their cancellation token has been cancelled.
+   */
+  @Test(expected = CancellationException.class)
+  public void testCancelledOperation() {
+    CancellationToken token = new CancellationToken();
+    rainbowH.checkerboard(16, Color.white, Color.black);
+    rainbowH.setCancellationToken(token);
+    token.cancel();
+    rainbowH.blur();
+  }
+
+  /**
+   * Tests operations report their progress to observers.
+   */
+  @Test
+  public void testProgress() {
+    List<String> updates = new ArrayList<>();
+    rainbowH.registerObserver(new AbstractImageObserver() {
+      @Override
+      public void update(String completedAction) {
+        updates.add(completedAction);
+      }
+    });
+
+    rainbowH.checkerboard(16, Color.white, Color.black);
+    rainbowH.sepia();
+    assertEquals("transforming image to sepia color 25%", updates.get(1));
+    assertEquals("transformed image to sepia color", updates.get(updates.size() - 1));
+  }
+
+  /**
+   * Tests saves return straight away and report whether the file was written once they finish.
+   */
+  @Test
+  public void testBackgroundSave() {
+    List<String> updates = new CopyOnWriteArrayList<>();
+    rainbowH.registerObserver(new AbstractImageObserver() {
+      @Override
+      public void update(String completedAction) {
+        updates.add(completedAction);
+      }
+    });
+
+    rainbowH.checkerboard(16, Color.white, Color.black);
+    rainbowH.save("missing/folder/test.png");
+    assertEquals("saving file 'missing/folder/test.png'", updates.get(1));
+
+    rainbowH.blur();
+    rainbowH.flush();
+    assertTrue(updates.contains("blurred image"));
+    assertTrue(updates.stream().anyMatch(update -> update.startsWith("unable to write file: ")));
+
+    // the flush stopped the saving thread, and the next save starts another one
+    rainbowH.save("missing/folder/again.png");
+    rainbowH.flush();
+    assertEquals(2, updates.stream().filter(update -> update.startsWith("unable to write file: "))
+            .count());
+  }
+
+  /**
+   * Tests autolevels() stretches a low contrast image over the whole range.
+   */
+  @Test
+  public void testAutoLevels() {
+    rainbowH.checkerboard(16, new Color(50, 60, 70), new Color(200, 190, 180));
+    rainbowH.autolevels();
+
+    Histogram histogram = rainbowH.histogram();
+    assertEquals(128 * 128, histogram.getTotal());
+    assertEquals(128 * 64, histogram.getCount(0, 0));
+    assertEquals(128 * 64, histogram.getCount(2, 255));
+    assertEquals(0, histogram.getPercentile(Histogram.LUMINANCE, 0));
+    // white has a luminance of 254, as it has in greyscale
+    assertEquals(254, histogram.getPercentile(Histogram.LUMINANCE, 1));
+  }
+
+  /**
+   * Tests blur() darkens the edges of a plain image only when pixels outside of it are black.
+   */
+  @Test
+  public void testBorderModes() {
+    Color grey = new Color(100, 100, 100);
+    for (BorderMode mode : BorderMode.values()) {
+      rainbowH.checkerboard(16, grey, grey);
+      rainbowH.setBorderMode(mode);
+      rainbowH.blur();
+
+      long unchanged = rainbowH.histogram().getCount(0, 100);
+      if (mode == BorderMode.ZERO) {
+        assertEquals(126 * 126, unchanged);
+      } else {
+        assertEquals(mode.name(), 128 * 128, unchanged);
+      }
+    }
+  }
+
+  /**
+   * Tests border modes map indices outside of an image back inside of it.
+   */
+  @Test
+  public void testBorderModeMapping() {
+    assertEquals(-1, BorderMode.ZERO.map(-1, 5));
+    assertEquals(0, BorderMode.CLAMP.map(-3, 5));
+    assertEquals(4, BorderMode.CLAMP.map(7, 5));
+    assertEquals(2, BorderMode.MIRROR.map(-2, 5));
+    assertEquals(3, BorderMode.MIRROR.map(5, 5));
+    assertEquals(4, BorderMode.WRAP.map(-1, 5));
+    assertEquals(1, BorderMode.WRAP.map(6, 5));
+  }
+
+  /**
+   * Tests filtering in place gives the same result as filtering into a copy, including when the
+   * border mode reads rows from the other end of the image.
+   */
+  @Test
+  public void testInPlaceFilter() {
+    List<Color> colors = new ArrayList<>();
+    colors.add(Color.red);
+    colors.add(Color.orange);
+    colors.add(Color.yellow);
+
+    Histogram[] results = new Histogram[2];
+    for (int i = 0; i < 2; i++) {
+      ImageProcessor processor = new ImageProcessorImpl();
+      processor.rainbowHorizontal(64, 64, colors);
+      processor.setBorderMode(BorderMode.WRAP);
+      processor.setInPlace(i == 1);
+      processor.region(0, 0, 64, 40);
+      processor.blur();
+      processor.blur();
+      results[i] = processor.histogram();
+    }
+
+    for (int channel = 0; channel <= Histogram.LUMINANCE; channel++) {
+      for (int value = 0; value < Histogram.LEVELS; value++) {
+        assertEquals(results[0].getCount(channel, value), results[1].getCount(channel, value));
+      }
+    }
+  }
+
+  /**
+   * Tests blurring several times with fusion on gives the same result as blurring one at a time,
+   * inside of a region and with the edges of the image mirrored, and that composing the kernels
+   * gives nearly the same result.
+   */
+  @Test
+  public void testFusion() {
+    Histogram[] results = new Histogram[3];
+    for (FusionMode mode : FusionMode.values()) {
+      ImageProcessor processor = new ImageProcessorImpl();
+      processor.checkerboard(40, Color.white, Color.blue);
+      processor.setBorderMode(BorderMode.MIRROR);
+      processor.setFusion(mode);
+      processor.region(30, 50, 200, 150);
+      processor.blur();
+      processor.blur();
+      processor.blur();
+      processor.clearRegion();
+      results[mode.ordinal()] = processor.histogram();
+    }
+
+    for (int channel = 0; channel <= Histogram.LUMINANCE; channel++) {
+      for (int value = 0; value < Histogram.LEVELS; value++) {
+        assertEquals(results[0].getCount(channel, value), results[1].getCount(channel, value));
+      }
+      assertEquals(results[0].getMean(channel), results[2].getMean(channel), 1);
+    }
+  }
+
+  /**
+   * Performs a script on an image through a StripProcessor, passing the whole image as one strip,
+   * and returns the pixels of the result put together from the strips published.
+   *
+   * @param image  the image, which the processor takes ownership of
+   * @param script the commands to perform
+   * @return the processed image
+   */
+  private static PixelStore perform(PixelStore image, String script) throws Exception {
+    return perform(image, script, HeapPixelStore::new);
+  }
+
+  /**
+   * Performs a script on an image like perform(PixelStore, String), with the processor creating
+   * its stores through the specified factory.
+   *
+   * @param image   the image, which the processor takes ownership of
+   * @param script  the commands to perform
+   * @param storage the factory creating the stores of the processor
+   * @return the processed image
+   */
+  private static PixelStore perform(PixelStore image, String script, PixelStoreFactory storage)
+          throws Exception {
+    StripProcessor processor = new StripProcessor(ScriptParser.parse(script), storage);
+    PixelStore output = new HeapPixelStore(image.getWidth(), image.getHeight());
+    CompletableFuture<PixelStore> result = new CompletableFuture<>();
+    processor.subscribe(new Flow.Subscriber<Strip>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(Strip strip) {
+        int[] rgb = new int[3];
+        PixelStore pixels = strip.getPixels();
+        for (int row = 0; row < pixels.getHeight(); row++) {
+          for (int column = 0; column < pixels.getWidth(); column++) {
+            pixels.getPixel(row, column, rgb);
+            output.setPixel(strip.getTop() + row, column, rgb);
+          }
+        }
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        result.complete(output);
+      }
+    });
+    processor.onSubscribe(new Flow.Subscription() {
+      @Override
+      public void request(long n) {
+        // the only strip is passed straight away
+      }
+
+      @Override
+      public void cancel() {
+        // nothing is left to send
+      }
+    });
+    processor.onNext(new Strip(0, image));
+    processor.onComplete();
+    return result.get(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Applies a kernel the way filtering was first implemented, copying the neighbourhood of every
+   * pixel with zeros outside of the image and dropping the fraction of the sum.
+   *
+   * @param image  the image
+   * @param kernel the kernel, with an odd number of rows and of columns
+   * @return the filtered image
+   */
+  private static PixelStore referenceFilter(PixelStore image, double[][] kernel) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int rowRange = kernel.length / 2;
+    int columnRange = kernel[0].length / 2;
+    PixelStore result = new HeapPixelStore(width, height);
+    for (int channel = 0; channel < 3; channel++) {
+      for (int row = 0; row < height; row++) {
+        for (int column = 0; column < width; column++) {
+          double sum = 0;
+          for (int i = 0; i < kernel.length; i++) {
+            for (int j = 0; j < kernel[0].length; j++) {
+              int rowImage = row - rowRange + i;
+              int columnImage = column - columnRange + j;
+              if (rowImage >= 0 && columnImage >= 0 && rowImage < height
+                      && columnImage < width) {
+                sum += kernel[i][j] * image.get(rowImage, columnImage, channel);
+              }
+            }
+          }
+          result.set(row, column, channel, Math.max(0, Math.min(255, (int) sum)));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tests blurring and sharpening give the same pixels as filtering the way it was first
+   * implemented, and that planar stores give the same pixels as heap stores for every command
+   * working on rows of channels.
+   */
+  @Test
+  public void testFiltersMatchReference() throws Exception {
+    double[][] blur = {{1.0 / 16, 1.0 / 8, 1.0 / 16}, {1.0 / 8, 1.0 / 4, 1.0 / 8},
+        {1.0 / 16, 1.0 / 8, 1.0 / 16}};
+    double[][] sharpen = {
+        {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+        {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}};
+
+    Random random = new Random(31);
+    PixelStore image = new HeapPixelStore(23, 17);
+    for (int row = 0; row < 17; row++) {
+      for (int column = 0; column < 23; column++) {
+        image.setPixel(row, column, new int[]{random.nextInt(256), random.nextInt(256),
+            random.nextInt(256)});
+      }
+    }
+
+    String[] scripts = {"blur", "sharpen", "blur\nsharpen\nsepia\ngreyscale"};
+    PixelStore[] expected = {referenceFilter(image, blur), referenceFilter(image, sharpen),
+        perform(PixelStore.copyOf(image, HeapPixelStore::new), scripts[2])};
+    int[] rgb = new int[3];
+    int[] other = new int[3];
+    for (int i = 0; i < scripts.length; i++) {
+      PixelStore heap = perform(PixelStore.copyOf(image, HeapPixelStore::new), scripts[i]);
+      PixelStore planar = perform(PixelStore.copyOf(image, PlanarPixelStore::new), scripts[i],
+              PlanarPixelStore::new);
+      for (int row = 0; row < 17; row++) {
+        for (int column = 0; column < 23; column++) {
+          expected[i].getPixel(row, column, rgb);
+          heap.getPixel(row, column, other);
+          assertArrayEquals(scripts[i] + " heap " + row + "," + column, rgb, other);
+          planar.getPixel(row, column, other);
+          assertArrayEquals(scripts[i] + " planar " + row + "," + column, rgb, other);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests sharpening a single bright pixel spreads it by the kernel, which has 7 rows and 5
+   * columns: the rows of the kernel with a weight of 1 lie one row above and below the pixel, the
+   * weights of 1/4 around them and the negative weights, which clip to 0, along the edges.
+   */
+  @Test
+  public void testSharpenKnownValues() throws Exception {
+    PixelStore image = new HeapPixelStore(9, 9);
+    image.setPixel(4, 4, new int[]{80, 80, 80});
+    PixelStore sharpened = perform(image, "sharpen");
+
+    int[][] expected = new int[9][9];
+    for (int row = 2; row <= 6; row++) {
+      for (int column = 3; column <= 5; column++) {
+        expected[row][column] = 20;
+      }
+    }
+    expected[3][4] = 80;
+    expected[5][4] = 80;
+
+    int[] rgb = new int[3];
+    for (int row = 0; row < 9; row++) {
+      for (int column = 0; column < 9; column++) {
+        sharpened.getPixel(row, column, rgb);
+        assertEquals("pixel " + row + "," + column, expected[row][column], rgb[0]);
+      }
+    }
+  }
+
+  /**
+   * Tests sharpening and blurring gives the same pixels one filter at a time as chained in a
+   * single pass.
+   */
+  @Test
+  public void testSharpenFused() throws Exception {
+    PixelStore[] results = new PixelStore[2];
+    for (int i = 0; i < 2; i++) {
+      PixelStore image = new HeapPixelStore(50, 40);
+      for (int row = 0; row < 40; row++) {
+        for (int column = 0; column < 50; column++) {
+          image.setPixel(row, column, new int[]{(row / 5 + column / 5) % 2 * 255, row * 6,
+              column * 5});
+        }
+      }
+      results[i] = perform(image, (i == 0 ? "" : "fusion on\n") + "border clamp\nsharpen\nblur");
+    }
+
+    int[] expected = new int[3];
+    int[] actual = new int[3];
+    for (int row = 0; row < 40; row++) {
+      for (int column = 0; column < 50; column++) {
+        results[0].getPixel(row, column, expected);
+        results[1].getPixel(row, column, actual);
+        assertArrayEquals("pixel " + row + "," + column, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Saves the current image of a processor and reads its pixels back from the file.
+   *
+   * @param processor the processor
+   * @return the pixels of the current image
+   */
+  private static PixelStore savedPixels(ImageProcessor processor) throws IOException {
+    Path results = Paths.get("res");
+    boolean created = !Files.isDirectory(results);
+    Files.createDirectories(results);
+    Path file = results.resolve("region-test.png");
+    try {
+      processor.save("region-test.png");
+      processor.flush();
+      return ImageUtil.readImage(file.toString(), HeapPixelStore::new);
+    } finally {
+      Files.deleteIfExists(file);
+      if (created) {
+        Files.delete(results);
+      }
+    }
+  }
+
+  /**
+   * Tests blur, sepia, greyscale and mosaic only change the pixels inside of the selected region,
+   * leaving every pixel outside of it as it was.
+   */
+  @Test
+  public void testRegionLeavesOutsideUnchanged() throws IOException {
+    Rectangle region = new Rectangle(9, 6, 12, 10);
+    String[] operations = {"blur", "sepia", "greyscale", "mosaic"};
+    for (String operation : operations) {
+      ImageProcessor processor = new ImageProcessorImpl();
+      processor.checkerboard(4, Color.red, Color.cyan);
+      PixelStore before = savedPixels(processor);
+
+      processor.region(region.x, region.y, region.width, region.height);
+      switch (operation) {
+        case "blur":
+          processor.blur();
+          break;
+        case "sepia":
+          processor.sepia();
+          break;
+        case "greyscale":
+          processor.greyscale();
+          break;
+        default:
+          processor.mosaic(5, SeedSampling.UNIFORM, 11);
+          break;
+      }
+      processor.clearRegion();
+      PixelStore after = savedPixels(processor);
+
+      int[] expected = new int[3];
+      int[] actual = new int[3];
+      boolean changed = false;
+      for (int row = 0; row < before.getHeight(); row++) {
+        for (int column = 0; column < before.getWidth(); column++) {
+          before.getPixel(row, column, expected);
+          after.getPixel(row, column, actual);
+          if (!region.contains(column, row)) {
+            assertArrayEquals(operation + " pixel " + row + "," + column, expected, actual);
+          } else if (!Arrays.equals(expected, actual)) {
+            changed = true;
+          }
+        }
+      }
+      assertTrue(operation + " changed the region", changed);
+    }
+  }
+
+  /**
+   * Tests every operation is recorded by Flight Recorder with the size of the image.
+   */
+  @Test
+  public void testFlightRecorderEvents() throws IOException {
+    Path file = Files.createTempFile("operations", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("imageprocessor.Operation");
+      recording.start();
+      rainbowH.checkerboard(4, Color.white, Color.black);
+      rainbowH.blur();
+      recording.stop();
+      recording.dump(file);
+
+      List<String> operations = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        operations.add(event.getString("operation"));
+        assertEquals(32, event.getInt("width"));
+        assertEquals(32 * 32 * 12, event.getLong("bytes"));
+      }
+      assertEquals(List.of("checkerboard", "blur"), operations);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests ordered dithering turns half of a mid grey image white, whether in place or not, and
+   * only changes the selected region.
+   */
+  @Test
+  public void testOrderedDither() {
+    for (boolean inPlace : new boolean[]{false, true}) {
+      ImageProcessor processor = new ImageProcessorImpl();
+      processor.checkerboard(1, Color.white, Color.black);
+      processor.resize(4, 4);
+      processor.setInPlace(inPlace);
+      processor.dither(DitherMatrix.BAYER, 2);
+      Histogram histogram = processor.histogram();
+      assertEquals(8, histogram.getCount(0, 255));
+      assertEquals(8, histogram.getCount(0, 0));
+    }
+
+    rainbowH.checkerboard(1, Color.white, Color.black);
+    rainbowH.resize(4, 4);
+    rainbowH.region(0, 0, 2, 4);
+    rainbowH.dither(DitherMatrix.BLUE_NOISE, 2);
+    rainbowH.clearRegion();
+    assertEquals(8, rainbowH.histogram().getCount(0, 128));
+  }
+
+  /**
+   * Tests resize() averages the pixels each new pixel covers.
+   */
+  @Test
+  public void testResize() {
+    rainbowH.checkerboard(1, Color.white, Color.black);
+    rainbowH.resize(4, 4);
+    assertEquals(16, rainbowH.histogram().getCount(0, 128));
+
+    rainbowH.resize(3, 2);
+    assertEquals(6, rainbowH.histogram().getTotal());
+  }
+
+  /**
+   * Tests load() decodes every nth pixel when given a scale.
+   */
+  @Test
+  public void testLoadScaled() throws IOException {
+    PixelStore squares = new HeapPixelStore(24, 24);
+    for (int row = 0; row < 24; row++) {
+      for (int column = 0; column < 24; column++) {
+        int value = (row / 3 + column / 3) % 2 == 0 ? 255 : 0;
+        squares.setPixel(row, column, new int[]{value, value, value});
+      }
+    }
+
+    Path file = Files.createTempFile("scaled", ".png");
+    try {
+      ImageUtil.writeImage(squares, file.toString());
+      ImageObserver observer = new AbstractImageObserver() { };
+      rainbowH.registerObserver(observer);
+
+      rainbowH.load(file.toString(), 3);
+      assertEquals("loaded image '" + file + "' at 1/3 scale (8x8)", observer.getStatus());
+      assertEquals(32, rainbowH.histogram().getCount(0, 255));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.ImagePyramid;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * A JUnit test class for the ImagePyramid class.
+ */
+public class ImagePyramidTest {
+
+  /**
+   * Tests every level holds the rounded averages of the 2x2 blocks of the level before it,
+   * dropping an odd last row or column, and that levels stop before dropping below 16 pixels.
+   */
+  @Test
+  public void testLevelsAverageBlocks() {
+    Random random = new Random(26);
+    PixelStore image = new HeapPixelStore(70, 66);
+    for (int row = 0; row < 66; row++) {
+      for (int column = 0; column < 70; column++) {
+        for (int channel = 0; channel < 3; channel++) {
+          image.set(row, column, channel, random.nextInt(256));
+        }
+      }
+    }
+
+    ImagePyramid pyramid = new ImagePyramid(image, HeapPixelStore::new);
+    assertEquals(3, pyramid.getLevelCount());
+    assertSame(image, pyramid.getLevel(0));
+    int[][] sizes = {{35, 33}, {17, 16}};
+    for (int level = 1; level < 3; level++) {
+      PixelStore finer = pyramid.getLevel(level - 1);
+      PixelStore coarser = pyramid.getLevel(level);
+      assertEquals(sizes[level - 1][0], coarser.getWidth());
+      assertEquals(sizes[level - 1][1], coarser.getHeight());
+      for (int row = 0; row < coarser.getHeight(); row++) {
+        for (int column = 0; column < coarser.getWidth(); column++) {
+          for (int channel = 0; channel < 3; channel++) {
+            int sum = finer.get(2 * row, 2 * column, channel)
+                    + finer.get(2 * row, 2 * column + 1, channel)
+                    + finer.get(2 * row + 1, 2 * column, channel)
+                    + finer.get(2 * row + 1, 2 * column + 1, channel);
+            assertEquals("level " + level + " pixel " + row + "," + column, (sum + 2) / 4,
+                    coarser.get(row, column, channel));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import model.ImageServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the ImageServer class.
+ */
+public class ImageServerTest {
+
+  /**
+   * Submits a script to a server and returns the lines it replies with.
+   *
+   * @param script the text of the script
+   * @param port   the port the server is listening on
+   * @return the reply, one element per line
+   * @throws IOException if the server cannot be reached
+   */
+  private static String[] submit(String script, int port) throws IOException {
+    ByteArrayOutputStream reply = new ByteArrayOutputStream();
+    ImageServer.submit(script, port, new PrintStream(reply, true, "UTF-8"));
+    return reply.toString(StandardCharsets.UTF_8).split("\\R");
+  }
+
+  /**
+   * Tests a server on a free loopback port runs submitted scripts, replying with their status
+   * lines, and replies to a malformed script with the parse error without running any of it.
+   */
+  @Test(timeout = 60000)
+  public void testSubmit() throws IOException, InterruptedException {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    Thread serving;
+    try (ImageServer server = new ImageServer(0, 1 << 20,
+            new PrintStream(log, true, "UTF-8"))) {
+      serving = new Thread(() -> {
+        try {
+          server.serve();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      serving.start();
+
+      String[] status = submit("checkerboard 4 red blue\nblur\nsepia", server.getPort());
+      assertEquals(3, status.length);
+      assertEquals("created checkerboard", status[0]);
+      assertEquals("blurred image", status[1]);
+
+      String[] malformed = submit("checkerboard 4 red blue\nblurr", server.getPort());
+      assertEquals(1, malformed.length);
+      assertTrue(malformed[0], malformed[0].startsWith("Unable to parse input script. Line 2"));
+    }
+    serving.join();
+    assertTrue(log.toString(StandardCharsets.UTF_8).startsWith("Admitted script from port "));
+  }
+}
@@ -0,0 +1,53 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import utilities.HeapPixelStore;
+import utilities.ImageInfo;
+import utilities.ImageUtil;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A JUnit test class for the ImageUtil class.
+ */
+public class ImageUtilTest {
+
+  /**
+   * Tests probe() reads the size and format of an image from its header.
+   */
+  @Test
+  public void testProbe() throws IOException {
+    Path file = Files.createTempFile("probe", ".png");
+    try {
+      ImageUtil.writeImage(new HeapPixelStore(30, 20), file.toString());
+
+      ImageInfo info = ImageUtil.probe(file.toString());
+      assertEquals(30, info.getWidth());
+      assertEquals(20, info.getHeight());
+      assertEquals("png", info.getFormat());
+      assertEquals(3, info.getColorModel().getNumComponents());
+      assertEquals("30x20 png, 3 channels of 8 bits", info.toString());
+      assertEquals(30, ImageUtil.getWidth(file.toString()));
+      assertEquals(20, ImageUtil.getHeight(file.toString()));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests probe() reports files that are not images.
+   */
+  @Test(expected = IOException.class)
+  public void testProbeNotAnImage() throws IOException {
+    Path file = Files.createTempFile("probe", ".txt");
+    try {
+      Files.write(file, "not an image".getBytes());
+      ImageUtil.probe(file.toString());
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import utilities.HeapPixelStore;
+import utilities.PixelArena;
+import utilities.PixelStore;
+import utilities.PlanarPixelStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A JUnit test class for the PixelStore interface and related classes.
+ */
+public class PixelStoreTest {
+
+  /**
+   * Tests copyOf() copies pixels between heap and off-heap stores.
+   */
+  @Test
+  public void testCopyBetweenStores() {
+    PixelStore heap = new HeapPixelStore(4, 3);
+    heap.setPixel(2, 3, new int[]{255, 128, 7});
+
+    try (PixelArena arena = new PixelArena()) {
+      PixelStore direct = PixelStore.copyOf(heap, arena);
+      assertEquals(4, direct.getWidth());
+      assertEquals(3, direct.getHeight());
+      assertEquals(255, direct.get(2, 3, 0));
+      assertEquals(128, direct.get(2, 3, 1));
+      assertEquals(7, direct.get(2, 3, 2));
+      assertEquals(36, direct.sizeInBytes());
+    }
+  }
+
+  /**
+   * Tests a planar store reads back the values written to it through every way of accessing it,
+   * keeping the channels apart and the values within a byte.
+   */
+  @Test
+  public void testPlanarStore() {
+    PixelStore planar = new PlanarPixelStore(5, 3);
+    assertEquals(45, planar.sizeInBytes());
+
+    planar.set(1, 2, 0, 255);
+    planar.setPixel(2, 4, new int[]{10, 20, 30});
+    planar.writeChannel(0, 1, 2, new int[]{-1, 1, 2, 3, 200}, 1, 4);
+
+    int[] rgb = new int[3];
+    planar.getPixel(1, 2, rgb);
+    assertArrayEquals(new int[]{255, 0, 0}, rgb);
+    assertEquals(20, planar.get(2, 4, 1));
+    assertEquals(200, planar.get(0, 4, 2));
+
+    int[] values = new int[7];
+    planar.readChannel(0, 0, 2, values, 1, 5);
+    assertArrayEquals(new int[]{0, 0, 1, 2, 3, 200, 0}, values);
+    planar.readChannel(2, 3, 0, values, 0, 2);
+    assertEquals(0, values[0]);
+    assertEquals(10, values[1]);
+
+    PixelStore copy = PixelStore.copyOf(planar, HeapPixelStore::new);
+    copy.getPixel(2, 4, rgb);
+    assertArrayEquals(new int[]{10, 20, 30}, rgb);
+  }
+
+  /**
+   * Tests stores mapped onto a file keep their pixels in the file.
+   */
+  @Test
+  public void testMappedStore() throws IOException {
+    Path file = Files.createTempFile("pixels", ".raw");
+    try (PixelArena arena = new PixelArena()) {
+      PixelStore mapped = arena.map(file, 2, 2);
+      mapped.set(1, 1, 2, 200);
+    }
+
+    try (PixelArena arena = new PixelArena()) {
+      assertEquals(200, arena.map(file, 2, 2).get(1, 1, 2));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests stores cannot be used after their arena is closed.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testClosedArena() {
+    PixelStore store;
+    try (PixelArena arena = new PixelArena()) {
+      store = arena.create(2, 2);
+    }
+    store.get(0, 0, 0);
+  }
+
+  /**
+   * Tests the direct memory limit defaults to the maximum heap size, as the tests run without
+   * -XX:MaxDirectMemorySize.
+   */
+  @Test
+  public void testMaxDirectMemory() {
+    assertEquals(Runtime.getRuntime().maxMemory(), PixelArena.maxDirectMemory());
+  }
+}
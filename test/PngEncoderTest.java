@@ -0,0 +1,81 @@
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+import utilities.PngEncoder;
+import utilities.PngFilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the PngEncoder class.
+ */
+public class PngEncoderTest {
+
+  /**
+   * Tests images written with every filter read back with the same pixels, using an image tall
+   * enough to be compressed in several chunks.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    PixelStore image = new HeapPixelStore(301, 1000);
+    for (int row = 0; row < image.getHeight(); row++) {
+      for (int column = 0; column < image.getWidth(); column++) {
+        image.setPixel(row, column, new int[]{(row * 7 + column) % 256,
+            (row * column) % 256, (column * 31 / (row + 1)) % 256});
+      }
+    }
+
+    int[] pixel = new int[3];
+    for (PngFilter filter : PngFilter.values()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new PngEncoder(9, filter).write(image, out);
+      BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+      assertEquals(image.getWidth(), read.getWidth());
+      assertEquals(image.getHeight(), read.getHeight());
+      for (int row = 0; row < image.getHeight(); row++) {
+        for (int column = 0; column < image.getWidth(); column++) {
+          image.getPixel(row, column, pixel);
+          int expected = (pixel[0] << 16) + (pixel[1] << 8) + pixel[2];
+          assertEquals(filter + " at " + row + ", " + column, expected,
+                  read.getRGB(column, row) & 0xFFFFFF);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests the compression level must be between 0 and 9.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLevel() {
+    new PngEncoder(10, PngFilter.NONE);
+  }
+
+  /**
+   * Tests images without pixels are rejected before anything is written, as a PNG file cannot
+   * hold them.
+   */
+  @Test
+  public void testEmptyImage() throws IOException {
+    for (PixelStore image : new PixelStore[]{new HeapPixelStore(4, 0),
+        new HeapPixelStore(0, 4)}) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        new PngEncoder().write(image, out);
+        fail("An empty image should be rejected");
+      } catch (IllegalArgumentException e) {
+        assertEquals(0, out.size());
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import model.ImageDriver;
+import model.ResultCache;
+import model.ScriptParser;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A JUnit test class for the ResultCache class.
+ */
+public class ResultCacheTest {
+
+  /**
+   * Tests scripts sharing their first commands share the keys of those commands, and that nothing
+   * is keyed after a command that cannot be cached.
+   */
+  @Test
+  public void testKeys() {
+    List<String> first = ResultCache.keys(ScriptParser.parse(
+            "border clamp\ncheckerboard 4 red blue\nblur\nsepia\nsave a.png\nblur"));
+    List<String> second = ResultCache.keys(ScriptParser.parse(
+            "border clamp\ncheckerboard 4 red blue\nblur\ngreyscale"));
+
+    assertNull(first.get(0));
+    assertNotNull(first.get(1));
+    assertEquals(first.get(1), second.get(1));
+    assertEquals(first.get(2), second.get(2));
+    assertNotEquals(first.get(3), second.get(3));
+    assertNull(first.get(4));
+    assertNull(first.get(5));
+
+    // a mosaic is only cached when its random seed is given
+    assertNotNull(ResultCache.keys(ScriptParser.parse(
+            "checkerboard 4 red blue\nmosaic 10 seed 3")).get(1));
+    assertNull(ResultCache.keys(ScriptParser.parse("checkerboard 4 red blue\nmosaic 10")).get(1));
+  }
+
+  /**
+   * Tests an image read back from the cache has the same pixels, and that the least recently used
+   * image is removed once the cache is over its budget.
+   */
+  @Test
+  public void testPutAndEvict() throws IOException {
+    Path directory = Files.createTempDirectory("cache");
+    try {
+      // each image takes a little over 300 bytes
+      ResultCache cache = new ResultCache(directory, 700);
+      PixelStore image = new HeapPixelStore(10, 10);
+      image.setPixel(3, 7, new int[]{1, 2, 3});
+
+      cache.put("a", image);
+      cache.put("b", image);
+      PixelStore read = cache.get("a", HeapPixelStore::new);
+      int[] rgb = new int[3];
+      read.getPixel(3, 7, rgb);
+      assertArrayEquals(new int[]{1, 2, 3}, rgb);
+
+      // make sure "a" counts as more recently used than "b"
+      Files.setLastModifiedTime(directory.resolve("b.raw"), FileTime.fromMillis(0));
+      cache.put("c", image);
+      assertNull(cache.get("b", HeapPixelStore::new));
+      assertNotNull(cache.get("a", HeapPixelStore::new));
+    } finally {
+      for (File file : directory.toFile().listFiles()) {
+        Files.delete(file.toPath());
+      }
+      Files.delete(directory);
+    }
+  }
+
+  /**
+   * Tests caching the image after each command does not apply filters collected for fusion one at
+   * a time: the filters run once, as a single pass, and the images waiting for them are not
+   * cached.
+   */
+  @Test
+  public void testCacheKeepsFusion() throws IOException {
+    Path directory = Files.createTempDirectory("cache");
+    Path script = Files.createTempFile("fused", ".txt");
+    Path events = Files.createTempFile("fused", ".jfr");
+    try (Recording recording = new Recording()) {
+      Files.writeString(script, "fusion on\ncheckerboard 4 red blue\nblur\nsharpen\nsepia");
+      recording.enable("imageprocessor.Operation");
+      recording.start();
+      ImageDriver.main(new String[]{"--cache", directory.toString(), script.toString()});
+      recording.stop();
+      recording.dump(events);
+
+      List<String> operations = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(events)) {
+        operations.add(event.getString("operation"));
+      }
+      assertEquals(List.of("checkerboard", "blur", "sharpen", "fused filters", "sepia"),
+              operations);
+      // only the checkerboard and the sepia image are cached
+      assertEquals(2, directory.toFile().listFiles().length);
+    } finally {
+      for (File file : directory.toFile().listFiles()) {
+        Files.delete(file.toPath());
+      }
+      Files.delete(directory);
+      Files.delete(script);
+      Files.delete(events);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import model.Command;
+import model.ScriptParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the ScriptParser class.
+ */
+public class ScriptParserTest {
+
+  /**
+   * Tests parse() compiles every command of a valid script in order.
+   */
+  @Test
+  public void testParseValidScript() {
+    List<Command> commands = ScriptParser.parse(
+            "load image.png\nblur sepia\nrainbow Vertical 500 200 red,green,blue\n"
+                    + "checkerboard 10 white black\nmosaic 305\nsave out.png");
+
+    assertEquals(7, commands.size());
+    assertEquals("blur", commands.get(1).getName());
+    assertEquals("rainbow vertical 500 200 red,green,blue", commands.get(3).toString());
+    assertEquals(4, commands.get(4).getLine());
+  }
+
+  /**
+   * Tests parse() reads the optional threshold matrix of dither, and rejects a matrix size that is
+   * not a power of 2.
+   */
+  @Test
+  public void testParseDitherOptions() {
+    List<Command> commands = ScriptParser.parse("dither Ordered 8\ndither bluenoise 64\ndither");
+    assertEquals("dither ordered 8", commands.get(0).toString());
+    assertEquals("dither bluenoise 64", commands.get(1).toString());
+    assertEquals("dither", commands.get(2).toString());
+    try {
+      ScriptParser.parse("blur\ndither ordered 6");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 2: Matrix size for command 'dither' must be a power of 2 up to 64",
+              e.getMessage());
+    }
+  }
+
+  /**
+   * Tests parse() reads the optional seed spacing and random seed of mosaic, and leaves the
+   * following command alone.
+   */
+  @Test
+  public void testParseMosaicOptions() {
+    List<Command> commands = ScriptParser.parse(
+            "mosaic 30 Poisson seed 7\nmosaic 30 seed 8\nmosaic 30 uniform\nmosaic 30\nblur");
+
+    assertEquals(5, commands.size());
+    assertEquals("mosaic 30 poisson seed 7", commands.get(0).toString());
+    assertEquals("mosaic 30 seed 8", commands.get(1).toString());
+    assertEquals("mosaic 30 uniform", commands.get(2).toString());
+    assertEquals("mosaic 30", commands.get(3).toString());
+    assertEquals("blur", commands.get(4).getName());
+  }
+
+  /**
+   * Tests parse() rejects unsupported commands, naming the line they are on.
+   */
+  @Test
+  public void testParseUnsupportedCommand() {
+    try {
+      ScriptParser.parse("load image.png\nblur\nblurr\nsave out.png");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 3: Unsupported command 'blurr'", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests parse() rejects unsupported colors.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnsupportedColor() {
+    ScriptParser.parse("checkerboard 10 white blurple");
+  }
+
+  /**
+   * Tests parse() rejects compression levels above 9, naming the line.
+   */
+  @Test
+  public void testParseCompressionLevel() {
+    assertEquals("compression 9 paeth",
+            ScriptParser.parse("compression 9 paeth").get(0).toString());
+    try {
+      ScriptParser.parse("blur\ncompression 12 paeth");
+      fail("Expected an exception");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Line 2: Compression level for command 'compression' must be at most 9",
+              e.getMessage());
+    }
+  }
+
+  /**
+   * Tests parse() rejects unsupported PNG filters.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnsupportedFilter() {
+    ScriptParser.parse("compression 6 diagonal");
+  }
+
+  /**
+   * Tests parse() rejects arguments that are not numbers.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalidNumber() {
+    ScriptParser.parse("load image.png\nmosaic many");
+  }
+
+  /**
+   * Tests parse() rejects commands with missing arguments.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMissingArgument() {
+    ScriptParser.parse("load");
+  }
+}
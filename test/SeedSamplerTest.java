@@ -0,0 +1,88 @@
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import utilities.SeedSampler;
+import utilities.SeedSampling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the SeedSampler class.
+ */
+public class SeedSamplerTest {
+
+  /**
+   * Tests every way of spreading seeds picks the requested number of distinct pixels inside of the
+   * area, including every pixel of it.
+   */
+  @Test
+  public void testDistinct() {
+    for (SeedSampling sampling : SeedSampling.values()) {
+      for (int count : new int[]{1, 50, 999, 1000}) {
+        int[] seeds = SeedSampler.sample(40, 25, count, sampling, new Random(count));
+        BitSet seen = new BitSet();
+        for (int seed : seeds) {
+          assertTrue(seed >= 0 && seed < 1000);
+          seen.set(seed);
+        }
+        assertEquals(count, seen.cardinality());
+      }
+    }
+  }
+
+  /**
+   * Tests the same random seed picks the same pixels.
+   */
+  @Test
+  public void testRepeatable() {
+    for (SeedSampling sampling : SeedSampling.values()) {
+      assertArrayEquals(SeedSampler.sample(300, 200, 400, sampling, new Random(7)),
+              SeedSampler.sample(300, 200, 400, sampling, new Random(7)));
+    }
+  }
+
+  /**
+   * Tests Poisson seeds are spaced further apart than uniform seeds.
+   */
+  @Test
+  public void testSpacing() {
+    double uniform = closestPair(SeedSampler.sample(300, 200, 400, SeedSampling.UNIFORM,
+            new Random(3)), 300);
+    double poisson = closestPair(SeedSampler.sample(300, 200, 400, SeedSampling.POISSON,
+            new Random(3)), 300);
+
+    // the seeds would be about 12 pixels apart if spread on a square grid
+    assertTrue(poisson >= 6);
+    assertTrue(uniform < poisson);
+  }
+
+  /**
+   * Tests an area too small for the seeds is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManySeeds() {
+    SeedSampler.sample(10, 10, 101, SeedSampling.UNIFORM, new Random());
+  }
+
+  /**
+   * Finds the distance between the two closest seeds.
+   *
+   * @param seeds the seeds
+   * @param width number of columns of the area
+   * @return the distance
+   */
+  private static double closestPair(int[] seeds, int width) {
+    double closest = Double.MAX_VALUE;
+    for (int i = 0; i < seeds.length; i++) {
+      for (int j = i + 1; j < seeds.length; j++) {
+        closest = Math.min(closest, Math.hypot(seeds[i] / width - seeds[j] / width,
+                seeds[i] % width - seeds[j] % width));
+      }
+    }
+    return closest;
+  }
+}
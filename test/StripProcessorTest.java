@@ -0,0 +1,180 @@
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import model.Command;
+import model.ScriptParser;
+import model.Strip;
+import model.StripProcessor;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the StripProcessor class.
+ */
+public class StripProcessorTest {
+
+  /**
+   * Collects the strips it receives into an image, requesting a fixed number of them up front.
+   */
+  private static final class Collector implements Flow.Subscriber<Strip> {
+
+    private final PixelStore image;
+    private final long initialRequest;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile Flow.Subscription subscription;
+    private volatile int rows;
+
+    private Collector(PixelStore image, long initialRequest) {
+      this.image = image;
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initialRequest);
+    }
+
+    @Override
+    public void onNext(Strip strip) {
+      int[] rgb = new int[3];
+      PixelStore pixels = strip.getPixels();
+      for (int row = 0; row < pixels.getHeight(); row++) {
+        for (int column = 0; column < pixels.getWidth(); column++) {
+          pixels.getPixel(row, column, rgb);
+          image.setPixel(strip.getTop() + row, column, rgb);
+        }
+      }
+      rows += pixels.getHeight();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      completed.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+  }
+
+  /**
+   * Creates an image with a pattern that changes from one pixel to the next.
+   *
+   * @return the image
+   */
+  private static PixelStore pattern() {
+    PixelStore image = new HeapPixelStore(40, 30);
+    int[] rgb = new int[3];
+    for (int row = 0; row < 30; row++) {
+      for (int column = 0; column < 40; column++) {
+        rgb[0] = (row + column) % 2 * 255;
+        rgb[1] = row * 8;
+        rgb[2] = column * 6;
+        image.setPixel(row, column, rgb);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Streams an image through a processor in strips of the specified number of rows.
+   *
+   * @param image    the image
+   * @param commands the commands to perform
+   * @param rows     number of rows of every strip
+   * @return the processed image
+   */
+  private static PixelStore stream(PixelStore image, List<Command> commands, int rows)
+          throws InterruptedException {
+    PixelStore result = new HeapPixelStore(image.getWidth(), image.getHeight());
+    Collector collector = new Collector(result, Long.MAX_VALUE);
+    StripProcessor processor = new StripProcessor(commands, HeapPixelStore::new);
+    processor.subscribe(collector);
+    try (SubmissionPublisher<Strip> input = new SubmissionPublisher<>()) {
+      input.subscribe(processor);
+      for (int top = 0; top < image.getHeight(); top += rows) {
+        input.submit(Strip.copyOf(image, top, Math.min(rows, image.getHeight() - top),
+                HeapPixelStore::new));
+      }
+    }
+    assertTrue(collector.completed.await(10, TimeUnit.SECONDS));
+    return result;
+  }
+
+  /**
+   * Tests an image streamed in strips thinner than the reach of the filters matches the image
+   * processed in one piece.
+   */
+  @Test
+  public void testStripsMatchWholeImage() throws InterruptedException {
+    PixelStore image = pattern();
+    List<Command> commands = ScriptParser.parse("border mirror\nblur\nblur\ngreyscale");
+
+    PixelStore whole = stream(image, commands, 30);
+    PixelStore streamed = stream(image, commands, 1);
+
+    int[] expected = new int[3];
+    int[] actual = new int[3];
+    for (int row = 0; row < 30; row++) {
+      for (int column = 0; column < 40; column++) {
+        whole.getPixel(row, column, expected);
+        streamed.getPixel(row, column, actual);
+        assertArrayEquals("pixel " + row + "," + column, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Tests a subscriber that stops requesting strips holds back the reading of the image, and that
+   * the rest of the image arrives once it requests more.
+   */
+  @Test
+  public void testBackpressure() throws InterruptedException {
+    PixelStore image = pattern();
+    PixelStore result = new HeapPixelStore(40, 30);
+    Collector collector = new Collector(result, 1);
+    ExecutorService threads = Executors.newCachedThreadPool();
+    try (SubmissionPublisher<Strip> input = new SubmissionPublisher<>(threads, 32)) {
+      StripProcessor processor = new StripProcessor(ScriptParser.parse("sepia"),
+              HeapPixelStore::new, threads, 1);
+      processor.subscribe(collector);
+      input.subscribe(processor);
+      for (int top = 0; top < 30; top++) {
+        input.submit(Strip.copyOf(image, top, 1, HeapPixelStore::new));
+      }
+
+      for (int wait = 0; wait < 100 && collector.rows == 0; wait++) {
+        Thread.sleep(100);
+      }
+      Thread.sleep(100);
+      assertEquals(1, collector.rows);
+      assertTrue(input.estimateMaximumLag() > 20);
+
+      collector.subscription.request(Long.MAX_VALUE);
+    }
+    assertTrue(collector.completed.await(10, TimeUnit.SECONDS));
+    assertEquals(30, collector.rows);
+    threads.shutdown();
+  }
+
+  /**
+   * Tests commands whose result depends on the whole image are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWholeImageCommandRejected() {
+    new StripProcessor(ScriptParser.parse("autolevels"), HeapPixelStore::new);
+  }
+}
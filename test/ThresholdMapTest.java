@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import utilities.DitherMatrix;
+import utilities.ThresholdMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A JUnit test class for the ThresholdMap class.
+ */
+public class ThresholdMapTest {
+
+  /**
+   * Tests the thresholds of the smallest Bayer matrix, and that the matrix is tiled from the left
+   * and top edges of the image.
+   */
+  @Test
+  public void testBayer() {
+    ThresholdMap map = ThresholdMap.of(DitherMatrix.BAYER, 2);
+    int[] thresholds = new int[3];
+    map.fillRow(0, 0, thresholds);
+    assertArrayEquals(new int[]{32, 160, 32}, thresholds);
+    map.fillRow(3, 1, thresholds);
+    assertArrayEquals(new int[]{96, 224, 96}, thresholds);
+  }
+
+  /**
+   * Tests both matrices turn the share of pixels white that matches every grey value.
+   */
+  @Test
+  public void testShareOfWhite() {
+    ThresholdMap bayer = ThresholdMap.of(DitherMatrix.BAYER, 8);
+    ThresholdMap blueNoise = ThresholdMap.of(DitherMatrix.BLUE_NOISE, 8);
+    for (int grey = 0; grey < 256; grey++) {
+      int white = countWhite(bayer, grey);
+      assertEquals(white, countWhite(blueNoise, grey));
+      assertEquals(grey * 64 / 255.0, white, 0.5);
+    }
+  }
+
+  /**
+   * Tests the first cells of a blue noise matrix to turn white are spread out, none of them next
+   * to another even across the edges of the tiles.
+   */
+  @Test
+  public void testBlueNoiseSpread() {
+    ThresholdMap map = ThresholdMap.of(DitherMatrix.BLUE_NOISE, 16);
+    boolean[][] white = new boolean[16][16];
+    int[] thresholds = new int[16];
+    for (int row = 0; row < 16; row++) {
+      map.fillRow(row, 0, thresholds);
+      for (int column = 0; column < 16; column++) {
+        // about one cell in eight
+        white[row][column] = thresholds[column] <= 32;
+      }
+    }
+
+    for (int row = 0; row < 16; row++) {
+      for (int column = 0; column < 16; column++) {
+        if (white[row][column]) {
+          assertTrue(!white[(row + 1) % 16][column] && !white[row][(column + 1) % 16]
+                  && !white[(row + 1) % 16][(column + 1) % 16]
+                  && !white[(row + 1) % 16][(column + 15) % 16]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests a size that is not a power of 2 is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    ThresholdMap.of(DitherMatrix.BLUE_NOISE, 12);
+  }
+
+  /**
+   * Counts the cells of a matrix that turn white at a grey value.
+   *
+   * @param map  the matrix
+   * @param grey the grey value
+   * @return the number of cells
+   */
+  private static int countWhite(ThresholdMap map, int grey) {
+    int size = map.getSize();
+    int[] thresholds = new int[size];
+    int white = 0;
+    for (int row = 0; row < size; row++) {
+      map.fillRow(row, 0, thresholds);
+      for (int threshold : thresholds) {
+        white += grey >= threshold ? 1 : 0;
+      }
+    }
+    return white;
+  }
+}
@@ -0,0 +1,232 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import model.Command;
+import model.ScriptParser;
+import model.TileCoordinator;
+import model.TileWorker;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the TileCoordinator and TileWorker classes.
+ */
+public class TileCoordinatorTest {
+
+  private final List<TileWorker> workers = new ArrayList<>();
+  private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+  /**
+   * Starts two workers in this process, after the address of one that is not running.
+   */
+  @Before
+  public void setUp() throws IOException {
+    try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+              closed.getLocalPort()));
+    }
+    for (int i = 0; i < 2; i++) {
+      TileWorker worker = new TileWorker(0);
+      workers.add(worker);
+      addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), worker.getPort()));
+      Thread thread = new Thread(() -> {
+        try {
+          worker.serve();
+        } catch (IOException e) {
+          // the test fails on the missing tiles
+        }
+      });
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the workers.
+   */
+  @After
+  public void tearDown() throws IOException {
+    for (TileWorker worker : workers) {
+      worker.close();
+    }
+  }
+
+  /**
+   * Tests an image processed in tiles with the filters reaching across their edges, including
+   * sharpen with its margin of three pixels, some of which are first sent to the worker that is
+   * not running, matches the image processed in one piece.
+   */
+  @Test
+  public void testTilesMatchWholeImage() throws IOException {
+    PixelStore image = new HeapPixelStore(40, 30);
+    int[] rgb = new int[3];
+    for (int row = 0; row < 30; row++) {
+      for (int column = 0; column < 40; column++) {
+        rgb[0] = (row + column) % 2 * 255;
+        rgb[1] = row * 8;
+        rgb[2] = column * 6;
+        image.setPixel(row, column, rgb);
+      }
+    }
+    String script = "border mirror\nblur\nsharpen\nblur\ngreyscale";
+
+    List<Command> commands = ScriptParser.parse(script);
+
+    // a tile larger than the image processes it in one piece
+    PixelStore whole;
+    PixelStore sharded;
+    try (TileCoordinator coordinator = new TileCoordinator(addresses, 64)) {
+      whole = coordinator.process(image, commands, HeapPixelStore::new);
+    }
+    try (TileCoordinator coordinator = new TileCoordinator(addresses, 16)) {
+      sharded = coordinator.process(image, commands, HeapPixelStore::new);
+    }
+
+    int[] expected = new int[3];
+    int[] actual = new int[3];
+    for (int row = 0; row < 30; row++) {
+      for (int column = 0; column < 40; column++) {
+        whole.getPixel(row, column, expected);
+        sharded.getPixel(row, column, actual);
+        assertArrayEquals("pixel " + row + "," + column, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Tests a tile sent to a worker that accepts the connection but never replies is sent to
+   * another worker once the reply times out.
+   */
+  @Test(timeout = 10000)
+  public void testStalledWorkerRetried() throws IOException {
+    // connections are queued by the system without ever being accepted
+    try (ServerSocket stalled = new ServerSocket(0, 4, InetAddress.getLoopbackAddress())) {
+      InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+              stalled.getLocalPort());
+      PixelStore image = new HeapPixelStore(16, 8);
+      image.setPixel(4, 4, new int[]{160, 160, 160});
+
+      PixelStore result;
+      try (TileCoordinator coordinator = new TileCoordinator(List.of(address, addresses.get(1)),
+              8)) {
+        coordinator.setReplyTimeout(300);
+        result = coordinator.process(image, ScriptParser.parse("blur"), HeapPixelStore::new);
+      }
+      assertEquals(40, result.get(4, 4, 0));
+      assertEquals(20, result.get(4, 5, 1));
+    }
+  }
+
+  /**
+   * Tests commands whose result depends on the whole image are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWholeImageCommandRejected() throws IOException {
+    try (TileCoordinator coordinator = new TileCoordinator(addresses, 16)) {
+      coordinator.process(new HeapPixelStore(4, 4), ScriptParser.parse("autolevels"),
+              HeapPixelStore::new);
+    }
+  }
+
+  /**
+   * Sends a script and the header of a tile straight to a worker, followed by the pixels of the
+   * tile if there are any to send, and returns whether the worker performed the script.
+   *
+   * @param script the text of the script
+   * @param width  width of the tile
+   * @param height height of the tile
+   * @param pixels number of pixels to send
+   * @return the first reply of the worker
+   */
+  private boolean sendToWorker(String script, int width, int height, int pixels)
+          throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(addresses.get(1));
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeUTF(script);
+      out.writeInt(width);
+      out.writeInt(height);
+      out.write(new byte[pixels * 3]);
+      out.flush();
+      return new DataInputStream(socket.getInputStream()).readBoolean();
+    }
+  }
+
+  /**
+   * Tests a worker refuses scripts with commands that cannot be split into tiles, such as those
+   * reading or writing files, and tiles too large to accept, while performing a valid script.
+   */
+  @Test
+  public void testWorkerChecksRequests() throws IOException {
+    assertTrue(sendToWorker("blur", 4, 4, 16));
+    assertFalse(sendToWorker("save tile.png", 4, 4, 16));
+    assertFalse(sendToWorker("load tile.png", 4, 4, 16));
+    assertFalse(sendToWorker("blur", 1 << 16, 1 << 16, 0));
+    assertFalse(sendToWorker("blur", -1, 4, 0));
+  }
+
+  /**
+   * Tests a tile that fails ends the run without waiting for a worker that never replies, and
+   * that the connection to that worker is closed rather than left to the sender.
+   */
+  @Test
+  public void testFailedTileStopsOtherTiles() throws IOException, InterruptedException {
+    CountDownLatch closed = new CountDownLatch(1);
+    try (ServerSocket fake = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+      Thread server = new Thread(() -> {
+        try (Socket silent = fake.accept(); Socket refusing = fake.accept()) {
+          // the second connection is refused once its tile has been read
+          DataInputStream in = new DataInputStream(refusing.getInputStream());
+          in.readUTF();
+          in.readFully(new byte[in.readInt() * in.readInt() * 3]);
+          DataOutputStream out = new DataOutputStream(refusing.getOutputStream());
+          out.writeBoolean(false);
+          out.writeUTF("refused");
+          out.flush();
+
+          // the first one never gets a reply, and ends once the coordinator closes it
+          InputStream silentIn = silent.getInputStream();
+          while (silentIn.read(new byte[4096]) >= 0) {
+            // keep reading until the end of the stream
+          }
+          closed.countDown();
+        } catch (IOException e) {
+          // the test fails on the latch
+        }
+      });
+      server.setDaemon(true);
+      server.start();
+
+      InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+              fake.getLocalPort());
+      try (TileCoordinator coordinator = new TileCoordinator(List.of(address, address), 8)) {
+        coordinator.process(new HeapPixelStore(16, 8), ScriptParser.parse("blur"),
+                HeapPixelStore::new);
+        fail("Expected an exception");
+      } catch (IllegalArgumentException e) {
+        assertEquals("refused", e.getMessage());
+      }
+      assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,100 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.Workspace;
+import utilities.HeapPixelStore;
+import utilities.PixelStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the Workspace class.
+ */
+public class WorkspaceTest {
+
+  /**
+   * Creates an image whose every value differs from its neighbours.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @return the image
+   */
+  private static PixelStore pattern(int width, int height) {
+    PixelStore image = new HeapPixelStore(width, height);
+    for (int row = 0; row < height; row++) {
+      for (int column = 0; column < width; column++) {
+        for (int channel = 0; channel < 3; channel++) {
+          image.set(row, column, channel, (row * 31 + column * 7 + channel * 101) % 256);
+        }
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Tests images over the budget are spilled to scratch files, least recently used first, and
+   * come back with the same pixels, deleting their files.
+   */
+  @Test
+  public void testSpillAndPageIn() throws IOException {
+    Path directory = Files.createTempDirectory("workspace");
+    try (Workspace workspace = new Workspace(2000, directory, HeapPixelStore::new)) {
+      // each image takes 1200 bytes, so only one of them stays in memory
+      workspace.put("first", pattern(10, 10));
+      workspace.put("second", pattern(10, 10));
+      workspace.trim(0);
+      assertEquals(1200, workspace.getResidentBytes());
+      assertEquals(1, directory.toFile().listFiles().length);
+
+      PixelStore first = workspace.take("first");
+      PixelStore expected = pattern(10, 10);
+      for (int row = 0; row < 10; row++) {
+        for (int column = 0; column < 10; column++) {
+          for (int channel = 0; channel < 3; channel++) {
+            assertEquals(expected.get(row, column, channel), first.get(row, column, channel));
+          }
+        }
+      }
+      assertEquals(0, directory.toFile().listFiles().length);
+      assertEquals(1200, workspace.getResidentBytes());
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  /**
+   * Tests a scratch file that was cut short is reported as an error rather than read past its
+   * end, and is deleted.
+   */
+  @Test
+  public void testTruncatedScratchFile() throws IOException {
+    Path directory = Files.createTempDirectory("workspace");
+    try (Workspace workspace = new Workspace(0, directory, HeapPixelStore::new)) {
+      workspace.put("image", pattern(10, 10));
+      workspace.trim(0);
+      File[] files = directory.toFile().listFiles();
+      assertEquals(1, files.length);
+      try (RandomAccessFile file = new RandomAccessFile(files[0], "rw")) {
+        file.setLength(100);
+      }
+
+      try {
+        workspace.take("image");
+        fail("A truncated scratch file should not be read back");
+      } catch (UncheckedIOException e) {
+        assertTrue(e.getCause().getMessage().endsWith("ends before row 3."));
+      }
+      assertEquals(0, directory.toFile().listFiles().length);
+    } finally {
+      Files.delete(directory);
+    }
+  }
+}